@@ -6,6 +6,7 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Configuration
 public class DataInitializer {
@@ -39,7 +40,6 @@ public class DataInitializer {
             event.setUpdatedAt(LocalDateTime.now());
             event.setStatus(Event.EventStatus.PUBLISHED);
             event.setCategory("Music");
-            eventRepository.save(event);
 
             // Create ticket types
             TicketType vipTicket = new TicketType();
@@ -54,8 +54,6 @@ public class DataInitializer {
             vipTicket.setSaleStartDate(LocalDateTime.now());
             vipTicket.setSaleEndDate(LocalDateTime.now().plusDays(29));
             vipTicket.setVenueZone("VIP Zone");
-            vipTicket.setEvent(event);
-            ticketTypeRepository.save(vipTicket);
 
             TicketType generalTicket = new TicketType();
             generalTicket.setId("GENERAL");
@@ -69,6 +67,12 @@ public class DataInitializer {
             generalTicket.setSaleStartDate(LocalDateTime.now());
             generalTicket.setSaleEndDate(LocalDateTime.now().plusDays(29));
             generalTicket.setVenueZone("General Zone");
+
+            // Los agregados del inventario solo se escriben al insertar el evento
+            event.updateAggregates(List.of(vipTicket, generalTicket));
+            event = eventRepository.save(event);
+            vipTicket.setEvent(event);
+            ticketTypeRepository.save(vipTicket);
             generalTicket.setEvent(event);
             ticketTypeRepository.save(generalTicket);
         };
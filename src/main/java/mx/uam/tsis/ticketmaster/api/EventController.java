@@ -6,14 +6,21 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import mx.uam.tsis.ticketmaster.negocio.EventService;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.*;
 import mx.uam.tsis.ticketmaster.dto.CreateEventRequest;
 import mx.uam.tsis.ticketmaster.dto.EventSearchRequest;
 import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
 import java.util.List;
+import java.util.Optional;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @RestController
@@ -24,6 +31,9 @@ public class EventController {
     @Autowired
     private EventService eventService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping
     @Operation(summary = "Crear un nuevo evento", 
               description = "Crea un nuevo evento con la información proporcionada")
@@ -38,23 +48,59 @@ public class EventController {
 
     @GetMapping("/{eventId}")
     @Operation(summary = "Obtener detalles de un evento", 
-              description = "Retorna los detalles completos de un evento, incluyendo tipos de tickets disponibles")
+              description = "Retorna los detalles completos de un evento, incluyendo tipos de tickets disponibles. "
+                  + "Incluye una ETag; con If-None-Match responde 304 si nada cambió")
     public ResponseEntity<EventDetailResponse> getEventDetails(
-            @PathVariable String eventId) {
-        return ResponseEntity.ok(eventService.getEventDetails(eventId));
+            @PathVariable String eventId, WebRequest request) {
+        Optional<String> version = eventService.getEventVersion(eventId);
+        if (version.isPresent() && request.checkNotModified(version.get())) {
+            // Ya se respondió 304 con la ETag
+            return null;
+        }
+        return version.map(etag -> ResponseEntity.ok().eTag(etag))
+            .orElseGet(ResponseEntity::ok)
+            .body(eventService.getEventDetails(eventId));
     }
 
     @GetMapping
     @Operation(summary = "Listar todos los eventos", 
-              description = "Retorna una lista de todos los eventos disponibles con sus detalles")
-    public ResponseEntity<List<EventSummaryResponse>> getAllEvents() {
-        return ResponseEntity.ok(eventService.getAllEvents());
+              description = "Retorna una página de eventos en orden de fecha de inicio. Si hay más, "
+                  + "la cabecera X-Next-Cursor trae el cursor de la siguiente página")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Página de eventos"),
+        @ApiResponse(responseCode = "400", description = "Cursor o tamaño de página inválido")
+    })
+    public ResponseEntity<?> getAllEvents(
+            @Parameter(description = "Cursor de la página siguiente (cabecera X-Next-Cursor)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Tamaño de la página (máximo 500)")
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return toPageResponse(eventService.getAllEvents(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/stream")
+    @Operation(summary = "Transmitir todos los eventos",
+              description = "Escribe todos los eventos en orden de fecha de inicio como un solo arreglo JSON "
+                  + "conforme se leen, sin paginar y sin juntarlos en memoria")
+    public ResponseEntity<StreamingResponseBody> streamAllEvents() {
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(JsonArrayStream.of(objectMapper, eventService::streamAllEvents));
     }
 
     @GetMapping("/search")
     @Operation(summary = "Búsqueda de eventos",
-              description = "Permite buscar eventos con múltiples criterios como fecha, precio, categoría, etc.")
-    public ResponseEntity<List<EventSummaryResponse>> searchEvents(
+              description = "Permite buscar eventos con múltiples criterios como fecha, precio, categoría, etc. "
+                  + "Los resultados se devuelven por página, igual que el listado de eventos")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Página de eventos encontrados"),
+        @ApiResponse(responseCode = "400", description = "Cursor o tamaño de página inválido")
+    })
+    public ResponseEntity<?> searchEvents(
             @Parameter(description = "Término de búsqueda")
             @RequestParam(required = false) String query,
             @Parameter(description = "Categoría del evento")
@@ -70,8 +116,111 @@ public class EventController {
             @Parameter(description = "Precio máximo")
             @RequestParam(required = false) Double maxPrice,
             @Parameter(description = "Solo eventos con tickets disponibles")
-            @RequestParam(required = false) Boolean hasAvailability) {
+            @RequestParam(required = false) Boolean hasAvailability,
+            @Parameter(description = "Cursor de la página siguiente (cabecera X-Next-Cursor)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Tamaño de la página (máximo 500)")
+            @RequestParam(defaultValue = "50") int limit) {
+        
+        EventSearchRequest searchRequest = toSearchRequest(query, category, venue, fromDate, toDate,
+            minPrice, maxPrice, hasAvailability);
         
+        try {
+            return toPageResponse(eventService.searchEvents(searchRequest, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/search/facets")
+    @Operation(summary = "Facetas de la búsqueda",
+              description = "Cuenta los eventos que cumplen los criterios por categoría, lugar, rango de precio "
+                  + "y mes de inicio. Cada faceta ignora su propio filtro para mostrar las alternativas")
+    @ApiResponse(responseCode = "200", description = "Total de eventos y conteos por faceta")
+    public ResponseEntity<EventFacetsResponse> getSearchFacets(
+            @Parameter(description = "Término de búsqueda")
+            @RequestParam(required = false) String query,
+            @Parameter(description = "Categoría del evento")
+            @RequestParam(required = false) String category,
+            @Parameter(description = "Venue/Lugar del evento")
+            @RequestParam(required = false) String venue,
+            @Parameter(description = "Fecha desde (formato: yyyy-MM-dd'T'HH:mm:ss)")
+            @RequestParam(required = false) LocalDateTime fromDate,
+            @Parameter(description = "Fecha hasta (formato: yyyy-MM-dd'T'HH:mm:ss)")
+            @RequestParam(required = false) LocalDateTime toDate,
+            @Parameter(description = "Precio mínimo")
+            @RequestParam(required = false) Double minPrice,
+            @Parameter(description = "Precio máximo")
+            @RequestParam(required = false) Double maxPrice,
+            @Parameter(description = "Solo eventos con tickets disponibles")
+            @RequestParam(required = false) Boolean hasAvailability) {
+        return ResponseEntity.ok(eventService.getSearchFacets(toSearchRequest(query, category, venue,
+            fromDate, toDate, minPrice, maxPrice, hasAvailability)));
+    }
+
+    @GetMapping("/calendar")
+    @Operation(summary = "Calendario de eventos",
+              description = "Agrupa por día o por semana (de lunes a domingo) los eventos que empiezan en un "
+                  + "rango de hasta 366 días, e incluye el número de eventos de cada día del rango")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Eventos agrupados e histograma por día"),
+        @ApiResponse(responseCode = "400", description = "Rango o agrupación inválidos")
+    })
+    public ResponseEntity<?> getCalendar(
+            @Parameter(description = "Primer día (formato: yyyy-MM-dd)", required = true)
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Último día, incluido (formato: yyyy-MM-dd)", required = true)
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @Parameter(description = "Agrupación: day o week")
+            @RequestParam(defaultValue = "day") String groupBy) {
+        try {
+            return ResponseEntity.ok(eventService.getCalendar(from, to, groupBy));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/suggest")
+    @Operation(summary = "Autocompletar búsqueda",
+              description = "Sugiere nombres de eventos, lugares y categorías que empiezan con el texto escrito, "
+                  + "sin distinguir mayúsculas ni acentos")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Sugerencias de la más a la menos usada"),
+        @ApiResponse(responseCode = "400", description = "Número de sugerencias inválido")
+    })
+    public ResponseEntity<?> suggest(
+            @Parameter(description = "Texto escrito por el usuario", required = true)
+            @RequestParam String prefix,
+            @Parameter(description = "Máximo de sugerencias (hasta 10)")
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(eventService.suggest(prefix, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/promotions")
+    @Operation(summary = "Obtener eventos en promoción", 
+              description = "Retorna eventos con promociones activas. Con el parámetro at muestra las "
+                  + "que estarán vigentes en ese momento")
+    public ResponseEntity<List<EventPromotionResponse>> getPromotions(
+            @Parameter(description = "Momento a consultar (formato: yyyy-MM-dd'T'HH:mm:ss); por omisión, ahora")
+            @RequestParam(required = false) LocalDateTime at) {
+        return ResponseEntity.ok(eventService.getPromotions(at));
+    }
+
+    private static ResponseEntity<List<EventSummaryResponse>> toPageResponse(CursorPage<EventSummaryResponse> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(TicketReservationController.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    private static EventSearchRequest toSearchRequest(String query, String category, String venue,
+                                                      LocalDateTime fromDate, LocalDateTime toDate,
+                                                      Double minPrice, Double maxPrice, Boolean hasAvailability) {
         EventSearchRequest searchRequest = new EventSearchRequest();
         searchRequest.setQuery(query);
         searchRequest.setCategory(category);
@@ -81,14 +230,6 @@ public class EventController {
         searchRequest.setMinPrice(minPrice);
         searchRequest.setMaxPrice(maxPrice);
         searchRequest.setHasAvailability(hasAvailability);
-        
-        return ResponseEntity.ok(eventService.searchEvents(searchRequest));
-    }
-
-    @GetMapping("/promotions")
-    @Operation(summary = "Obtener eventos en promoción", 
-              description = "Retorna eventos con promociones activas")
-    public ResponseEntity<List<EventPromotionResponse>> getPromotions() {
-        return ResponseEntity.ok(eventService.getPromotions());
+        return searchRequest;
     }
-} 
\ No newline at end of file
+}
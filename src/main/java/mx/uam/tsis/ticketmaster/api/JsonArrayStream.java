@@ -0,0 +1,50 @@
+package mx.uam.tsis.ticketmaster.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Escribe un arreglo JSON elemento por elemento conforme el servicio los lee,
+ * en lugar de armar la lista completa antes de serializarla. El inicio del
+ * arreglo sale de inmediato y cada bloque de elementos se envía en cuanto se
+ * escribe.
+ */
+final class JsonArrayStream {
+
+    // Elementos entre cada envío al cliente
+    private static final int FLUSH_EVERY = 100;
+
+    private JsonArrayStream() {
+    }
+
+    /**
+     * @param objectMapper Serializador configurado de la aplicación
+     * @param source Recorrido del servicio; entrega cada elemento al consumidor que recibe
+     */
+    static <T> StreamingResponseBody of(ObjectMapper objectMapper, Consumer<Consumer<T>> source) {
+        return out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartArray();
+                json.flush();
+                int[] written = {0};
+                source.accept(item -> {
+                    try {
+                        json.writeObject(item);
+                        if (++written[0] % FLUSH_EVERY == 0) {
+                            json.flush();
+                        }
+                    } catch (IOException e) {
+                        // El cliente se desconectó; se corta el recorrido y la transacción de lectura
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                json.writeEndArray();
+            }
+        };
+    }
+}
@@ -3,6 +3,7 @@ package mx.uam.tsis.ticketmaster.api;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -13,6 +14,7 @@ import mx.uam.tsis.ticketmaster.negocio.modelo.TicketReservation;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.TicketReservationResponse;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.TicketTypeDetailResponse;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/v1/tickets")
@@ -32,10 +34,18 @@ public class TicketController {
 
     @GetMapping("/event/{eventId}/types")
     @Operation(summary = "Obtener tipos de tickets disponibles para un evento",
-              description = "Lista todos los tipos de tickets disponibles para un evento específico")
+              description = "Lista todos los tipos de tickets disponibles para un evento específico. "
+                  + "Incluye una ETag; con If-None-Match responde 304 si nada cambió")
     public ResponseEntity<List<TicketTypeDetailResponse>> getTicketTypesForEvent(
             @Parameter(description = "ID del evento", required = true)
-            @PathVariable String eventId) {
-        return ResponseEntity.ok(ticketService.getTicketTypesForEvent(eventId));
+            @PathVariable String eventId, WebRequest request) {
+        Optional<String> version = ticketService.getTicketTypesVersion(eventId);
+        if (version.isPresent() && request.checkNotModified(version.get())) {
+            // Ya se respondió 304 con la ETag
+            return null;
+        }
+        return version.map(etag -> ResponseEntity.ok().eTag(etag))
+            .orElseGet(ResponseEntity::ok)
+            .body(ticketService.getTicketTypesForEvent(eventId));
     }
 } 
\ No newline at end of file
@@ -1,58 +1,133 @@
 package mx.uam.tsis.ticketmaster.api;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import mx.uam.tsis.ticketmaster.negocio.ReservationDispatcher;
+import mx.uam.tsis.ticketmaster.negocio.ReservationIdempotency;
+import mx.uam.tsis.ticketmaster.negocio.admision.WaitingRoom;
 import mx.uam.tsis.ticketmaster.negocio.TicketReservationService;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.TicketReservationResponse;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.SeatAvailabilityResponse;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.CursorPage;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.ErrorResponse;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.QueueStatusResponse;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/reservations")
 @Tag(name = "Reservaciones", description = "API para gestionar reservaciones de tickets")
 public class TicketReservationController {
+
+    // Cabecera con el cursor de la página siguiente en los listados
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     
     @Autowired
     private TicketReservationService reservationService;
 
+    @Autowired
+    private ReservationDispatcher reservationDispatcher;
+
+    @Autowired
+    private ReservationIdempotency reservationIdempotency;
+
+    @Autowired
+    private WaitingRoom waitingRoom;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Tiempo máximo que se espera a que el buzón del evento procese un comando
+    @Value("${ticketmaster.reservations.timeout-ms:5000}")
+    private long timeoutMillis;
+
     @GetMapping
     @Operation(
         summary = "Listar todas las reservaciones",
-        description = "Obtiene una lista de todas las reservaciones activas"
+        description = "Obtiene una página de reservaciones en orden de vencimiento. Si hay más, "
+            + "la cabecera X-Next-Cursor trae el cursor de la siguiente página"
     )
-    @ApiResponse(responseCode = "200", description = "Lista de reservaciones obtenida exitosamente")
-    public ResponseEntity<List<TicketReservationResponse>> getAllReservations() {
-        return ResponseEntity.ok(reservationService.getAllReservations());
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lista de reservaciones obtenida exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Cursor o tamaño de página inválido")
+    })
+    public ResponseEntity<?> getAllReservations(
+            @Parameter(description = "Cursor de la página siguiente (cabecera X-Next-Cursor)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Tamaño de la página (máximo 500)")
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return toPageResponse(reservationService.getAllReservations(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/stream")
+    @Operation(
+        summary = "Transmitir todas las reservaciones",
+        description = "Escribe todas las reservaciones en orden de vencimiento como un solo arreglo JSON "
+            + "conforme se leen, sin paginar y sin juntarlas en memoria"
+    )
+    public ResponseEntity<StreamingResponseBody> streamAllReservations() {
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(JsonArrayStream.of(objectMapper, reservationService::streamAllReservations));
     }
 
     @GetMapping("/active")
     @Operation(
         summary = "Listar reservaciones activas",
-        description = "Obtiene una lista de las reservaciones que aún no han expirado"
+        description = "Obtiene una página de las reservaciones que aún no han expirado. Si hay más, "
+            + "la cabecera X-Next-Cursor trae el cursor de la siguiente página"
     )
-    @ApiResponse(responseCode = "200", description = "Lista de reservaciones activas obtenida exitosamente")
-    public ResponseEntity<List<TicketReservationResponse>> getActiveReservations() {
-        return ResponseEntity.ok(reservationService.getActiveReservations());
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lista de reservaciones activas obtenida exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Cursor o tamaño de página inválido")
+    })
+    public ResponseEntity<?> getActiveReservations(
+            @Parameter(description = "Cursor de la página siguiente (cabecera X-Next-Cursor)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Tamaño de la página (máximo 500)")
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return toPageResponse(reservationService.getActiveReservations(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
     }
     
     @GetMapping("/events/{eventId}/seats/{ticketTypeId}")
     @Operation(
         summary = "Obtener asientos disponibles",
-        description = "Obtiene la lista de asientos disponibles para un tipo de ticket en un evento específico"
+        description = "Obtiene la lista de asientos disponibles para un tipo de ticket en un evento específico. "
+            + "Incluye una ETag; con If-None-Match responde 304 si ningún asiento cambió"
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Lista de asientos obtenida exitosamente"),
+        @ApiResponse(responseCode = "304", description = "El plano no cambió desde la ETag enviada"),
         @ApiResponse(responseCode = "400", description = "Datos inválidos"),
         @ApiResponse(responseCode = "404", description = "Evento o tipo de ticket no encontrado"),
         @ApiResponse(responseCode = "409", description = "El evento ya pasó o no está disponible")
@@ -61,9 +136,16 @@ public class TicketReservationController {
             @Parameter(description = "ID del evento", required = true)
             @PathVariable String eventId,
             @Parameter(description = "ID del tipo de ticket", required = true)
-            @PathVariable String ticketTypeId) {
+            @PathVariable String ticketTypeId, WebRequest request) {
         try {
-            return ResponseEntity.ok(reservationService.getAvailableSeats(eventId, ticketTypeId));
+            Optional<String> version = reservationService.getAvailableSeatsVersion(eventId, ticketTypeId);
+            if (version.isPresent() && request.checkNotModified(version.get())) {
+                // Ya se respondió 304 con la ETag
+                return null;
+            }
+            return version.map(etag -> ResponseEntity.ok().eTag(etag))
+                .orElseGet(ResponseEntity::ok)
+                .body(reservationService.getAvailableSeats(eventId, ticketTypeId));
         } catch (IllegalArgumentException e) {
             if (e.getMessage().contains("no encontrado")) {
                 return ResponseEntity.notFound().build();
@@ -77,13 +159,17 @@ public class TicketReservationController {
     @PostMapping
     @Operation(
         summary = "Crear una nueva reservación",
-        description = "Crea una reservación temporal de tickets por 5 minutos. Si se reservan más de 5 tickets, se aplica un descuento del 10%."
+        description = "Crea una reservación temporal de tickets por 5 minutos. Si se reservan más de 5 tickets, se aplica un descuento del 10%. "
+            + "Con bestAvailable=true el servidor asigna los mejores asientos juntos disponibles, opcionalmente dentro de una zona. "
+            + "Los reintentos con la misma cabecera Idempotency-Key devuelven la reservación original sin apartar más tickets."
     )
     @io.swagger.v3.oas.annotations.responses.ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Reservación creada exitosamente"),
+        @ApiResponse(responseCode = "202", description = "El evento está lleno; se devuelve un turno en la sala de espera"),
         @ApiResponse(responseCode = "400", description = "Datos inválidos"),
         @ApiResponse(responseCode = "404", description = "Evento o tipo de ticket no encontrado"),
-        @ApiResponse(responseCode = "409", description = "No hay suficientes tickets disponibles o el evento ya pasó")
+        @ApiResponse(responseCode = "409", description = "No hay suficientes tickets disponibles o el evento ya pasó"),
+        @ApiResponse(responseCode = "503", description = "El evento tiene demasiadas solicitudes en espera")
     })
     public ResponseEntity<?> createReservation(
             @Parameter(description = "ID del evento", required = true) 
@@ -93,10 +179,51 @@ public class TicketReservationController {
             @Parameter(description = "Cantidad de tickets a reservar", required = true) 
             @RequestParam Integer quantity,
             @Parameter(description = "IDs de los asientos a reservar (opcional)") 
-            @RequestParam(required = false) Set<String> seatIds) {
+            @RequestParam(required = false) Set<String> seatIds,
+            @Parameter(description = "Asignar los mejores asientos disponibles en lugar de elegirlos")
+            @RequestParam(defaultValue = "false") boolean bestAvailable,
+            @Parameter(description = "Zona de asientos para el modo de mejores asientos (opcional)")
+            @RequestParam(required = false) String zone,
+            @Parameter(description = "Clave única por intento de compra; los reintentos con la misma clave no duplican la reservación")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @Parameter(description = "Turno de la sala de espera, una vez admitido")
+            @RequestHeader(value = "X-Queue-Token", required = false) String queueToken) {
+        if (bestAvailable && seatIds != null && !seatIds.isEmpty()) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(
+                "No se pueden indicar asientos en el modo de mejores asientos"));
+        }
+        WaitingRoom.Admission admission;
         try {
-            TicketReservationResponse response = reservationService.createReservation(eventId, ticketTypeId, quantity, seatIds);
+            admission = waitingRoom.enter(eventId, queueToken);
+        } catch (IllegalArgumentException e) {
+            // La sala de espera solo se abre para eventos existentes
+            return ResponseEntity.notFound().build();
+        }
+        if (!admission.isAdmitted()) {
+            WaitingRoom.QueueStatus queue = admission.getQueueStatus();
+            return ResponseEntity.accepted()
+                .header("Retry-After", String.valueOf(Math.max(queue.estimatedWaitSeconds(), 1)))
+                .body(toResponse(queue));
+        }
+        try {
+            CompletableFuture<TicketReservationResponse> future;
+            if (idempotencyKey == null || idempotencyKey.isBlank()) {
+                future = bestAvailable
+                    ? reservationDispatcher.reserveBestAvailable(eventId, ticketTypeId, quantity, zone)
+                    : reservationDispatcher.reserve(eventId, ticketTypeId, quantity, seatIds);
+            } else {
+                String fingerprint = String.join("|", eventId, ticketTypeId, String.valueOf(quantity),
+                    String.valueOf(seatIds == null ? null : new TreeSet<>(seatIds)),
+                    String.valueOf(bestAvailable), String.valueOf(zone));
+                future = reservationIdempotency.execute(idempotencyKey, fingerprint, () -> bestAvailable
+                    ? reservationDispatcher.reserveBestAvailable(eventId, ticketTypeId, quantity, zone, idempotencyKey)
+                    : reservationDispatcher.reserve(eventId, ticketTypeId, quantity, seatIds, idempotencyKey));
+            }
+            TicketReservationResponse response = await(future);
             return ResponseEntity.ok(response);
+        } catch (RejectedExecutionException | TimeoutException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new ErrorResponse(
+                "Demasiadas solicitudes para este evento, intenta de nuevo"));
         } catch (IllegalArgumentException e) {
             // Errores de validación de datos
             if (e.getMessage().contains("no encontrado")) {
@@ -107,6 +234,27 @@ public class TicketReservationController {
         } catch (IllegalStateException e) {
             // Errores de estado (disponibilidad, evento pasado, etc)
             return ResponseEntity.status(409).body(new ErrorResponse(e.getMessage()));
+        } finally {
+            admission.release();
+        }
+    }
+
+    @GetMapping("/queue/{token}")
+    @Operation(
+        summary = "Consultar turno en la sala de espera",
+        description = "Devuelve la posición del turno. Cuando el estado es ADMITTED, repite la reservación con la cabecera X-Queue-Token"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Estado del turno"),
+        @ApiResponse(responseCode = "404", description = "Turno no encontrado o vencido")
+    })
+    public ResponseEntity<QueueStatusResponse> getQueueStatus(
+            @Parameter(description = "Turno de la sala de espera", required = true)
+            @PathVariable String token) {
+        try {
+            return ResponseEntity.ok(toResponse(waitingRoom.getStatus(token)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
         }
     }
     
@@ -117,19 +265,59 @@ public class TicketReservationController {
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Reservación cancelada exitosamente"),
-        @ApiResponse(responseCode = "404", description = "Reservación no encontrada")
+        @ApiResponse(responseCode = "404", description = "Reservación no encontrada"),
+        @ApiResponse(responseCode = "503", description = "El evento tiene demasiadas solicitudes en espera")
     })
     public ResponseEntity<Map<String, String>> cancelReservation(
             @Parameter(description = "ID de la reservación a cancelar", required = true)
             @PathVariable String reservationId) {
         try {
-            reservationService.cancelReservation(reservationId);
+            await(reservationDispatcher.cancel(reservationId));
             Map<String, String> response = new HashMap<>();
             response.put("message", "Reservación cancelada exitosamente");
             response.put("reservationId", reservationId);
             return ResponseEntity.ok(response);
+        } catch (RejectedExecutionException | TimeoutException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (IllegalArgumentException e) {
             return ResponseEntity.notFound().build();
         }
     }
+
+    // El cuerpo sigue siendo la lista; el cursor de la página siguiente viaja en una cabecera
+    private static ResponseEntity<List<TicketReservationResponse>> toPageResponse(
+            CursorPage<TicketReservationResponse> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    private static QueueStatusResponse toResponse(WaitingRoom.QueueStatus queue) {
+        return new QueueStatusResponse(queue.token(), queue.eventId(), queue.status().name(),
+            queue.position(), queue.estimatedWaitSeconds());
+    }
+
+    /**
+     * Espera el resultado de un comando enviado al buzón del evento. Si se vence
+     * el plazo, el comando se cancela para que no se procese después.
+     */
+    private <T> T await(CompletableFuture<T> future) throws TimeoutException {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            throw new RejectedExecutionException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,38 @@
+package mx.uam.tsis.ticketmaster.config;
+
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * Caché de segundo nivel de Hibernate con las regiones de ehcache.xml.
+ *
+ * El administrador de la caché pertenece al contexto de la aplicación y se
+ * cierra con él. JCache entrega uno solo por URI en toda la JVM, así que cada
+ * contexto usa una URI propia: dos contextos en la misma JVM, como los de las
+ * pruebas, no comparten entidades leídas de bases de datos distintas.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager() {
+        EhcacheCachingProvider provider =
+            (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        return provider.getCacheManager(URI.create("urn:ticketmaster:second-level-cache:" + UUID.randomUUID()),
+            new XmlConfiguration(getClass().getResource("/ehcache.xml")));
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+    }
+}
@@ -1,15 +1,135 @@
 package mx.uam.tsis.ticketmaster.datos;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.hibernate.jpa.HibernateHints;
+import jakarta.persistence.QueryHint;
 import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface EventRepository extends JpaRepository<Event, String> {
+public interface EventRepository extends JpaRepository<Event, String>, JpaSpecificationExecutor<Event>,
+        EventRepositoryCustom {
     List<Event> findByNameContainingIgnoreCase(String name);
     List<Event> findByCategoryIgnoreCase(String category);
     List<Event> findByVenueContainingIgnoreCase(String venue);
     List<Event> findByStartDateAfter(LocalDateTime date);
     List<Event> findByCategory(String category);
     List<Event> findByActive(boolean active);
+
+    /**
+     * Carga un evento con sus tipos de ticket en una sola consulta
+     */
+    @Query("SELECT e FROM Event e LEFT JOIN FETCH e.ticketTypes WHERE e.id = :id")
+    Optional<Event> findByIdWithTicketTypes(String id);
+
+    /**
+     * Lee las columnas que muestran los resúmenes de eventos, una fila por tipo
+     * de ticket (o una sola con los datos del tipo en null si el evento no
+     * tiene), sin cargar entidades
+     */
+    @Query("SELECT new mx.uam.tsis.ticketmaster.datos.EventRepository$SummaryRow(e.id, e.name, e.startDate, "
+        + "e.venue, t.id, t.name, t.description, t.price, t.promotionalPrice, t.availableQuantity, "
+        + "t.maxPerPerson, t.saleStartDate, t.saleEndDate, t.venueZone) "
+        + "FROM Event e LEFT JOIN e.ticketTypes t WHERE e.id IN :ids")
+    List<SummaryRow> findSummaryRowsByIdIn(Collection<String> ids);
+
+    /**
+     * Recorre los IDs de todos los eventos en orden (startDate, id) sin cargarlos
+     * en memoria: el controlador JDBC trae las filas por bloques conforme se
+     * consumen. Debe consumirse dentro de una transacción y cerrarse al terminar.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT e.id FROM Event e ORDER BY e.startDate, e.id")
+    Stream<String> streamAllIds();
+
+    /**
+     * Lee solo los textos que alimentan el autocompletado, sin cargar entidades
+     */
+    @Query("SELECT e.name AS name, e.venue AS venue, e.category AS category FROM Event e")
+    List<SuggestionSource> findSuggestionSources();
+
+    /**
+     * Lee los eventos con fecha de inicio con los datos que muestra el calendario
+     */
+    @Query("SELECT e.id AS id, e.name AS name, e.venue AS venue, e.category AS category, "
+        + "e.startDate AS startDate FROM Event e WHERE e.startDate IS NOT NULL")
+    List<CalendarSource> findCalendarSources();
+
+    /**
+     * Lee por evento los datos que usan las facetas de búsqueda
+     */
+    @Query("SELECT e.id AS id, e.name AS name, e.category AS category, e.venue AS venue, "
+        + "e.startDate AS startDate, e.minPrice AS minPrice, e.soldOut AS soldOut FROM Event e")
+    List<FacetSource> findFacetSources();
+
+    /**
+     * Lee si están agotados los eventos de los tipos de ticket dados
+     * @param ticketTypeIds IDs de los tipos de ticket
+     */
+    @Query("SELECT e.id AS id, e.soldOut AS soldOut FROM Event e "
+        + "WHERE e.id IN (SELECT t.event.id FROM TicketType t WHERE t.id IN :ticketTypeIds)")
+    List<AvailabilitySource> findAvailabilitySources(Collection<String> ticketTypeIds);
+
+    /**
+     * Suma un cambio de inventario a la disponibilidad del evento del tipo de
+     * ticket y actualiza si quedó agotado
+     * @param ticketTypeId ID del tipo de ticket que cambió
+     * @param delta Tickets liberados (positivo) o apartados (negativo)
+     * @return número de eventos actualizados
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE events SET available_tickets = available_tickets + :delta, "
+        + "sold_out = CASE WHEN available_tickets + :delta > 0 THEN FALSE ELSE TRUE END "
+        + "WHERE id = (SELECT event_id FROM ticket_types WHERE id = :ticketTypeId)", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TicketTypeRepository.INVENTORY_SPACE))
+    int adjustAvailableTickets(String ticketTypeId, int delta);
+
+    /**
+     * Fila de un resumen de evento; los datos del tipo de ticket son null si el
+     * evento no tiene tipos de ticket
+     */
+    record SummaryRow(String eventId, String eventName, LocalDateTime startDate, String venue,
+                      String ticketTypeId, String name, String description, Double price,
+                      Double promotionalPrice, Integer availableQuantity, Integer maxPerPerson,
+                      LocalDateTime saleStartDate, LocalDateTime saleEndDate, String venueZone) {
+    }
+
+    interface SuggestionSource {
+        String getName();
+        String getVenue();
+        String getCategory();
+    }
+
+    interface CalendarSource {
+        String getId();
+        String getName();
+        String getVenue();
+        String getCategory();
+        LocalDateTime getStartDate();
+    }
+
+    interface AvailabilitySource {
+        String getId();
+        boolean getSoldOut();
+    }
+
+    interface FacetSource {
+        String getId();
+        String getName();
+        String getCategory();
+        String getVenue();
+        LocalDateTime getStartDate();
+        Double getMinPrice();
+        boolean getSoldOut();
+    }
 }
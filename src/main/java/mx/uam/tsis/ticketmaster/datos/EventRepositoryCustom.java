@@ -0,0 +1,16 @@
+package mx.uam.tsis.ticketmaster.datos;
+
+import org.springframework.data.jpa.domain.Specification;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import java.util.List;
+
+public interface EventRepositoryCustom {
+
+    /**
+     * Obtiene los IDs de una página de eventos ordenados por (startDate, id),
+     * con los eventos sin fecha al principio
+     * @param spec Criterios, incluida la posición de inicio
+     * @param limit Máximo de IDs
+     */
+    List<String> findIdsPage(Specification<Event> spec, int limit);
+}
@@ -0,0 +1,100 @@
+package mx.uam.tsis.ticketmaster.datos;
+
+import org.springframework.data.jpa.domain.Specification;
+import mx.uam.tsis.ticketmaster.dto.EventSearchRequest;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Traduce los criterios de búsqueda de eventos a una sola consulta. Los
+ * filtros de precio y disponibilidad usan los agregados que mantiene el
+ * evento, así que se resuelven con los índices de la tabla events sin
+ * revisar sus tipos de ticket.
+ */
+public final class EventSpecifications {
+
+    private EventSpecifications() {
+    }
+
+    /**
+     * Combina todos los criterios presentes en la solicitud, salvo el texto libre,
+     * que busca el índice invertido
+     * @param request Criterios de búsqueda (puede ser null)
+     * @return especificación que exige todos los criterios
+     */
+    public static Specification<Event> matching(EventSearchRequest request) {
+        return (root, query, cb) -> {
+            if (request == null) {
+                return cb.conjunction();
+            }
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (hasText(request.getName())) {
+                predicates.add(contains(cb, root.get("name"), request.getName()));
+            }
+            if (request.getCategory() != null) {
+                predicates.add(cb.equal(root.get("category"), request.getCategory()));
+            }
+            if (hasText(request.getVenue())) {
+                predicates.add(contains(cb, root.get("venue"), request.getVenue()));
+            }
+            if (request.getFromDate() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.<LocalDateTime>get("startDate"), request.getFromDate()));
+            }
+            if (request.getToDate() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.<LocalDateTime>get("startDate"), request.getToDate()));
+            }
+
+            // El precio de un evento es el de su tipo de ticket más barato; un evento
+            // sin precios pasa el mínimo y no el máximo
+            if (request.getMinPrice() != null) {
+                predicates.add(cb.or(cb.isNull(root.get("minPrice")),
+                    cb.greaterThanOrEqualTo(root.get("minPrice"), request.getMinPrice())));
+            }
+            if (request.getMaxPrice() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("minPrice"), request.getMaxPrice()));
+            }
+            if (Boolean.TRUE.equals(request.getHasAvailability())) {
+                predicates.add(cb.isFalse(root.get("soldOut")));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Eventos que van después de la posición indicada en el orden (startDate, id),
+     * con los eventos sin fecha al principio
+     * @param startDate Fecha del último evento de la página anterior (puede ser null)
+     * @param id ID del último evento de la página anterior
+     */
+    public static Specification<Event> after(LocalDateTime startDate, String id) {
+        return (root, query, cb) -> {
+            if (startDate == null) {
+                return cb.or(
+                    cb.isNotNull(root.get("startDate")),
+                    cb.greaterThan(root.get("id"), id));
+            }
+            return cb.or(
+                cb.greaterThan(root.get("startDate"), startDate),
+                cb.and(cb.equal(root.get("startDate"), startDate), cb.greaterThan(root.get("id"), id)));
+        };
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    private static Predicate contains(CriteriaBuilder cb, Expression<String> field, String value) {
+        String escaped = value.trim().toLowerCase(Locale.ROOT)
+            .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return cb.like(cb.lower(field), "%" + escaped + "%", '\\');
+    }
+}
@@ -1,11 +1,30 @@
 package mx.uam.tsis.ticketmaster.datos;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import mx.uam.tsis.ticketmaster.negocio.modelo.Seat;
 import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import java.util.Collection;
 import java.util.List;
 
 public interface SeatRepository extends JpaRepository<Seat, String> {
     List<Seat> findByTicketTypeAndAvailable(TicketType ticketType, boolean available);
     List<Seat> findByZone(String zone);
+
+    @Query("SELECT s.id AS id, s.seatRow AS seatRow, s.number AS number, s.zone AS zone, s.available AS available "
+        + "FROM Seat s WHERE s.ticketType.id = :ticketTypeId")
+    List<SeatView> findSeatViewsByTicketTypeId(String ticketTypeId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Seat s SET s.available = :available WHERE s.id IN :ids")
+    int updateAvailability(Collection<String> ids, boolean available);
+
+    interface SeatView {
+        String getId();
+        String getSeatRow();
+        String getNumber();
+        String getZone();
+        boolean isAvailable();
+    }
 }
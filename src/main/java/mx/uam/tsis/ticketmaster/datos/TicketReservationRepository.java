@@ -1,13 +1,110 @@
 package mx.uam.tsis.ticketmaster.datos;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.hibernate.jpa.HibernateHints;
+import jakarta.persistence.QueryHint;
 import mx.uam.tsis.ticketmaster.negocio.modelo.TicketReservation;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface TicketReservationRepository extends JpaRepository<TicketReservation, String> {
+    String SELECT_ROWS = "SELECT new mx.uam.tsis.ticketmaster.datos.TicketReservationRepository$ReservationRow("
+        + "r.id, t.id, t.name, t.venueZone, r.quantity, t.price, r.totalPrice, r.expiresAt, r.active) "
+        + "FROM TicketReservation r JOIN r.ticketType t ";
+
     List<TicketReservation> findByActiveAndExpiresAtBefore(boolean active, LocalDateTime expiresAt);
     List<TicketReservation> findByActiveAndExpiresAtAfter(boolean active, LocalDateTime expiresAt);
     List<TicketReservation> findByActive(boolean active);
     List<TicketReservation> findByTicketType_Id(String ticketTypeId);
+    Optional<TicketReservation> findByIdempotencyKey(String idempotencyKey);
+
+    /**
+     * Páginas de reservaciones en orden (expiresAt, id) con solo las columnas
+     * de la respuesta. La primera página no tiene posición; las siguientes
+     * empiezan después de la última fila devuelta.
+     */
+    @Query(SELECT_ROWS + "ORDER BY r.expiresAt, r.id")
+    List<ReservationRow> findPage(Limit limit);
+
+    @Query(SELECT_ROWS + "WHERE r.expiresAt > :expiresAt OR (r.expiresAt = :expiresAt AND r.id > :id) "
+        + "ORDER BY r.expiresAt, r.id")
+    List<ReservationRow> findPageAfter(LocalDateTime expiresAt, String id, Limit limit);
+
+    @Query(SELECT_ROWS + "WHERE r.active = true AND r.expiresAt > :now ORDER BY r.expiresAt, r.id")
+    List<ReservationRow> findActivePage(LocalDateTime now, Limit limit);
+
+    @Query(SELECT_ROWS + "WHERE r.active = true AND r.expiresAt > :now "
+        + "AND (r.expiresAt > :expiresAt OR (r.expiresAt = :expiresAt AND r.id > :id)) "
+        + "ORDER BY r.expiresAt, r.id")
+    List<ReservationRow> findActivePageAfter(LocalDateTime now, LocalDateTime expiresAt, String id, Limit limit);
+
+    /**
+     * Recorre todas las reservaciones en orden (expiresAt, id) sin cargarlas en
+     * memoria: el controlador JDBC trae las filas por bloques conforme se consumen.
+     * Debe consumirse dentro de una transacción y cerrarse al terminar.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(SELECT_ROWS + "ORDER BY r.expiresAt, r.id")
+    Stream<ReservationRow> streamAll();
+
+    @Query("SELECT r.ticketType.event.id FROM TicketReservation r WHERE r.id = :id")
+    Optional<String> findEventIdById(String id);
+
+    @Query("SELECT r.id AS id, r.ticketType.event.id AS eventId, r.expiresAt AS expiresAt "
+        + "FROM TicketReservation r WHERE r.active = true")
+    List<ExpirationView> findActiveExpirations();
+
+    @Query("SELECT r.ticketType.id AS ticketTypeId, SUM(r.quantity) AS quantity FROM TicketReservation r "
+        + "WHERE r.id IN :ids AND r.active = true AND r.expiresAt < :now GROUP BY r.ticketType.id")
+    List<ExpiredQuantity> sumExpiredQuantities(Collection<String> ids, LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE TicketReservation r SET r.active = false "
+        + "WHERE r.id IN :ids AND r.active = true AND r.expiresAt < :now")
+    int deactivateExpired(Collection<String> ids, LocalDateTime now);
+
+    /**
+     * Cuenta las reservaciones de cada evento, activas o no
+     */
+    @Query("SELECT r.ticketType.event.id AS eventId, COUNT(r) AS reservations FROM TicketReservation r "
+        + "GROUP BY r.ticketType.event.id")
+    List<EventReservationCount> countByEvent();
+
+    @Query("SELECT r.ticketType.event.id AS eventId, COUNT(r) AS reservations FROM TicketReservation r "
+        + "WHERE r.ticketType.event.id IN :eventIds GROUP BY r.ticketType.event.id")
+    List<EventReservationCount> countByEventIdIn(Collection<String> eventIds);
+
+    /**
+     * Columnas de una reservación y de su tipo de ticket que muestra la respuesta
+     */
+    record ReservationRow(String id, String ticketTypeId, String ticketTypeName, String venueZone,
+                          Integer quantity, Double price, double totalPrice, LocalDateTime expiresAt,
+                          boolean active) {
+    }
+
+    interface ExpirationView {
+        String getId();
+        String getEventId();
+        LocalDateTime getExpiresAt();
+    }
+
+    interface ExpiredQuantity {
+        String getTicketTypeId();
+        Long getQuantity();
+    }
+
+    interface EventReservationCount {
+        String getEventId();
+        Long getReservations();
+    }
 }
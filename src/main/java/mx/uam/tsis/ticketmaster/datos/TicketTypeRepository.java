@@ -1,13 +1,93 @@
 package mx.uam.tsis.ticketmaster.datos;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.hibernate.jpa.HibernateHints;
+import jakarta.persistence.QueryHint;
 import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
 import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface TicketTypeRepository extends JpaRepository<TicketType, String> {
+    /**
+     * Espacio de consultas de las escrituras del libro de inventario. Ninguna
+     * entidad lo usa, así que esas escrituras no vacían la caché de segundo nivel
+     */
+    String INVENTORY_SPACE = "ticket_inventory";
+
+    /**
+     * Las consultas de tipos de ticket por evento guardan sus resultados en la
+     * caché de consultas; se descartan cuando la entidad escribe la tabla ticket_types
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "ticket_types_by_event")
+    })
     List<TicketType> findByEvent(Event event);
+
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "ticket_types_by_event")
+    })
     Optional<TicketType> findByIdAndEvent(String id, Event event);
+
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "ticket_types_by_event")
+    })
     Optional<TicketType> findByIdAndEventId(String id, String eventId);
+
+    /**
+     * Descuenta tickets solo si queda suficiente inventario.
+     * Es una sentencia nativa que declara su propio espacio (INVENTORY_SPACE): solo
+     * toca columnas que la entidad no escribe, así que Hibernate no vacía la región
+     * ticket_types ni las consultas guardadas de ticket_types_by_event
+     * @return número de filas afectadas; 0 si no había suficientes tickets
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE ticket_types SET available_quantity = available_quantity - :quantity " +
+           "WHERE id = :id AND available_quantity >= :quantity", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = INVENTORY_SPACE))
+    int reserveAvailableQuantity(String id, int quantity);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE ticket_types SET available_quantity = available_quantity + :quantity WHERE id = :id",
+           nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = INVENTORY_SPACE))
+    int releaseAvailableQuantity(String id, int quantity);
+
+    @Query("SELECT t.availableQuantity FROM TicketType t WHERE t.id = :id")
+    Optional<Integer> findAvailableQuantityById(String id);
+
+    /**
+     * Lee los tipos de ticket con precio promocional de los eventos que aún no
+     * empiezan, junto con los datos del evento que muestran las promociones
+     */
+    @Query("SELECT t.id AS ticketTypeId, e.id AS eventId, e.name AS eventName, e.description AS description, "
+        + "e.startDate AS startDate, e.endDate AS endDate, e.venue AS venue, e.category AS category, "
+        + "t.price AS price, t.promotionalPrice AS promotionalPrice, "
+        + "t.saleStartDate AS saleStartDate, t.saleEndDate AS saleEndDate "
+        + "FROM TicketType t JOIN t.event e "
+        + "WHERE t.promotionalPrice IS NOT NULL AND t.promotionalPrice < t.price AND e.startDate > :now")
+    List<PromotionSource> findPromotionSources(LocalDateTime now);
+
+    interface PromotionSource {
+        String getTicketTypeId();
+        String getEventId();
+        String getEventName();
+        String getDescription();
+        LocalDateTime getStartDate();
+        LocalDateTime getEndDate();
+        String getVenue();
+        String getCategory();
+        Double getPrice();
+        Double getPromotionalPrice();
+        LocalDateTime getSaleStartDate();
+        LocalDateTime getSaleEndDate();
+    }
 }
@@ -1,5 +1,6 @@
 package mx.uam.tsis.ticketmaster.dto;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import lombok.Value;
@@ -144,6 +145,8 @@ public class ApiResponses {
         private Boolean discountApplied;
         private LocalDateTime expiresAt;
         private Boolean active;
+        // Asientos asignados por el servidor en el modo de mejores asientos
+        private List<SeatAvailabilityResponse> seats;
 
         public TicketReservationResponse(String reservationId, String ticketTypeId,
                                        String ticketTypeName, String venueZone,
@@ -172,6 +175,8 @@ public class ApiResponses {
         public Boolean getDiscountApplied() { return discountApplied; }
         public LocalDateTime getExpiresAt() { return expiresAt; }
         public Boolean isActive() { return active; }
+        public List<SeatAvailabilityResponse> getSeats() { return seats; }
+        public void setSeats(List<SeatAvailabilityResponse> seats) { this.seats = seats; }
     }
 
     @Data
@@ -213,6 +218,96 @@ public class ApiResponses {
         public Double getPrice() { return price; }
     }
 
+    @Data
+    @AllArgsConstructor
+    public static class QueueStatusResponse {
+        private String token;
+        private String eventId;
+        private String status;
+        private long position;
+        private long estimatedWaitSeconds;
+    }
+
+    /**
+     * Conteos para los filtros de la búsqueda. Cada faceta cuenta los eventos
+     * que cumplen todos los demás filtros, sin aplicar el suyo.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class EventFacetsResponse {
+        private long total;
+        private List<FacetCount> categories;
+        private List<FacetCount> venues;
+        private List<FacetCount> prices;
+        private List<FacetCount> months;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class FacetCount {
+        private String value;
+        private long count;
+    }
+
+    /**
+     * Eventos de un rango de fechas agrupados por día o semana, con el número
+     * de eventos de cada día del rango (incluidos los días sin eventos)
+     */
+    @Data
+    @AllArgsConstructor
+    public static class EventCalendarResponse {
+        private LocalDate from;
+        private LocalDate to;
+        private String groupBy;
+        private List<CalendarBucket> buckets;
+        private List<DayCount> histogram;
+    }
+
+    /**
+     * Eventos de un día, o de una semana que empieza en lunes
+     */
+    @Data
+    @AllArgsConstructor
+    public static class CalendarBucket {
+        private LocalDate start;
+        private List<CalendarEventResponse> events;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class CalendarEventResponse {
+        private String id;
+        private String name;
+        private LocalDateTime startDate;
+        private String venue;
+        private String category;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class DayCount {
+        private LocalDate day;
+        private long count;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class SuggestionResponse {
+        private String text;
+        private String type;
+        private long events;
+    }
+
+    /**
+     * Página de resultados; nextCursor es null en la última página
+     */
+    @Data
+    @AllArgsConstructor
+    public static class CursorPage<T> {
+        private List<T> items;
+        private String nextCursor;
+    }
+
     public static class ErrorResponse {
         private String error;
 
@@ -62,6 +62,9 @@ public class CreateEventRequest {
         @Schema(description = "Precio por ticket", example = "1500.0")
         private Double price;
 
+        @Schema(description = "Precio promocional durante la venta (opcional, menor que el precio)", example = "1200.0")
+        private Double promotionalPrice;
+
         @Schema(description = "Cantidad total de tickets disponibles", example = "100")
         private Integer quantity;
 
@@ -74,6 +77,9 @@ public class CreateEventRequest {
         @Schema(description = "Fecha de fin de venta")
         private LocalDateTime saleEndDate;
 
+        @Schema(description = "Franjas del contador de inventario para tipos muy solicitados (opcional)", example = "8")
+        private Integer inventoryShards;
+
         // Constructor
         public CreateTicketTypeRequest() {}
 
@@ -87,6 +93,9 @@ public class CreateEventRequest {
         public Double getPrice() { return price; }
         public void setPrice(Double price) { this.price = price; }
 
+        public Double getPromotionalPrice() { return promotionalPrice; }
+        public void setPromotionalPrice(Double promotionalPrice) { this.promotionalPrice = promotionalPrice; }
+
         public Integer getQuantity() { return quantity; }
         public void setQuantity(Integer quantity) { this.quantity = quantity; }
 
@@ -98,5 +107,8 @@ public class CreateEventRequest {
 
         public LocalDateTime getSaleEndDate() { return saleEndDate; }
         public void setSaleEndDate(LocalDateTime saleEndDate) { this.saleEndDate = saleEndDate; }
+
+        public Integer getInventoryShards() { return inventoryShards; }
+        public void setInventoryShards(Integer inventoryShards) { this.inventoryShards = inventoryShards; }
     }
 }
@@ -1,27 +1,61 @@
 package mx.uam.tsis.ticketmaster.negocio;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
 import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
-import mx.uam.tsis.ticketmaster.negocio.modelo.TicketReservation;
 import mx.uam.tsis.ticketmaster.datos.EventRepository;
+import mx.uam.tsis.ticketmaster.datos.EventRepository.SummaryRow;
+import mx.uam.tsis.ticketmaster.datos.EventSpecifications;
 import mx.uam.tsis.ticketmaster.datos.TicketTypeRepository;
 import mx.uam.tsis.ticketmaster.datos.TicketReservationRepository;
+import mx.uam.tsis.ticketmaster.datos.TicketReservationRepository.EventReservationCount;
+import mx.uam.tsis.ticketmaster.negocio.cache.CatalogCache;
+import mx.uam.tsis.ticketmaster.negocio.cache.CatalogCache.EventSnapshot;
+import mx.uam.tsis.ticketmaster.negocio.cache.CatalogCache.TicketTypeSnapshot;
+import mx.uam.tsis.ticketmaster.negocio.busqueda.EventCalendar;
+import mx.uam.tsis.ticketmaster.negocio.busqueda.EventSearchIndex;
+import mx.uam.tsis.ticketmaster.negocio.busqueda.EventSearchIndex.SearchHit;
+import mx.uam.tsis.ticketmaster.negocio.busqueda.FacetCatalog;
+import mx.uam.tsis.ticketmaster.negocio.busqueda.SuggestionTrie;
+import mx.uam.tsis.ticketmaster.negocio.promocion.PromotionSchedule;
+import mx.uam.tsis.ticketmaster.negocio.promocion.PromotionSchedule.Promotion;
+import mx.uam.tsis.ticketmaster.negocio.paginacion.KeysetCursor;
+import mx.uam.tsis.ticketmaster.negocio.paginacion.RankCursor;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.*;
 import mx.uam.tsis.ticketmaster.dto.CreateEventRequest;
 import mx.uam.tsis.ticketmaster.dto.CreateEventRequest.CreateTicketTypeRequest;
 import mx.uam.tsis.ticketmaster.dto.EventSearchRequest;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
 import java.util.UUID;
 
 @Service
 public class EventService {
+
+    // Eventos que se leen juntos al transmitir el catálogo
+    private static final int STREAM_BATCH_SIZE = 200;
+
+    // Días que abarca como máximo una consulta del calendario
+    private static final int MAX_CALENDAR_DAYS = 366;
+
     
     @Autowired
     private EventRepository eventRepository;
@@ -32,6 +66,24 @@ public class EventService {
     @Autowired
     private TicketReservationRepository ticketReservationRepository;
 
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private EventSearchIndex searchIndex;
+
+    @Autowired
+    private SuggestionTrie suggestionTrie;
+
+    @Autowired
+    private FacetCatalog facetCatalog;
+
+    @Autowired
+    private PromotionSchedule promotionSchedule;
+
+    @Autowired
+    private EventCalendar eventCalendar;
+
     public EventDetailResponse createEvent(CreateEventRequest request) {
         Event event = new Event();
         event.setId(UUID.randomUUID().toString());
@@ -39,14 +91,15 @@ public class EventService {
         event.setDescription(request.getDescription());
         event.setCategory(request.getCategory());
         event.setVenue(request.getVenue());
-        event.setStartDate(request.getStartDate());
+        // Con la precisión que guarda la base de datos, para que el índice del
+        // calendario y los cursores del listado ordenen igual
+        event.setStartDate(request.getStartDate() != null
+            ? request.getStartDate().truncatedTo(ChronoUnit.MICROS) : null);
         event.setEndDate(request.getEndDate());
         event.setCreatedAt(LocalDateTime.now());
         event.setUpdatedAt(LocalDateTime.now());
         event.setMaxTicketsPerPurchase(10);
         
-        Event savedEvent = eventRepository.save(event);
-
         List<TicketType> ticketTypes = new ArrayList<>();
         for (CreateTicketTypeRequest ticketTypeRequest : request.getTicketTypes()) {
             TicketType ticketType = new TicketType();
@@ -54,197 +107,353 @@ public class EventService {
             ticketType.setName(ticketTypeRequest.getName());
             ticketType.setVenueZone(ticketTypeRequest.getVenueZone());
             ticketType.setPrice(ticketTypeRequest.getPrice());
+            ticketType.setPromotionalPrice(ticketTypeRequest.getPromotionalPrice());
             ticketType.setQuantity(ticketTypeRequest.getQuantity());
             ticketType.setAvailableQuantity(ticketTypeRequest.getQuantity());
             ticketType.setMaxPerPerson(ticketTypeRequest.getMaxPerPerson());
             ticketType.setSaleStartDate(ticketTypeRequest.getSaleStartDate());
             ticketType.setSaleEndDate(ticketTypeRequest.getSaleEndDate());
+            ticketType.setInventoryShards(ticketTypeRequest.getInventoryShards());
+            ticketTypes.add(ticketType);
+        }
+        // Los agregados se guardan con el evento, sin una escritura extra
+        event.updateAggregates(ticketTypes);
+
+        Event savedEvent = eventRepository.save(event);
+        for (TicketType ticketType : ticketTypes) {
             ticketType.setEvent(savedEvent);
-            ticketTypes.add(ticketTypeRepository.save(ticketType));
+            ticketTypeRepository.save(ticketType);
         }
+        searchIndex.index(savedEvent);
+        suggestionTrie.add(savedEvent);
+        facetCatalog.add(savedEvent);
+        promotionSchedule.add(savedEvent, ticketTypes);
+        eventCalendar.add(savedEvent);
 
         return getEventDetails(savedEvent.getId());
     }
 
+    /**
+     * Versión de los detalles de un evento, para responder 304 sin armar la respuesta
+     * @param eventId ID del evento
+     * @return la versión, o vacío si el evento no existe
+     */
+    public Optional<String> getEventVersion(String eventId) {
+        return catalogCache.getEvent(eventId, () -> eventRepository.findByIdWithTicketTypes(eventId))
+            .map(catalogCache::eventVersion);
+    }
+
     public EventDetailResponse getEventDetails(String eventId) {
-        Event event = eventRepository.findById(eventId)
+        EventSnapshot event = catalogCache.getEvent(eventId, () -> eventRepository.findByIdWithTicketTypes(eventId))
             .orElseThrow(() -> new IllegalArgumentException("Evento no encontrado"));
             
-        List<TicketTypeInfo> ticketTypes = ticketTypeRepository.findByEvent(event)
+        List<TicketTypeInfo> ticketTypes = event.ticketTypes()
             .stream()
             .map(this::mapToTicketTypeInfo)
             .collect(Collectors.toList());
             
         return new EventDetailResponse(
-            event.getId(),
-            event.getName(),
-            event.getDescription(),
-            event.getVenue(),
-            event.getCategory(),
-            event.getStartDate(),
-            event.getEndDate(),
+            event.id(),
+            event.name(),
+            event.description(),
+            event.venue(),
+            event.category(),
+            event.startDate(),
+            event.endDate(),
             ticketTypes
         );
     }
 
-    public List<EventSummaryResponse> searchEvents(EventSearchRequest searchRequest) {
-        List<Event> events = eventRepository.findAll();
-        
-        return events.stream()
-            .filter(event -> matchesSearchCriteria(event, searchRequest))
-            .map(event -> {
-                List<TicketType> ticketTypes = ticketTypeRepository.findByEvent(event);
-                List<TicketTypeInfo> ticketTypeInfos = ticketTypes.stream()
-                    .map(this::mapToTicketTypeInfo)
-                    .collect(Collectors.toList());
-
-                int totalReservations = ticketTypes.stream()
-                    .mapToInt(type -> ticketReservationRepository.findByTicketType_Id(type.getId()).size())
-                    .sum();
-
-                return new EventSummaryResponse(
-                    event.getId(),
-                    event.getName(),
-                    event.getStartDate(),
-                    event.getVenue(),
-                    ticketTypeInfos,
-                    totalReservations
-                );
-            })
-            .collect(Collectors.toList());
+    /**
+     * Busca eventos por página. Si hay término de búsqueda, los resultados van
+     * del más al menos relevante; si no, en orden de fecha de inicio.
+     * @param searchRequest Criterios de búsqueda
+     * @param cursor Cursor devuelto por la página anterior, o null para la primera
+     * @param limit Tamaño de la página
+     */
+    public CursorPage<EventSummaryResponse> searchEvents(EventSearchRequest searchRequest, String cursor, int limit) {
+        // Con texto, los resultados van por relevancia; sin texto, por fecha de inicio
+        if (searchRequest != null && searchRequest.getQuery() != null && !searchRequest.getQuery().isBlank()) {
+            return searchRanked(searchRequest, cursor, limit);
+        }
+        if (onlyDateFilters(searchRequest)) {
+            // La página sale del índice del calendario, que ya está en el orden del listado
+            LocalDateTime from = searchRequest.getFromDate();
+            LocalDateTime to = searchRequest.getToDate();
+            return findPage(cursor, limit, (after, size) -> eventCalendar.idsPage(from, to, after, size));
+        }
+        return findPage(EventSpecifications.matching(searchRequest), cursor, limit);
     }
 
-    private boolean matchesSearchCriteria(Event event, EventSearchRequest searchRequest) {
-        if (searchRequest == null) {
-            return true;
+    /**
+     * Eventos de un rango de días agrupados por día o por semana (de lunes a
+     * domingo), con el número de eventos de cada día. Se calcula con el índice
+     * del calendario, sin consultar la base de datos.
+     * @param from Primer día
+     * @param to Último día, incluido
+     * @param groupBy "day" o "week"
+     */
+    public EventCalendarResponse getCalendar(LocalDate from, LocalDate to, String groupBy) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("El rango de fechas es inválido");
         }
-
-        if (searchRequest.getName() != null && !event.getName().toLowerCase().contains(searchRequest.getName().toLowerCase())) {
-            return false;
+        if (to.toEpochDay() - from.toEpochDay() >= MAX_CALENDAR_DAYS) {
+            throw new IllegalArgumentException("El rango no puede pasar de " + MAX_CALENDAR_DAYS + " días");
         }
-
-        if (searchRequest.getCategory() != null && !event.getCategory().equals(searchRequest.getCategory())) {
-            return false;
+        boolean weekly;
+        if ("day".equalsIgnoreCase(groupBy)) {
+            weekly = false;
+        } else if ("week".equalsIgnoreCase(groupBy)) {
+            weekly = true;
+        } else {
+            throw new IllegalArgumentException("Agrupación inválida, use day o week");
         }
 
-        if (searchRequest.getMinPrice() != null || searchRequest.getMaxPrice() != null) {
-            double minTicketPrice = ticketTypeRepository.findByEvent(event).stream()
-                .mapToDouble(TicketType::getPrice)
-                .min()
-                .orElse(Double.MAX_VALUE);
-            
-            if (searchRequest.getMinPrice() != null && minTicketPrice < searchRequest.getMinPrice()) {
-                return false;
-            }
-            
-            if (searchRequest.getMaxPrice() != null && minTicketPrice > searchRequest.getMaxPrice()) {
-                return false;
-            }
+        Map<LocalDate, List<CalendarEventResponse>> buckets = new LinkedHashMap<>();
+        for (EventCalendar.Entry entry : eventCalendar.range(from.atStartOfDay(), to.plusDays(1).atStartOfDay())) {
+            LocalDate day = entry.startDate().toLocalDate();
+            LocalDate start = weekly ? day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : day;
+            buckets.computeIfAbsent(start, k -> new ArrayList<>()).add(new CalendarEventResponse(
+                entry.id(), entry.name(), entry.startDate(), entry.venue(), entry.category()));
         }
 
-        if (Boolean.TRUE.equals(searchRequest.getHasAvailability())) {
-            boolean hasAvailableTickets = ticketTypeRepository.findByEvent(event).stream()
-                .anyMatch(ticketType -> ticketType.getAvailableQuantity() > 0);
-            if (!hasAvailableTickets) {
-                return false;
-            }
+        long[] counts = eventCalendar.countByDay(from, to);
+        List<DayCount> histogram = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            histogram.add(new DayCount(from.plusDays(i), counts[i]));
         }
+        return new EventCalendarResponse(from, to, weekly ? "week" : "day",
+            buckets.entrySet().stream().map(e -> new CalendarBucket(e.getKey(), e.getValue())).toList(),
+            histogram);
+    }
 
-        return true;
+    /**
+     * Conteos por categoría, lugar, rango de precio y mes para los filtros de
+     * la búsqueda, calculados en memoria en una sola pasada
+     * @param searchRequest Criterios de búsqueda
+     */
+    public EventFacetsResponse getSearchFacets(EventSearchRequest searchRequest) {
+        return facetCatalog.facets(searchRequest);
     }
 
-    public List<EventPromotionResponse> getPromotions() {
-        LocalDateTime now = LocalDateTime.now();
-        List<Event> events = eventRepository.findByStartDateAfter(now);
-        
-        return events.stream()
-            .flatMap(event -> ticketTypeRepository.findByEvent(event).stream()
-                .filter(ticketType -> {
-                    LocalDateTime saleStart = ticketType.getSaleStartDate();
-                    LocalDateTime saleEnd = ticketType.getSaleEndDate();
-                    return now.isAfter(saleStart) && now.isBefore(saleEnd) &&
-                           ticketType.getPromotionalPrice() != null &&
-                           ticketType.getPromotionalPrice() < ticketType.getPrice();
-                })
-                .map(ticketType -> new EventPromotionResponse(
-                    event.getId(),
-                    event.getName(),
-                    event.getDescription(),
-                    event.getStartDate(),
-                    event.getEndDate(),
-                    event.getVenue(),
-                    event.getCategory(),
-                    ticketType.getPrice(),
-                    ticketType.getPromotionalPrice(),
-                    ((ticketType.getPrice() - ticketType.getPromotionalPrice()) / ticketType.getPrice()) * 100,
-                    ticketType.getSaleEndDate()
-                ))
-            )
+    /**
+     * Sugerencias de autocompletado para lo que el usuario lleva escrito
+     * @param prefix Texto escrito
+     * @param limit Máximo de sugerencias
+     * @return nombres de eventos, lugares y categorías, de los más a los menos usados
+     */
+    public List<SuggestionResponse> suggest(String prefix, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("El número de sugerencias debe ser mayor a cero");
+        }
+        return suggestionTrie.suggest(prefix, limit).stream()
+            .map(s -> new SuggestionResponse(s.getText(), s.getType().name(), s.getWeight()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Obtiene las promociones vigentes, ya calculadas por el calendario de promociones
+     * @param at Momento a consultar para una vista previa, o null para ahora
+     */
+    public List<EventPromotionResponse> getPromotions(LocalDateTime at) {
+        List<Promotion> promotions = at == null ? promotionSchedule.current() : promotionSchedule.activeAt(at);
+        return promotions.stream()
+            .map(promotion -> new EventPromotionResponse(
+                promotion.eventId(),
+                promotion.eventName(),
+                promotion.description(),
+                promotion.startDate(),
+                promotion.endDate(),
+                promotion.venue(),
+                promotion.category(),
+                promotion.price(),
+                promotion.promotionalPrice(),
+                promotion.discountPercentage(),
+                promotion.saleEndDate()
+            ))
             .collect(Collectors.toList());
     }
     
-    private TicketTypeInfo mapToTicketTypeInfo(TicketType ticketType) {
+    private TicketTypeInfo mapToTicketTypeInfo(TicketTypeSnapshot ticketType) {
         return new TicketTypeInfo(
-            ticketType.getId(),
-            ticketType.getName(),
-            ticketType.getDescription(),
-            ticketType.getPrice(),
-            ticketType.getPromotionalPrice(),
-            ticketType.getAvailableQuantity(),
-            ticketType.getMaxPerPerson(),
-            ticketType.getSaleStartDate(),
-            ticketType.getSaleEndDate(),
-            ticketType.getVenueZone()
+            ticketType.id(),
+            ticketType.name(),
+            ticketType.description(),
+            ticketType.price(),
+            ticketType.promotionalPrice(),
+            catalogCache.availableQuantity(ticketType),
+            ticketType.maxPerPerson(),
+            ticketType.saleStartDate(),
+            ticketType.saleEndDate(),
+            ticketType.venueZone()
         );
     }
 
     /**
-     * Obtiene todos los eventos disponibles
-     * @return Lista de eventos con sus detalles
+     * Obtiene los eventos por página en orden de fecha de inicio
+     * @param cursor Cursor devuelto por la página anterior, o null para la primera
+     * @param limit Tamaño de la página
+     * @return la página de eventos con sus detalles
      */
-    public List<EventSummaryResponse> getAllEvents() {
-        List<Event> events = eventRepository.findAll();
-        return events.stream()
-            .map(event -> {
-                List<TicketType> ticketTypes = ticketTypeRepository.findByEvent(event);
-                
-                // Obtener el total de reservas para este evento
-                int totalReservations = ticketTypes.stream()
-                    .mapToInt(type -> ticketReservationRepository.findByTicketType_Id(type.getId()).size())
-                    .sum();
-
-                return new EventSummaryResponse(
-                    event.getId(),
-                    event.getName(),
-                    event.getStartDate(),
-                    event.getVenue(),
-                    ticketTypes.stream().map(this::mapToTicketTypeInfo).collect(Collectors.toList()),
-                    totalReservations
-                );
-            })
-            .collect(Collectors.toList());
+    public CursorPage<EventSummaryResponse> getAllEvents(String cursor, int limit) {
+        return findPage(EventSpecifications.matching(null), cursor, limit);
     }
 
-    public EventSummaryResponse getEventSummary(String eventId) {
-        Event event = eventRepository.findById(eventId)
-            .orElseThrow(() -> new IllegalArgumentException("Evento no encontrado"));
+    /**
+     * Transmite todos los eventos en orden de fecha de inicio sin juntarlos en
+     * memoria. Se recorren solo los IDs; de cada bloque de IDs se leen las
+     * columnas de los resúmenes y el conteo de reservaciones, sin cargar
+     * entidades, así que la memoria usada no depende del total de eventos.
+     * @param consumer Recibe cada evento conforme se lee
+     */
+    @Transactional(readOnly = true)
+    public void streamAllEvents(Consumer<EventSummaryResponse> consumer) {
+        List<String> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+        try (Stream<String> ids = eventRepository.streamAllIds()) {
+            ids.forEach(id -> {
+                batch.add(id);
+                if (batch.size() == STREAM_BATCH_SIZE) {
+                    emitSummaries(batch, consumer);
+                }
+            });
+        }
+        emitSummaries(batch, consumer);
+    }
 
-        List<TicketType> ticketTypes = ticketTypeRepository.findByEvent(event);
-        List<TicketTypeInfo> ticketTypeInfos = ticketTypes.stream()
-            .map(this::mapToTicketTypeInfo)
+    private void emitSummaries(List<String> batch, Consumer<EventSummaryResponse> consumer) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        loadSummaries(batch).forEach(consumer);
+        batch.clear();
+    }
+
+    private CursorPage<EventSummaryResponse> findPage(Specification<Event> spec, String cursor, int limit) {
+        return findPage(cursor, limit, (after, size) -> eventRepository.findIdsPage(after == null ? spec
+            : spec.and(EventSpecifications.after(after.position(), after.id())), size));
+    }
+
+    /**
+     * Pagina por posición: la página siguiente empieza después del último evento
+     * devuelto, así que cada página cuesta tres consultas sin importar su posición
+     * (IDs de la página, columnas de los eventos con sus tipos de ticket y conteo
+     * de reservaciones).
+     * @param idsPage Lee los IDs de una página en orden (startDate, id) después de
+     * la posición dada, o desde el principio si es null
+     */
+    private CursorPage<EventSummaryResponse> findPage(String cursor, int limit,
+                                                      BiFunction<KeysetCursor, Integer, List<String>> idsPage) {
+        int pageSize = KeysetCursor.pageSize(limit);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+
+        // Se pide una fila de más para saber si hay otra página
+        List<String> ids = idsPage.apply(after, pageSize + 1);
+        boolean hasMore = ids.size() > pageSize;
+        if (hasMore) {
+            ids = ids.subList(0, pageSize);
+        }
+        if (ids.isEmpty()) {
+            return new CursorPage<>(new ArrayList<>(), null);
+        }
+
+        List<EventSummaryResponse> summaries = loadSummaries(ids);
+        EventSummaryResponse last = summaries.isEmpty() ? null : summaries.get(summaries.size() - 1);
+        String nextCursor = hasMore && last != null
+            ? new KeysetCursor(last.getStartDate(), last.getId()).encode()
+            : null;
+        return new CursorPage<>(summaries, nextCursor);
+    }
+
+    /**
+     * Búsqueda por texto: el índice invertido encuentra y ordena los eventos por
+     * relevancia en una sola pasada, y los demás criterios se revisan en memoria
+     * contra las columnas del catálogo de facetas, sin consultar la base de datos.
+     */
+    private CursorPage<EventSummaryResponse> searchRanked(EventSearchRequest searchRequest, String cursor, int limit) {
+        int pageSize = KeysetCursor.pageSize(limit);
+        RankCursor position = RankCursor.decode(cursor);
+        SearchHit after = position == null ? null : new SearchHit(position.id(), position.score());
+
+        // Se pide un resultado de más para saber si hay otra página
+        List<SearchHit> page = hasFilters(searchRequest)
+            ? facetCatalog.search(searchRequest, after, pageSize + 1)
+            : searchIndex.search(searchRequest.getQuery(), after, pageSize + 1);
+
+        boolean hasMore = page.size() > pageSize;
+        if (hasMore) {
+            page = page.subList(0, pageSize);
+        }
+        if (page.isEmpty()) {
+            return new CursorPage<>(new ArrayList<>(), null);
+        }
+
+        List<String> ids = page.stream().map(SearchHit::eventId).toList();
+        SearchHit last = page.get(page.size() - 1);
+        String nextCursor = hasMore ? new RankCursor(last.score(), last.eventId()).encode() : null;
+        return new CursorPage<>(loadSummaries(ids), nextCursor);
+    }
+
+    private static boolean onlyDateFilters(EventSearchRequest request) {
+        return request != null && (request.getFromDate() != null || request.getToDate() != null)
+            && request.getName() == null && request.getCategory() == null && request.getVenue() == null
+            && request.getMinPrice() == null && request.getMaxPrice() == null
+            && !Boolean.TRUE.equals(request.getHasAvailability());
+    }
+
+    private static boolean hasFilters(EventSearchRequest request) {
+        return request.getName() != null || request.getCategory() != null || request.getVenue() != null
+            || request.getFromDate() != null || request.getToDate() != null
+            || request.getMinPrice() != null || request.getMaxPrice() != null
+            || Boolean.TRUE.equals(request.getHasAvailability());
+    }
+
+    /**
+     * Lee los resúmenes de los eventos con una consulta de columnas y otra de
+     * conteos de reservaciones, sin cargar entidades
+     * @return resúmenes en el orden de los IDs; los eventos que ya no existen se omiten
+     */
+    private List<EventSummaryResponse> loadSummaries(List<String> ids) {
+        Map<String, List<SummaryRow>> rows = eventRepository.findSummaryRowsByIdIn(ids).stream()
+            .collect(Collectors.groupingBy(SummaryRow::eventId));
+        Map<String, Long> reservations = toCountMap(ticketReservationRepository.countByEventIdIn(ids));
+        return ids.stream()
+            .map(rows::get)
+            .filter(Objects::nonNull)
+            .map(eventRows -> mapToSummary(eventRows, reservations))
             .collect(Collectors.toList());
+    }
 
-        int totalReservations = ticketTypes.stream()
-            .mapToInt(type -> ticketReservationRepository.findByTicketType_Id(type.getId()).size())
-            .sum();
+    public EventSummaryResponse getEventSummary(String eventId) {
+        List<EventSummaryResponse> summaries = loadSummaries(List.of(eventId));
+        if (summaries.isEmpty()) {
+            throw new IllegalArgumentException("Evento no encontrado");
+        }
+        return summaries.get(0);
+    }
 
+    /**
+     * Arma el resumen de un evento a partir de sus filas, una por tipo de ticket
+     */
+    private EventSummaryResponse mapToSummary(List<SummaryRow> rows, Map<String, Long> reservations) {
+        SummaryRow event = rows.get(0);
         return new EventSummaryResponse(
-            event.getId(),
-            event.getName(),
-            event.getStartDate(),
-            event.getVenue(),
-            ticketTypeInfos,
-            totalReservations
+            event.eventId(),
+            event.eventName(),
+            event.startDate(),
+            event.venue(),
+            rows.stream()
+                .filter(row -> row.ticketTypeId() != null)
+                .map(row -> new TicketTypeSnapshot(row.ticketTypeId(), row.eventId(), row.name(),
+                    row.description(), row.price(), row.promotionalPrice(), row.availableQuantity(),
+                    row.maxPerPerson(), row.saleStartDate(), row.saleEndDate(), row.venueZone()))
+                .map(this::mapToTicketTypeInfo)
+                .collect(Collectors.toList()),
+            reservations.getOrDefault(event.eventId(), 0L).intValue()
         );
     }
+
+    private static Map<String, Long> toCountMap(List<EventReservationCount> counts) {
+        return counts.stream().collect(Collectors.toMap(
+            EventReservationCount::getEventId, EventReservationCount::getReservations));
+    }
 }
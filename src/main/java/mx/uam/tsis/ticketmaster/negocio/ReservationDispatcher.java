@@ -0,0 +1,222 @@
+package mx.uam.tsis.ticketmaster.negocio;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.TicketReservationResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Envía los comandos de reservación, cancelación y expiración de cada evento a
+ * un buzón propio que los procesa uno a la vez. Así dos hilos nunca tocan el
+ * inventario del mismo evento, mientras que eventos distintos avanzan en paralelo.
+ * Un buzón existe solo mientras tiene comandos: al vaciarse se quita del mapa,
+ * así que los IDs de eventos o reservaciones inexistentes no se acumulan.
+ *
+ * Los buzones se ejecutan sobre un pool de hilos de plataforma porque el proyecto
+ * compila para Java 17; con Java 21 basta con cambiar el ejecutor por
+ * Executors.newVirtualThreadPerTaskExecutor().
+ */
+@Slf4j
+@Component
+public class ReservationDispatcher implements DisposableBean {
+
+    // Comandos que procesa un buzón antes de ceder el hilo a otros eventos
+    private static final int BATCH_SIZE = 64;
+
+    @Autowired
+    private TicketReservationService reservationService;
+
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final Executor executor;
+
+    public ReservationDispatcher(
+            @Value("${ticketmaster.reservations.mailbox-capacity:1000}") int capacity,
+            @Value("${ticketmaster.reservations.workers:16}") int workers,
+            @Value("${ticketmaster.reservations.run-on-caller-thread:false}") boolean runOnCallerThread) {
+        this.capacity = capacity;
+        // En el hilo que envía el comando el buzón sigue serializando; útil en pruebas transaccionales
+        this.executor = runOnCallerThread ? Runnable::run : Executors.newFixedThreadPool(workers, workerThreads());
+    }
+
+    /**
+     * Encola la creación de una reservación en el buzón del evento
+     * @return futuro con la reservación; falla con RejectedExecutionException si el buzón está lleno
+     */
+    public CompletableFuture<TicketReservationResponse> reserve(String eventId, String ticketTypeId,
+                                                               int quantity, Set<String> seatIds) {
+        return submit(eventId, true,
+            () -> reservationService.createReservation(eventId, ticketTypeId, quantity, seatIds));
+    }
+
+    /**
+     * Encola la creación idempotente de una reservación en el buzón del evento
+     * @see #reserve(String, String, int, Set)
+     */
+    public CompletableFuture<TicketReservationResponse> reserve(String eventId, String ticketTypeId, int quantity,
+                                                               Set<String> seatIds, String idempotencyKey) {
+        return submit(eventId, true,
+            () -> reservationService.createReservation(eventId, ticketTypeId, quantity, seatIds, idempotencyKey));
+    }
+
+    /**
+     * Encola una reservación con asientos asignados por el servidor en el buzón del evento
+     * @return futuro con la reservación; falla con RejectedExecutionException si el buzón está lleno
+     */
+    public CompletableFuture<TicketReservationResponse> reserveBestAvailable(String eventId, String ticketTypeId,
+                                                                            int quantity, String zone) {
+        return submit(eventId, true,
+            () -> reservationService.createBestAvailableReservation(eventId, ticketTypeId, quantity, zone));
+    }
+
+    /**
+     * Encola la creación idempotente de una reservación con asientos asignados por el servidor
+     * @see #reserveBestAvailable(String, String, int, String)
+     */
+    public CompletableFuture<TicketReservationResponse> reserveBestAvailable(String eventId, String ticketTypeId,
+                                                                            int quantity, String zone,
+                                                                            String idempotencyKey) {
+        return submit(eventId, true, () -> reservationService.createBestAvailableReservation(
+            eventId, ticketTypeId, quantity, zone, idempotencyKey));
+    }
+
+    /**
+     * Encola la cancelación de una reservación en el buzón de su evento
+     * @return futuro que termina cuando la reservación se canceló
+     */
+    public CompletableFuture<Void> cancel(String reservationId) {
+        // Una reservación desconocida va a su propio buzón y el servicio reporta que no existe
+        String key = reservationService.findEventId(reservationId).orElse("reservation:" + reservationId);
+        return submit(key, true, () -> {
+            reservationService.cancelReservation(reservationId);
+            return null;
+        });
+    }
+
+    /**
+     * Encola la expiración de un lote de reservaciones del evento. Los comandos
+     * del sistema no se rechazan aunque el buzón esté lleno.
+     * @return futuro con la cantidad de reservaciones expiradas
+     */
+    public CompletableFuture<Integer> expire(String eventId, Collection<String> reservationIds) {
+        return submit(eventId, false, () -> reservationService.expireReservations(reservationIds));
+    }
+
+    private <T> CompletableFuture<T> submit(String key, boolean bounded, Supplier<T> action) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable command = () -> {
+            // Si quien esperaba ya se rindió, no se toca el inventario
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(action.get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        };
+        // Se encola dentro de compute para no perder el comando si el buzón se está quitando
+        AtomicBoolean accepted = new AtomicBoolean();
+        Mailbox mailbox = mailboxes.compute(key, (k, current) -> {
+            Mailbox target = current != null ? current : new Mailbox(k);
+            accepted.set(target.offer(command, bounded));
+            return target;
+        });
+        if (accepted.get()) {
+            mailbox.schedule();
+        } else {
+            future.completeExceptionally(
+                new RejectedExecutionException("Demasiadas solicitudes para este evento, intenta de nuevo"));
+        }
+        return future;
+    }
+
+    /**
+     * Buzones con comandos pendientes o en proceso
+     */
+    int activeMailboxes() {
+        return mailboxes.size();
+    }
+
+    @Override
+    public void destroy() {
+        if (executor instanceof ExecutorService service) {
+            service.shutdown();
+        }
+    }
+
+    private static ThreadFactory workerThreads() {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "reservation-mailbox-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class Mailbox implements Runnable {
+        private final String key;
+        private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Mailbox(String key) {
+            this.key = key;
+        }
+
+        private boolean offer(Runnable command, boolean bounded) {
+            if (size.incrementAndGet() > capacity && bounded) {
+                size.decrementAndGet();
+                return false;
+            }
+            commands.add(command);
+            return true;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Runnable command;
+                for (int processed = 0; processed < BATCH_SIZE && (command = commands.poll()) != null; processed++) {
+                    size.decrementAndGet();
+                    command.run();
+                }
+            } catch (RuntimeException e) {
+                log.error("Error inesperado en el buzón {}", key, e);
+            } finally {
+                scheduled.set(false);
+                if (!commands.isEmpty()) {
+                    schedule();
+                } else {
+                    // Si llegó un comando mientras tanto, size ya lo cuenta y el buzón se queda
+                    mailboxes.computeIfPresent(key,
+                        (k, current) -> current == this && size.get() == 0 ? null : current);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package mx.uam.tsis.ticketmaster.negocio;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.TicketReservationResponse;
+import mx.uam.tsis.ticketmaster.negocio.cache.BoundedCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Hace idempotente la creación de reservaciones con la cabecera Idempotency-Key.
+ *
+ * El primer resultado de cada clave se guarda en una caché acotada con tiempo
+ * de vida y los reintentos lo reciben sin tocar el inventario. Los reintentos
+ * que llegan mientras la primera solicitud sigue en proceso esperan su
+ * resultado. Si la clave ya no está en la caché o la usó otro nodo, la columna
+ * única ticket_reservations.idempotency_key permite recuperar la reservación
+ * original desde la base de datos.
+ */
+@Slf4j
+@Component
+public class ReservationIdempotency {
+
+    @Autowired
+    private TicketReservationService reservationService;
+
+    private final BoundedCache<String, Completed> completed;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public ReservationIdempotency(
+            @Value("${ticketmaster.idempotency.max-entries:10000}") int maxEntries,
+            @Value("${ticketmaster.idempotency.ttl-minutes:60}") long ttlMinutes) {
+        this.completed = new BoundedCache<>(maxEntries, TimeUnit.MINUTES.toMillis(ttlMinutes));
+    }
+
+    /**
+     * Ejecuta la creación de una reservación una sola vez por clave
+     * @param key Clave de idempotencia enviada por el cliente
+     * @param fingerprint Datos de la solicitud; la misma clave no se puede usar con otros datos
+     * @param action Creación de la reservación, solo se invoca si la clave no se ha usado
+     * @return futuro con la reservación original
+     */
+    public CompletableFuture<TicketReservationResponse> execute(String key, String fingerprint,
+            Supplier<CompletableFuture<TicketReservationResponse>> action) {
+        Completed done = completed.get(key);
+        if (done != null) {
+            requireSameRequest(done.fingerprint(), fingerprint);
+            return CompletableFuture.completedFuture(done.response());
+        }
+
+        CompletableFuture<TicketReservationResponse> promise = new CompletableFuture<>();
+        InFlight running = inFlight.putIfAbsent(key, new InFlight(fingerprint, promise));
+        if (running != null) {
+            requireSameRequest(running.fingerprint(), fingerprint);
+            return copyOf(running.promise());
+        }
+
+        action.get()
+            .exceptionallyCompose(error -> replayFromDatabase(key, error))
+            .whenComplete((response, error) -> {
+                // La caché se llena antes de liberar la clave para que ningún reintento quede sin resultado
+                if (error == null) {
+                    completed.put(key, new Completed(fingerprint, response));
+                }
+                inFlight.remove(key);
+                if (error == null) {
+                    promise.complete(response);
+                } else {
+                    promise.completeExceptionally(unwrap(error));
+                }
+            });
+        return copyOf(promise);
+    }
+
+    /**
+     * Otro nodo guardó primero una reservación con la misma clave: se devuelve la suya
+     */
+    private CompletableFuture<TicketReservationResponse> replayFromDatabase(String key, Throwable error) {
+        if (unwrap(error) instanceof DataIntegrityViolationException) {
+            log.debug("Clave de idempotencia {} usada en otro nodo, se devuelve la reservación original", key);
+            return reservationService.findByIdempotencyKey(key)
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> CompletableFuture.failedFuture(error));
+        }
+        return CompletableFuture.failedFuture(error);
+    }
+
+    private static void requireSameRequest(String expected, String actual) {
+        if (!Objects.equals(expected, actual)) {
+            throw new IllegalArgumentException("La clave de idempotencia ya se usó con otra solicitud");
+        }
+    }
+
+    /**
+     * Cada espera recibe su propia copia: si una se cancela por tiempo, la reservación sigue su curso
+     */
+    private static <T> CompletableFuture<T> copyOf(CompletableFuture<T> future) {
+        return future.thenApply(Function.identity());
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private record Completed(String fingerprint, TicketReservationResponse response) {
+    }
+
+    private record InFlight(String fingerprint, CompletableFuture<TicketReservationResponse> promise) {
+    }
+}
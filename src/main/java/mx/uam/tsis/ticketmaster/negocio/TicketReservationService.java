@@ -1,26 +1,43 @@
 package mx.uam.tsis.ticketmaster.negocio;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import mx.uam.tsis.ticketmaster.datos.EventRepository;
 import mx.uam.tsis.ticketmaster.datos.TicketReservationRepository;
+import mx.uam.tsis.ticketmaster.datos.TicketReservationRepository.ExpiredQuantity;
+import mx.uam.tsis.ticketmaster.datos.TicketReservationRepository.ReservationRow;
 import mx.uam.tsis.ticketmaster.datos.TicketTypeRepository;
 import mx.uam.tsis.ticketmaster.datos.SeatRepository;
+import mx.uam.tsis.ticketmaster.negocio.cache.CatalogCache;
+import mx.uam.tsis.ticketmaster.negocio.cache.RequestCoalescer;
+import mx.uam.tsis.ticketmaster.negocio.expiracion.ReservationClosed;
+import mx.uam.tsis.ticketmaster.negocio.expiracion.ReservationHeld;
+import mx.uam.tsis.ticketmaster.negocio.inventario.InventoryLedger;
+import mx.uam.tsis.ticketmaster.negocio.inventario.SeatIndex;
+import mx.uam.tsis.ticketmaster.negocio.inventario.SeatIndex.SeatInfo;
 import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import mx.uam.tsis.ticketmaster.negocio.paginacion.KeysetCursor;
 import mx.uam.tsis.ticketmaster.negocio.modelo.TicketReservation;
 import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
-import mx.uam.tsis.ticketmaster.negocio.modelo.Seat;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.CursorPage;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.TicketReservationResponse;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.SeatAvailabilityResponse;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class TicketReservationService {
@@ -37,6 +54,22 @@ public class TicketReservationService {
 
     @Autowired
     private SeatRepository seatRepository;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private SeatIndex seatIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
     
     /**
      * Crea una nueva reservación de tickets
@@ -48,6 +81,93 @@ public class TicketReservationService {
      */
     @Transactional
     public TicketReservationResponse createReservation(String eventId, String ticketTypeId, int quantity, Set<String> seatIds) {
+        return createReservation(eventId, ticketTypeId, quantity, seatIds, null);
+    }
+
+    /**
+     * Crea una nueva reservación de tickets de forma idempotente: si ya existe una
+     * reservación con la misma clave, se devuelve sin tocar el inventario
+     * @param idempotencyKey Clave de idempotencia enviada por el cliente (opcional)
+     * @see #createReservation(String, String, int, Set)
+     */
+    @Transactional
+    public TicketReservationResponse createReservation(String eventId, String ticketTypeId, int quantity,
+                                                       Set<String> seatIds, String idempotencyKey) {
+        Optional<TicketReservationResponse> previous = findByIdempotencyKey(idempotencyKey);
+        if (previous.isPresent()) {
+            return previous.get();
+        }
+        TicketType ticketType = validateReservation(eventId, ticketTypeId, quantity);
+
+        // Validar asientos
+        boolean withSeats = seatIds != null && !seatIds.isEmpty();
+        if (withSeats && seatIds.size() != quantity) {
+            throw new IllegalArgumentException("La cantidad de asientos no coincide con la cantidad de tickets");
+        }
+
+        // Apartar asientos en el índice; si la transacción se revierte, se liberan
+        if (withSeats) {
+            SeatIndex.HoldResult hold = seatIndex.hold(ticketType, seatIds);
+            // Solo al fallar se consulta la tabla para distinguir asientos inexistentes
+            if (hold == SeatIndex.HoldResult.UNKNOWN_SEAT
+                    && seatRepository.findAllById(seatIds).size() != seatIds.size()) {
+                throw new IllegalArgumentException("Uno o más asientos no existen");
+            }
+            if (hold != SeatIndex.HoldResult.HELD) {
+                throw new IllegalStateException("Uno o más asientos no están disponibles o no pertenecen a este tipo de ticket");
+            }
+        }
+
+        return reserve(eventId, ticketType, quantity, idempotencyKey);
+    }
+
+    /**
+     * Crea una reservación eligiendo en el servidor los mejores asientos
+     * disponibles: juntos en la fila más cercana o, si no hay, el grupo más compacto
+     * @param eventId ID del evento
+     * @param ticketTypeId ID del tipo de ticket
+     * @param quantity Cantidad de tickets a reservar
+     * @param zone Zona de asientos a la que se limita la búsqueda (opcional)
+     * @return Respuesta con los detalles de la reservación y los asientos asignados
+     */
+    @Transactional
+    public TicketReservationResponse createBestAvailableReservation(String eventId, String ticketTypeId,
+                                                                    int quantity, String zone) {
+        return createBestAvailableReservation(eventId, ticketTypeId, quantity, zone, null);
+    }
+
+    /**
+     * Crea una reservación con los mejores asientos de forma idempotente
+     * @param idempotencyKey Clave de idempotencia enviada por el cliente (opcional)
+     * @see #createBestAvailableReservation(String, String, int, String)
+     */
+    @Transactional
+    public TicketReservationResponse createBestAvailableReservation(String eventId, String ticketTypeId,
+                                                                    int quantity, String zone, String idempotencyKey) {
+        Optional<TicketReservationResponse> previous = findByIdempotencyKey(idempotencyKey);
+        if (previous.isPresent()) {
+            return previous.get();
+        }
+        TicketType ticketType = validateReservation(eventId, ticketTypeId, quantity);
+
+        List<SeatInfo> seats = seatIndex.holdBestAvailable(ticketType, quantity, zone);
+        if (seats.isEmpty()) {
+            throw new IllegalStateException("No hay suficientes asientos disponibles");
+        }
+
+        TicketReservationResponse response = reserve(eventId, ticketType, quantity, idempotencyKey);
+        response.setSeats(seats.stream()
+            .map(seat -> new SeatAvailabilityResponse(
+                seat.id(), seat.row(), seat.number(), seat.zone(), ticketType.getPrice()))
+            .toList());
+        return response;
+    }
+
+    /**
+     * Valida el evento, el tipo de ticket y la cantidad de una reservación
+     * @return el tipo de ticket a reservar
+     */
+    private TicketType validateReservation(String eventId, String ticketTypeId, int quantity) {
         // Validar que el evento exista y esté activo
         Event event = eventRepository.findById(eventId)
             .orElseThrow(() -> new IllegalArgumentException("Evento no encontrado"));
@@ -79,74 +199,53 @@ public class TicketReservationService {
             throw new IllegalArgumentException("Excede el máximo de tickets permitidos por compra");
         }
 
-        // Validar disponibilidad
-        synchronized(ticketType) {
-            if (ticketType.getAvailableQuantity() < quantity) {
-                throw new IllegalStateException("No hay suficientes entradas disponibles");
-            }
+        return ticketType;
+    }
 
-            // Validar asientos
-            if (seatIds != null && !seatIds.isEmpty()) {
-                if (seatIds.size() != quantity) {
-                    throw new IllegalArgumentException("La cantidad de asientos no coincide con la cantidad de tickets");
-                }
-
-                Set<Seat> seats = seatRepository.findAllById(seatIds)
-                    .stream()
-                    .collect(Collectors.toSet());
-
-                if (seats.size() != seatIds.size()) {
-                    throw new IllegalArgumentException("Uno o más asientos no existen");
-                }
-
-                if (seats.stream().anyMatch(seat -> !seat.isAvailable() || !seat.getTicketType().equals(ticketType))) {
-                    throw new IllegalStateException("Uno o más asientos no están disponibles o no pertenecen a este tipo de ticket");
-                }
-
-                // Reservar asientos
-                seats.forEach(seat -> {
-                    seat.setAvailable(false);
-                    seatRepository.save(seat);
-                });
-            }
-            
-            // Calcular precio total con descuento si aplica
-            double pricePerTicket = ticketType.getPrice();
-            double totalPrice = pricePerTicket * quantity;
-            
-            if (quantity > 5) {
-                totalPrice = totalPrice * 0.9; // 10% de descuento
-            }
-            
-            // Crear reservación
-            TicketReservation reservation = new TicketReservation();
-            reservation.setId(UUID.randomUUID().toString());
-            reservation.setTicketType(ticketType);
-            reservation.setQuantity(quantity);
-            reservation.setTotalPrice(totalPrice);
-            reservation.setActive(true);
-            reservation.setExpiresAt(LocalDateTime.now().plusMinutes(RESERVATION_TIMEOUT_MINUTES));
-            
-            // Actualizar disponibilidad
-            ticketType.setAvailableQuantity(ticketType.getAvailableQuantity() - quantity);
-            ticketTypeRepository.save(ticketType);
-            
-            // Guardar reservación
-            reservation = reservationRepository.save(reservation);
-            
-            return new TicketReservationResponse(
-                reservation.getId(),
-                ticketType.getId(),
-                ticketType.getName(),
-                ticketType.getVenueZone(),
-                quantity,
-                pricePerTicket,
-                totalPrice,
-                quantity > 5,
-                reservation.getExpiresAt(),
-                reservation.getActive()
-            );
+    /**
+     * Aparta los tickets del inventario y guarda la reservación
+     */
+    private TicketReservationResponse reserve(String eventId, TicketType ticketType, int quantity,
+                                              String idempotencyKey) {
+        // Apartar del inventario; si la transacción se revierte, el libro lo compensa
+        if (!inventoryLedger.tryReserve(ticketType, quantity)) {
+            throw new IllegalStateException("No hay suficientes entradas disponibles");
+        }
+
+        // Calcular precio total con descuento si aplica
+        double pricePerTicket = ticketType.getPrice();
+        double totalPrice = pricePerTicket * quantity;
+        
+        if (quantity > 5) {
+            totalPrice = totalPrice * 0.9; // 10% de descuento
         }
+        
+        // Crear reservación
+        TicketReservation reservation = new TicketReservation();
+        reservation.setId(UUID.randomUUID().toString());
+        reservation.setTicketType(ticketType);
+        reservation.setQuantity(quantity);
+        reservation.setTotalPrice(totalPrice);
+        reservation.setActive(true);
+        reservation.setExpiresAt(LocalDateTime.now().plusMinutes(RESERVATION_TIMEOUT_MINUTES));
+        reservation.setIdempotencyKey(idempotencyKey);
+        
+        // Guardar reservación
+        reservation = reservationRepository.save(reservation);
+        eventPublisher.publishEvent(new ReservationHeld(reservation.getId(), eventId, reservation.getExpiresAt()));
+        
+        return new TicketReservationResponse(
+            reservation.getId(),
+            ticketType.getId(),
+            ticketType.getName(),
+            ticketType.getVenueZone(),
+            quantity,
+            pricePerTicket,
+            totalPrice,
+            quantity > 5,
+            reservation.getExpiresAt(),
+            reservation.getActive()
+        );
     }
     
     @Transactional
@@ -159,34 +258,93 @@ public class TicketReservationService {
         }
         
         // Devolver tickets al inventario
-        TicketType ticketType = reservation.getTicketType();
-        synchronized(ticketType) {
-            ticketType.setAvailableQuantity(ticketType.getAvailableQuantity() + reservation.getQuantity());
-            ticketTypeRepository.save(ticketType);
-            
-            // Eliminar la reservación en lugar de marcarla como inactiva
-            reservationRepository.delete(reservation);
-        }
+        inventoryLedger.release(reservation.getTicketType(), reservation.getQuantity());
+        
+        // Eliminar la reservación en lugar de marcarla como inactiva
+        reservationRepository.delete(reservation);
+        eventPublisher.publishEvent(new ReservationClosed(reservationId));
     }
     
-    @Scheduled(fixedRate = 300000) // Ejecutar cada 5 minutos en lugar de cada minuto
+    /**
+     * Marca como inactivas las reservaciones vencidas de un lote y regresa sus
+     * tickets al inventario con una sola liberación por tipo de ticket.
+     * Las reservaciones que ya no están activas o aún no vencen se ignoran.
+     * @param reservationIds IDs de las reservaciones del lote
+     * @return cantidad de reservaciones expiradas
+     */
     @Transactional
-    public void cleanupExpiredReservations() {
+    public int expireReservations(Collection<String> reservationIds) {
+        if (reservationIds.isEmpty()) {
+            return 0;
+        }
+        // Las cancelaciones del evento pasan por el mismo buzón, así que entre la
+        // suma y la actualización ninguna fila del lote cambia de estado
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime minimumAge = now.minusMinutes(1); // No procesar reservaciones más nuevas que 1 minuto
-        
-        List<TicketReservation> expiredReservations = 
-            reservationRepository.findByActiveAndExpiresAtBefore(true, now)
-                .stream()
-                .filter(reservation -> reservation.getExpiresAt().isBefore(minimumAge))
-                .toList();
-            
-        for (TicketReservation reservation : expiredReservations) {
-            cancelReservation(reservation.getId());
+        List<ExpiredQuantity> quantities = reservationRepository.sumExpiredQuantities(reservationIds, now);
+        if (quantities.isEmpty()) {
+            return 0;
         }
+        int expired = reservationRepository.deactivateExpired(reservationIds, now);
+
+        Map<String, TicketType> ticketTypes = ticketTypeRepository.findAllById(
+                quantities.stream().map(ExpiredQuantity::getTicketTypeId).toList())
+            .stream()
+            .collect(Collectors.toMap(TicketType::getId, Function.identity()));
+        quantities.forEach(released -> {
+            TicketType ticketType = ticketTypes.get(released.getTicketTypeId());
+            if (ticketType != null) {
+                inventoryLedger.release(ticketType, released.getQuantity().intValue());
+            }
+        });
+        return expired;
     }
 
+    /**
+     * Busca la reservación creada con una clave de idempotencia
+     * @param idempotencyKey Clave de idempotencia (opcional)
+     * @return la reservación, o vacío si la clave es nula o no se ha usado
+     */
+    public Optional<TicketReservationResponse> findByIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return Optional.empty();
+        }
+        return reservationRepository.findByIdempotencyKey(idempotencyKey).map(this::mapToResponse);
+    }
+
+    /**
+     * Obtiene el evento al que pertenece una reservación
+     * @param reservationId ID de la reservación
+     * @return ID del evento, o vacío si la reservación no existe
+     */
+    public Optional<String> findEventId(String reservationId) {
+        return reservationRepository.findEventIdById(reservationId);
+    }
+    
+    /**
+     * Versión del plano de asientos, para responder 304 a quien lo consulta
+     * seguido sin leer nada de la base de datos
+     * @param eventId ID del evento
+     * @param ticketTypeId ID del tipo de ticket
+     * @return la versión, o vacío si la consulta no respondería el plano: evento
+     * o tipo de ticket inexistente, o evento que ya no admite reservaciones
+     */
+    public Optional<String> getAvailableSeatsVersion(String eventId, String ticketTypeId) {
+        return catalogCache.getEvent(eventId, () -> eventRepository.findByIdWithTicketTypes(eventId))
+            .filter(event -> event.active() && event.startDate().isAfter(LocalDateTime.now()))
+            .filter(event -> event.ticketTypes().stream().anyMatch(type -> type.id().equals(ticketTypeId)))
+            .map(event -> catalogCache.seatsVersion(event, ticketTypeId));
+    }
+
+    /**
+     * Obtiene los asientos disponibles de un tipo de ticket. Las consultas
+     * idénticas que llegan al mismo tiempo comparten una sola lectura.
+     */
     public List<SeatAvailabilityResponse> getAvailableSeats(String eventId, String ticketTypeId) {
+        return requestCoalescer.execute("seats", eventId + "/" + ticketTypeId,
+            () -> loadAvailableSeats(eventId, ticketTypeId));
+    }
+
+    private List<SeatAvailabilityResponse> loadAvailableSeats(String eventId, String ticketTypeId) {
         // Validar que el evento exista y esté activo
         Event event = eventRepository.findById(eventId)
             .orElseThrow(() -> new IllegalArgumentException("Evento no encontrado"));
@@ -204,31 +362,69 @@ public class TicketReservationService {
             throw new IllegalStateException("El evento ya ha pasado");
         }
 
-        return seatRepository.findByTicketTypeAndAvailable(ticketType, true)
+        return seatIndex.getAvailableSeats(ticketType)
             .stream()
             .map(seat -> new SeatAvailabilityResponse(
-                seat.getId(),
-                seat.getSeatRow(),
-                seat.getNumber(),
-                seat.getZone(),
+                seat.id(),
+                seat.row(),
+                seat.number(),
+                seat.zone(),
                 ticketType.getPrice()
             ))
             .toList();
     }
 
-    public List<TicketReservationResponse> getAllReservations() {
-        List<TicketReservation> reservations = reservationRepository.findAll();
-        return reservations.stream()
-            .map(this::mapToResponse)
-            .toList();
+    /**
+     * Obtiene las reservaciones por página en orden de vencimiento
+     * @param cursor Cursor devuelto por la página anterior, o null para la primera
+     * @param limit Tamaño de la página
+     */
+    public CursorPage<TicketReservationResponse> getAllReservations(String cursor, int limit) {
+        int pageSize = KeysetCursor.pageSize(limit);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        // Se pide una fila de más para saber si hay otra página
+        List<ReservationRow> reservations = after == null
+            ? reservationRepository.findPage(Limit.of(pageSize + 1))
+            : reservationRepository.findPageAfter(after.position(), after.id(), Limit.of(pageSize + 1));
+        return toPage(reservations, pageSize);
     }
 
-    public List<TicketReservationResponse> getActiveReservations() {
-        List<TicketReservation> activeReservations = 
-            reservationRepository.findByActiveAndExpiresAtAfter(true, LocalDateTime.now());
-        return activeReservations.stream()
-            .map(this::mapToResponse)
-            .toList();
+    /**
+     * Transmite todas las reservaciones en orden de vencimiento sin juntarlas en
+     * memoria: se leen solo las columnas de la respuesta, sin cargar entidades,
+     * y cada una se entrega en cuanto se lee.
+     * @param consumer Recibe cada reservación conforme se lee
+     */
+    @Transactional(readOnly = true)
+    public void streamAllReservations(Consumer<TicketReservationResponse> consumer) {
+        try (Stream<ReservationRow> reservations = reservationRepository.streamAll()) {
+            reservations.map(this::mapToResponse).forEach(consumer);
+        }
+    }
+
+    /**
+     * Obtiene las reservaciones que aún no vencen, por página en orden de vencimiento
+     * @see #getAllReservations(String, int)
+     */
+    public CursorPage<TicketReservationResponse> getActiveReservations(String cursor, int limit) {
+        int pageSize = KeysetCursor.pageSize(limit);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        LocalDateTime now = LocalDateTime.now();
+        List<ReservationRow> reservations = after == null
+            ? reservationRepository.findActivePage(now, Limit.of(pageSize + 1))
+            : reservationRepository.findActivePageAfter(now, after.position(), after.id(), Limit.of(pageSize + 1));
+        return toPage(reservations, pageSize);
+    }
+
+    private CursorPage<TicketReservationResponse> toPage(List<ReservationRow> reservations, int pageSize) {
+        boolean hasMore = reservations.size() > pageSize;
+        List<ReservationRow> page = hasMore ? reservations.subList(0, pageSize) : reservations;
+        String nextCursor = null;
+        if (hasMore) {
+            ReservationRow last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.expiresAt(), last.id()).encode();
+        }
+        return new CursorPage<>(page.stream().map(this::mapToResponse).toList(), nextCursor);
     }
 
     private TicketReservationResponse mapToResponse(TicketReservation reservation) {
@@ -246,4 +442,19 @@ public class TicketReservationService {
             reservation.getActive()
         );
     }
+
+    private TicketReservationResponse mapToResponse(ReservationRow reservation) {
+        return new TicketReservationResponse(
+            reservation.id(),
+            reservation.ticketTypeId(),
+            reservation.ticketTypeName(),
+            reservation.venueZone(),
+            reservation.quantity(),
+            reservation.price(),
+            reservation.totalPrice(),
+            reservation.quantity() > 5,
+            reservation.expiresAt(),
+            reservation.active()
+        );
+    }
 }
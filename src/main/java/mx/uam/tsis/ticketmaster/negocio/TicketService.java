@@ -3,7 +3,7 @@ package mx.uam.tsis.ticketmaster.negocio;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.ApplicationEventPublisher;
 
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.TicketTypeDetailResponse;
 import mx.uam.tsis.ticketmaster.negocio.modelo.TicketReservation;
@@ -13,9 +13,15 @@ import mx.uam.tsis.ticketmaster.datos.TicketRepository;
 import mx.uam.tsis.ticketmaster.datos.TicketTypeRepository;
 import mx.uam.tsis.ticketmaster.datos.TicketReservationRepository;
 import mx.uam.tsis.ticketmaster.datos.EventRepository;
+import mx.uam.tsis.ticketmaster.negocio.cache.CatalogCache;
+import mx.uam.tsis.ticketmaster.negocio.cache.CatalogCache.EventSnapshot;
+import mx.uam.tsis.ticketmaster.negocio.cache.CatalogCache.TicketTypeSnapshot;
+import mx.uam.tsis.ticketmaster.negocio.expiracion.ReservationHeld;
+import mx.uam.tsis.ticketmaster.negocio.inventario.InventoryLedger;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -34,43 +40,57 @@ public class TicketService {
     @Autowired
     private EventRepository eventRepository;
 
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
     public TicketTypeDetailResponse getTicketTypeDetails(String ticketTypeId) {
-        TicketType ticketType = ticketTypeRepository.findById(ticketTypeId)
+        TicketTypeSnapshot ticketType = catalogCache
+            .getTicketType(ticketTypeId, () -> ticketTypeRepository.findById(ticketTypeId))
             .orElseThrow(() -> new IllegalArgumentException("Tipo de ticket no encontrado"));
             
-        return new TicketTypeDetailResponse(
-            ticketType.getId(),
-            ticketType.getName(),
-            ticketType.getDescription(),
-            ticketType.getPrice(),
-            ticketType.getAvailableQuantity(),
-            ticketType.getMaxPerPerson(),
-            ticketType.getVenueZone(),
-            ticketType.getSaleStartDate(),
-            ticketType.getSaleEndDate()
-        );
+        return mapToDetailResponse(ticketType);
+    }
+
+    /**
+     * Versión de los tipos de ticket de un evento, para responder 304 sin armar la respuesta
+     * @param eventId ID del evento
+     * @return la versión, o vacío si el evento no existe
+     */
+    public Optional<String> getTicketTypesVersion(String eventId) {
+        return catalogCache.getEvent(eventId, () -> eventRepository.findByIdWithTicketTypes(eventId))
+            .map(catalogCache::eventVersion);
     }
 
     public List<TicketTypeDetailResponse> getTicketTypesForEvent(String eventId) {
-        Event event = eventRepository.findById(eventId)
+        // Los tipos de ticket vienen con el evento guardado en la caché
+        EventSnapshot event = catalogCache.getEvent(eventId, () -> eventRepository.findByIdWithTicketTypes(eventId))
             .orElseThrow(() -> new IllegalArgumentException("Evento no encontrado"));
 
-        List<TicketType> ticketTypes = ticketTypeRepository.findByEvent(event);
-        return ticketTypes.stream()
-            .map(ticketType -> new TicketTypeDetailResponse(
-                ticketType.getId(),
-                ticketType.getName(),
-                ticketType.getDescription(),
-                ticketType.getPrice(),
-                ticketType.getAvailableQuantity(),
-                ticketType.getMaxPerPerson(),
-                ticketType.getVenueZone(),
-                ticketType.getSaleStartDate(),
-                ticketType.getSaleEndDate()
-            ))
+        return event.ticketTypes().stream()
+            .map(this::mapToDetailResponse)
             .collect(Collectors.toList());
     }
 
+    private TicketTypeDetailResponse mapToDetailResponse(TicketTypeSnapshot ticketType) {
+        return new TicketTypeDetailResponse(
+            ticketType.id(),
+            ticketType.name(),
+            ticketType.description(),
+            ticketType.price(),
+            catalogCache.availableQuantity(ticketType),
+            ticketType.maxPerPerson(),
+            ticketType.venueZone(),
+            ticketType.saleStartDate(),
+            ticketType.saleEndDate()
+        );
+    }
+
     @Transactional
     public TicketReservation selectTickets(String eventId, String ticketTypeId, Integer quantity) {
         if (quantity <= 0) {
@@ -105,11 +125,6 @@ public class TicketService {
             );
         }
 
-        // Validar disponibilidad
-        if (quantity > ticketType.getAvailableQuantity()) {
-            throw new IllegalArgumentException("No hay suficientes entradas disponibles");
-        }
-
         // Calcular precio total con descuento si aplica
         double pricePerTicket = ticketType.getPrice();
         double totalPrice = pricePerTicket * quantity;
@@ -128,32 +143,13 @@ public class TicketService {
         reservation.setActive(true);
         reservation.setExpiresAt(LocalDateTime.now().plusMinutes(5));
 
-        // Actualizar inventario
-        synchronized(ticketType) {
-            ticketType.setAvailableQuantity(ticketType.getAvailableQuantity() - quantity);
-            ticketTypeRepository.save(ticketType);
+        // Validar disponibilidad y actualizar inventario
+        if (!inventoryLedger.tryReserve(ticketType, quantity)) {
+            throw new IllegalArgumentException("No hay suficientes entradas disponibles");
         }
 
-        return ticketReservationRepository.save(reservation);
-    }
-    
-    @Scheduled(fixedRate = 60000) // Ejecutar cada minuto
-    @Transactional
-    public void cleanupExpiredReservations() {
-        List<TicketReservation> expiredReservations = 
-            ticketReservationRepository.findByActiveAndExpiresAtBefore(true, LocalDateTime.now());
-            
-        for (TicketReservation reservation : expiredReservations) {
-            // Restaurar tickets al inventario
-            TicketType ticketType = reservation.getTicketType();
-            ticketType.setAvailableQuantity(
-                ticketType.getAvailableQuantity() + reservation.getQuantity()
-            );
-            ticketTypeRepository.save(ticketType);
-            
-            // Marcar reserva como inactiva
-            reservation.setActive(false);
-            ticketReservationRepository.save(reservation);
-        }
+        TicketReservation saved = ticketReservationRepository.save(reservation);
+        eventPublisher.publishEvent(new ReservationHeld(saved.getId(), event.getId(), saved.getExpiresAt()));
+        return saved;
     }
 }
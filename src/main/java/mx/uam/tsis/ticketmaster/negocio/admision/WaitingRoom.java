@@ -0,0 +1,338 @@
+package mx.uam.tsis.ticketmaster.negocio.admision;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import mx.uam.tsis.ticketmaster.datos.EventRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Sala de espera virtual por evento.
+ *
+ * Cada evento admite un número máximo de intentos de reservación en curso. Los
+ * clientes que llegan cuando el cupo está lleno, o cuando ya hay una fila,
+ * reciben un turno con su posición. Los turnos se admiten en orden de llegada
+ * a una tasa fija; el cliente consulta su turno y, al ser admitido, repite la
+ * solicitud con el turno para entrar. Cada pase aparta su lugar en el cupo al
+ * admitirse, así que un turno solo se admite si hay lugar; los pases que no se
+ * usan a tiempo vencen y devuelven su lugar.
+ *
+ * Solo se abren salas para eventos existentes. Una sala sin fila, sin pases ni
+ * intentos en curso durante el tiempo de vida de un pase se cierra y sus
+ * métricas se quitan del registro.
+ *
+ * Métricas: ticketmaster.waiting_room.depth (clientes en fila),
+ * ticketmaster.waiting_room.in_flight (intentos en curso),
+ * ticketmaster.waiting_room.admitted (turnos admitidos) y
+ * ticketmaster.waiting_room.admit_rate (admitidos por segundo en el último ciclo),
+ * todas con la etiqueta event.
+ */
+@Slf4j
+@Component
+public class WaitingRoom {
+
+    public enum Status {
+        WAITING,
+        ADMITTED,
+        EXPIRED
+    }
+
+    /**
+     * Estado de un turno
+     * @param position clientes por delante, incluido este; 0 si ya fue admitido
+     * @param estimatedWaitSeconds espera estimada según la tasa de admisión
+     */
+    public record QueueStatus(String token, String eventId, Status status, long position, long estimatedWaitSeconds) {
+    }
+
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final Map<String, QueueTicket> tickets = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final Predicate<String> eventExists;
+    private final int maxInFlight;
+    private final int admitsPerSecond;
+    private final int admitsPerTick;
+    private final long tickMillis;
+    private final long passTtlMillis;
+    private final LongSupplier clock;
+
+    @Autowired
+    public WaitingRoom(MeterRegistry meterRegistry, EventRepository eventRepository,
+            @Value("${ticketmaster.admission.max-in-flight:50}") int maxInFlight,
+            @Value("${ticketmaster.admission.admit-per-second:20}") int admitsPerSecond,
+            @Value("${ticketmaster.admission.tick-ms:1000}") long tickMillis,
+            @Value("${ticketmaster.admission.pass-ttl-seconds:60}") long passTtlSeconds) {
+        this(meterRegistry, eventRepository::existsById, maxInFlight, admitsPerSecond, tickMillis, passTtlSeconds,
+            System::currentTimeMillis);
+    }
+
+    WaitingRoom(MeterRegistry meterRegistry, Predicate<String> eventExists, int maxInFlight, int admitsPerSecond,
+                long tickMillis, long passTtlSeconds, LongSupplier clock) {
+        this.meterRegistry = meterRegistry;
+        this.eventExists = eventExists;
+        this.maxInFlight = maxInFlight;
+        this.admitsPerSecond = admitsPerSecond;
+        this.admitsPerTick = (int) Math.max(1, admitsPerSecond * tickMillis / 1000);
+        this.tickMillis = tickMillis;
+        this.passTtlMillis = passTtlSeconds * 1000;
+        this.clock = clock;
+    }
+
+    /**
+     * Intenta entrar a reservar en un evento
+     * @param eventId ID del evento
+     * @param queueToken Turno obtenido antes (opcional)
+     * @return la admisión; si no fue admitido, incluye el turno a consultar
+     * @throws IllegalArgumentException si el evento no existe
+     */
+    public Admission enter(String eventId, String queueToken) {
+        while (true) {
+            Admission admission = enter(roomFor(eventId), eventId, queueToken);
+            if (admission != null) {
+                return admission;
+            }
+            // La sala se cerró por inactividad mientras se entraba; se abre otra
+        }
+    }
+
+    private Admission enter(Room room, String eventId, String queueToken) {
+        room.lastUsed = clock.getAsLong();
+        if (queueToken != null) {
+            QueueTicket ticket = tickets.get(queueToken);
+            if (ticket != null && ticket.eventId.equals(eventId)) {
+                if (ticket.status == Status.WAITING) {
+                    return Admission.waiting(status(room, ticket));
+                }
+                // Cada pase sirve para una sola entrada y ya trae su lugar en el cupo
+                if (ticket.status == Status.ADMITTED && tickets.remove(queueToken, ticket)) {
+                    return Admission.admitted(room);
+                }
+            }
+        }
+
+        // Se entra directo solo si nadie espera, para respetar el orden de llegada
+        if (room.depth.get() == 0 && room.tryAcquire(maxInFlight)) {
+            return Admission.admitted(room);
+        }
+        if (room.isClosed()) {
+            return null;
+        }
+
+        QueueTicket ticket = new QueueTicket(UUID.randomUUID().toString(), eventId, room.issued.incrementAndGet());
+        tickets.put(ticket.token, ticket);
+        room.waiting.add(ticket);
+        room.depth.incrementAndGet();
+        return Admission.waiting(status(room, ticket));
+    }
+
+    /**
+     * Consulta el estado de un turno; no cambia su lugar en la fila
+     * @param queueToken Turno
+     * @return el estado del turno
+     */
+    public QueueStatus getStatus(String queueToken) {
+        QueueTicket ticket = tickets.get(queueToken);
+        if (ticket == null) {
+            throw new IllegalArgumentException("Turno no encontrado o vencido");
+        }
+        return status(roomFor(ticket.eventId), ticket);
+    }
+
+    /**
+     * Admite los siguientes turnos de cada evento mientras haya lugar en el cupo,
+     * descarta los pases vencidos y cierra las salas inactivas
+     */
+    @Scheduled(fixedRateString = "${ticketmaster.admission.tick-ms:1000}")
+    public void admit() {
+        long now = clock.getAsLong();
+        rooms.forEach((eventId, room) -> {
+            int admitted = 0;
+            QueueTicket ticket;
+            while (admitted < admitsPerTick && room.waiting.peek() != null && room.tryAcquire(maxInFlight)) {
+                ticket = room.waiting.poll();
+                if (ticket == null) {
+                    room.inFlight.decrementAndGet();
+                    break;
+                }
+                room.depth.decrementAndGet();
+                ticket.admittedAt = now;
+                ticket.status = Status.ADMITTED;
+                room.admittedUpTo = ticket.sequence;
+                room.passes.add(ticket);
+                admitted++;
+            }
+            room.admittedCounter.increment(admitted);
+            room.lastAdmitRate = admitted * 1000.0 / tickMillis;
+
+            // Los pases usados ya salieron del mapa de turnos; aquí solo se quitan de la fila
+            while ((ticket = room.passes.peek()) != null && now - ticket.admittedAt >= passTtlMillis) {
+                room.passes.poll();
+                if (tickets.remove(ticket.token, ticket)) {
+                    ticket.status = Status.EXPIRED;
+                    room.inFlight.decrementAndGet();
+                }
+            }
+
+            if (room.depth.get() == 0 && room.passes.isEmpty() && now - room.lastUsed >= passTtlMillis
+                    && room.close() && rooms.remove(eventId, room)) {
+                room.meters.forEach(meterRegistry::remove);
+            }
+        });
+    }
+
+    private QueueStatus status(Room room, QueueTicket ticket) {
+        if (ticket.status != Status.WAITING) {
+            return new QueueStatus(ticket.token, ticket.eventId, ticket.status, 0, 0);
+        }
+        long position = Math.max(ticket.sequence - room.admittedUpTo, 1);
+        long waitSeconds = (position + admitsPerSecond - 1) / Math.max(admitsPerSecond, 1);
+        return new QueueStatus(ticket.token, ticket.eventId, Status.WAITING, position, waitSeconds);
+    }
+
+    private Room roomFor(String eventId) {
+        Room room = rooms.get(eventId);
+        if (room != null) {
+            return room;
+        }
+        if (eventId == null || !eventExists.test(eventId)) {
+            throw new IllegalArgumentException("Evento no encontrado");
+        }
+        return rooms.computeIfAbsent(eventId, this::createRoom);
+    }
+
+    private Room createRoom(String eventId) {
+        Room room = new Room(Counter.builder("ticketmaster.waiting_room.admitted")
+            .description("Turnos admitidos a reservar")
+            .tag("event", eventId)
+            .register(meterRegistry));
+        room.meters.add(room.admittedCounter);
+        room.meters.add(Gauge.builder("ticketmaster.waiting_room.depth", room.depth, AtomicInteger::get)
+            .description("Clientes esperando turno")
+            .tag("event", eventId)
+            .register(meterRegistry));
+        room.meters.add(Gauge.builder("ticketmaster.waiting_room.in_flight", room.inFlight, AtomicInteger::get)
+            .description("Intentos de reservación en curso")
+            .tag("event", eventId)
+            .register(meterRegistry));
+        room.meters.add(Gauge.builder("ticketmaster.waiting_room.admit_rate", room, r -> r.lastAdmitRate)
+            .description("Turnos admitidos por segundo en el último ciclo")
+            .tag("event", eventId)
+            .register(meterRegistry));
+        return room;
+    }
+
+    /**
+     * Resultado de intentar entrar. Si fue admitido, el cupo se libera con release().
+     */
+    public static final class Admission {
+        private final Room room;
+        private final QueueStatus queueStatus;
+        private boolean released;
+
+        private Admission(Room room, QueueStatus queueStatus) {
+            this.room = room;
+            this.queueStatus = queueStatus;
+        }
+
+        private static Admission admitted(Room room) {
+            return new Admission(room, null);
+        }
+
+        private static Admission waiting(QueueStatus queueStatus) {
+            return new Admission(null, queueStatus);
+        }
+
+        public boolean isAdmitted() {
+            return room != null;
+        }
+
+        /**
+         * @return el turno a consultar, o null si fue admitido
+         */
+        public QueueStatus getQueueStatus() {
+            return queueStatus;
+        }
+
+        public void release() {
+            if (room != null && !released) {
+                released = true;
+                room.inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class Room {
+        // Valor de inFlight en una sala cerrada: ningún intento vuelve a entrar
+        private static final int CLOSED = Integer.MIN_VALUE;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicLong issued = new AtomicLong();
+        private final Queue<QueueTicket> waiting = new ConcurrentLinkedQueue<>();
+        // Pases admitidos en orden de admisión, para vencer los que no se usan
+        private final Queue<QueueTicket> passes = new ConcurrentLinkedQueue<>();
+        private final Counter admittedCounter;
+        private final List<Meter> meters = new ArrayList<>();
+        private volatile long admittedUpTo;
+        private volatile double lastAdmitRate;
+        private volatile long lastUsed;
+
+        private Room(Counter admittedCounter) {
+            this.admittedCounter = admittedCounter;
+        }
+
+        private boolean tryAcquire(int max) {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= max || current == CLOSED) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Cierra la sala si no hay intentos en curso
+         */
+        private boolean close() {
+            return inFlight.compareAndSet(0, CLOSED);
+        }
+
+        private boolean isClosed() {
+            return inFlight.get() == CLOSED;
+        }
+    }
+
+    private static final class QueueTicket {
+        private final String token;
+        private final String eventId;
+        private final long sequence;
+        private volatile Status status = Status.WAITING;
+        private volatile long admittedAt;
+
+        private QueueTicket(String token, String eventId, long sequence) {
+            this.token = token;
+            this.eventId = eventId;
+            this.sequence = sequence;
+        }
+    }
+}
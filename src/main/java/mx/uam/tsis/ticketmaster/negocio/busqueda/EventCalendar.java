@@ -0,0 +1,265 @@
+package mx.uam.tsis.ticketmaster.negocio.busqueda;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import mx.uam.tsis.ticketmaster.datos.EventRepository;
+import mx.uam.tsis.ticketmaster.datos.EventRepository.CalendarSource;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import mx.uam.tsis.ticketmaster.negocio.paginacion.KeysetCursor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de los eventos por fecha de inicio para el calendario y los filtros
+ * de fecha de la búsqueda.
+ *
+ * Los eventos se guardan en un arreglo ordenado por (fecha de inicio, id), el
+ * mismo orden del listado, así que un rango de fechas se encuentra con dos
+ * búsquedas binarias y solo se recorren los eventos que caen dentro. Contar los
+ * eventos de cada día tampoco recorre los eventos: es la diferencia entre las
+ * posiciones donde empieza un día y el siguiente. Los eventos sin fecha no se
+ * indexan porque ningún filtro de fecha los incluye.
+ *
+ * El índice se carga con una consulta al arrancar, se completa con los eventos
+ * que se crean y se recarga periódicamente para recoger los cambios. Los
+ * eventos creados mientras se recarga se guardan aparte y se vuelven a agregar
+ * al índice nuevo, porque la consulta pudo leer la base de datos antes de que
+ * existieran.
+ */
+@Slf4j
+@Component
+public class EventCalendar {
+
+    private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::startDate)
+        .thenComparing(Entry::id);
+
+    /**
+     * Datos de un evento que muestra el calendario
+     */
+    public record Entry(String id, String name, String venue, String category, LocalDateTime startDate) {
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Entry[] entries = new Entry[16];
+    private int size;
+    // Eventos agregados durante una recarga; se protegen con el mismo candado
+    private final List<Entry> addedDuringRebuild = new ArrayList<>();
+    private int rebuilding;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    /**
+     * Vuelve a cargar el índice desde la base de datos
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${ticketmaster.calendar.refresh-ms:60000}",
+               initialDelayString = "${ticketmaster.calendar.refresh-ms:60000}")
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            rebuilding++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<CalendarSource> sources;
+        try {
+            sources = eventRepository.findCalendarSources();
+        } catch (RuntimeException e) {
+            finishRebuild(null, 0);
+            throw e;
+        }
+        Entry[] fresh = new Entry[Math.max(sources.size(), 16)];
+        for (int i = 0; i < sources.size(); i++) {
+            CalendarSource source = sources.get(i);
+            fresh[i] = new Entry(source.getId(), source.getName(), source.getVenue(), source.getCategory(),
+                source.getStartDate());
+        }
+        Arrays.sort(fresh, 0, sources.size(), ORDER);
+        finishRebuild(fresh, sources.size());
+        log.debug("Índice del calendario cargado con {} eventos", sources.size());
+    }
+
+    private void finishRebuild(Entry[] fresh, int freshSize) {
+        lock.writeLock().lock();
+        try {
+            if (fresh != null) {
+                entries = fresh;
+                size = freshSize;
+                for (Entry entry : addedDuringRebuild) {
+                    insert(entry);
+                }
+            }
+            if (--rebuilding == 0) {
+                addedDuringRebuild.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Agrega un evento recién creado en su lugar del orden
+     * @param event Evento creado
+     */
+    public void add(Event event) {
+        if (event.getStartDate() == null) {
+            return;
+        }
+        Entry entry = new Entry(event.getId(), event.getName(), event.getVenue(), event.getCategory(),
+            event.getStartDate());
+        lock.writeLock().lock();
+        try {
+            insert(entry);
+            if (rebuilding > 0) {
+                addedDuringRebuild.add(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(Entry entry) {
+        int position = Arrays.binarySearch(entries, 0, size, entry, ORDER);
+        if (position >= 0) {
+            // Ya lo trajo una recarga
+            return;
+        }
+        int insert = -position - 1;
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        System.arraycopy(entries, insert, entries, insert + 1, size - insert);
+        entries[insert] = entry;
+        size++;
+    }
+
+    /**
+     * Obtiene los eventos que empiezan dentro de un rango
+     * @param from Inicio del rango, incluido
+     * @param until Fin del rango, excluido
+     * @return eventos en orden de fecha de inicio
+     */
+    public List<Entry> range(LocalDateTime from, LocalDateTime until) {
+        lock.readLock().lock();
+        try {
+            int start = firstAtOrAfter(from);
+            int end = firstAtOrAfter(until);
+            return new ArrayList<>(Arrays.asList(entries).subList(start, Math.max(start, end)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene una página de IDs de los eventos que empiezan entre dos fechas, en
+     * el mismo orden (fecha de inicio, id) que el listado de eventos
+     * @param from Fecha mínima, incluida (opcional)
+     * @param to Fecha máxima, incluida (opcional)
+     * @param after Posición del último evento de la página anterior, o null
+     * @param limit Máximo de IDs
+     */
+    public List<String> idsPage(LocalDateTime from, LocalDateTime to, KeysetCursor after, int limit) {
+        lock.readLock().lock();
+        try {
+            int start = from != null ? firstAtOrAfter(from) : 0;
+            // Los eventos sin fecha van antes que todos los indexados
+            if (after != null && after.position() != null) {
+                start = Math.max(start, firstAfter(new Entry(after.id(), null, null, null, after.position())));
+            }
+            int end = to != null ? firstAfter(to) : size;
+            List<String> ids = new ArrayList<>(Math.max(0, Math.min(limit, end - start)));
+            for (int i = start; i < end && ids.size() < limit; i++) {
+                ids.add(entries[i].id());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cuenta los eventos que empiezan en cada día de un rango
+     * @param from Primer día
+     * @param to Último día, incluido
+     * @return un conteo por día, empezando por from
+     */
+    public long[] countByDay(LocalDate from, LocalDate to) {
+        int days = (int) (to.toEpochDay() - from.toEpochDay()) + 1;
+        long[] counts = new long[Math.max(days, 0)];
+        lock.readLock().lock();
+        try {
+            int start = firstAtOrAfter(from.atStartOfDay());
+            for (int day = 0; day < counts.length; day++) {
+                int end = firstAtOrAfter(from.plusDays(day + 1L).atStartOfDay());
+                counts[day] = end - start;
+                start = end;
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Posición del primer evento que empieza en la fecha dada o después
+     */
+    private int firstAtOrAfter(LocalDateTime date) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (entries[mid].startDate().isBefore(date)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Posición del primer evento que empieza después de la fecha dada
+     */
+    private int firstAfter(LocalDateTime date) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (!entries[mid].startDate().isAfter(date)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Posición del primer evento que va después de la posición dada en el orden (fecha, id)
+     */
+    private int firstAfter(Entry position) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ORDER.compare(entries[mid], position) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
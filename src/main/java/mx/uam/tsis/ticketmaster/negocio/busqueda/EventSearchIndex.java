@@ -0,0 +1,538 @@
+package mx.uam.tsis.ticketmaster.negocio.busqueda;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import mx.uam.tsis.ticketmaster.datos.EventRepository;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import lombok.extern.slf4j.Slf4j;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido en memoria para la búsqueda de eventos por texto.
+ *
+ * Indexa el nombre, la descripción, el lugar y la categoría de cada evento.
+ * Los textos se separan en palabras, se pasan a minúsculas y se les quitan
+ * los acentos, así que "Música" y "musica" son la misma palabra. Cada palabra
+ * de la consulta debe aparecer en el evento, completa o como prefijo. Un
+ * prefijo abarca como máximo las 128 palabras del diccionario que aparecen en
+ * más eventos, además de la palabra completa si existe; los eventos que solo
+ * coinciden por una palabra más rara no salen con ese prefijo, sino al escribir
+ * más letras.
+ *
+ * La relevancia suma, por cada palabra de la consulta, el peso del campo donde
+ * aparece (el nombre pesa más que la descripción) por su rareza en el catálogo;
+ * las coincidencias por prefijo valen menos que las exactas.
+ *
+ * Cada evento recibe un número de documento creciente, así que las listas de
+ * cada palabra quedan ordenadas. La búsqueda empieza por la palabra más rara y
+ * solo conserva los mejores resultados de la página, sin ordenar todos. Al
+ * volver a indexar un evento su documento anterior queda marcado como borrado
+ * y las listas se compactan cuando los borrados superan a los vigentes.
+ */
+@Slf4j
+@Component
+public class EventSearchIndex {
+
+    private static final int NAME = 1;
+    private static final int CATEGORY = 2;
+    private static final int VENUE = 4;
+    private static final int DESCRIPTION = 8;
+
+    // Palabras del diccionario que puede abarcar un prefijo, las más frecuentes; evita mezclar
+    // cientos de listas con "a"
+    private static final int MAX_PREFIX_TERMS = 128;
+    private static final double PREFIX_WEIGHT = 0.6;
+
+    private static final Comparator<SearchHit> RANKING =
+        Comparator.comparingDouble(SearchHit::score).reversed().thenComparing(SearchHit::eventId);
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, Integer> documents = new HashMap<>();
+    // Evento de cada documento; null si el documento fue reemplazado o borrado
+    private final List<String> eventIds = new ArrayList<>();
+    private int removed;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    /**
+     * Resultado de una búsqueda
+     * @param eventId ID del evento
+     * @param score relevancia; mayor es mejor
+     */
+    public record SearchHit(String eventId, double score) {
+    }
+
+    /**
+     * Carga en el índice todos los eventos de la base de datos
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Event> events = eventRepository.findAll();
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            documents.clear();
+            eventIds.clear();
+            removed = 0;
+            events.forEach(this::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Índice de búsqueda construido con {} eventos y {} palabras", events.size(), terms.size());
+    }
+
+    /**
+     * Agrega un evento al índice o reemplaza su versión anterior
+     * @param event Evento a indexar
+     */
+    public void index(Event event) {
+        lock.writeLock().lock();
+        try {
+            delete(event.getId());
+            add(event);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los eventos que contienen todas las palabras de la consulta
+     * @param query Texto a buscar
+     * @param after Último resultado de la página anterior, o null para empezar desde el más relevante
+     * @param limit Máximo de resultados
+     * @return los resultados que siguen a after, del más al menos relevante y luego por ID
+     */
+    public List<SearchHit> search(String query, SearchHit after, int limit) {
+        return search(query, after, limit, null);
+    }
+
+    /**
+     * Busca los eventos que contienen todas las palabras de la consulta y
+     * cumplen un filtro, en una sola pasada por los resultados.
+     *
+     * Si el evento de after sigue entre los resultados, la página continúa
+     * después de su relevancia actual: indexar otros eventos cambia la rareza
+     * de las palabras y con ella las relevancias, pero no el punto donde se quedó.
+     * @param filter Filtro por ID de evento; null acepta todos
+     * @see #search(String, SearchHit, int)
+     */
+    public List<SearchHit> search(String query, SearchHit after, int limit, Predicate<String> filter) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (tokens.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            Matches matches = match(tokens);
+            return top(matches, after == null ? null : anchor(matches, after), limit, filter);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los eventos más relevantes para la consulta
+     * @see #search(String, SearchHit, int)
+     */
+    public List<SearchHit> search(String query, int limit) {
+        return search(query, null, limit);
+    }
+
+    /**
+     * Busca todos los eventos que contienen las palabras de la consulta, sin
+     * calcular su orden por relevancia
+     * @param query Texto a buscar
+     * @return IDs de los eventos encontrados
+     */
+    public List<String> matchingIds(String query) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (tokens.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            Matches matches = match(tokens);
+            List<String> ids = new ArrayList<>(matches.size);
+            for (int i = 0; i < matches.size; i++) {
+                ids.add(eventIds.get(matches.docs[i]));
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return número de eventos en el índice
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Separa un texto en palabras en minúsculas y sin acentos
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+            .toLowerCase(Locale.ROOT);
+        for (String token : SEPARATORS.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private void add(Event event) {
+        Map<String, Integer> fields = new LinkedHashMap<>();
+        collect(fields, event.getName(), NAME);
+        collect(fields, event.getCategory(), CATEGORY);
+        collect(fields, event.getVenue(), VENUE);
+        collect(fields, event.getDescription(), DESCRIPTION);
+
+        int doc = eventIds.size();
+        eventIds.add(event.getId());
+        documents.put(event.getId(), doc);
+        fields.forEach((term, mask) -> terms.computeIfAbsent(term, t -> new Postings()).add(doc, mask));
+    }
+
+    private static void collect(Map<String, Integer> fields, String text, int field) {
+        for (String token : tokenize(text)) {
+            fields.merge(token, field, (a, b) -> a | b);
+        }
+    }
+
+    private void delete(String eventId) {
+        Integer doc = documents.remove(eventId);
+        if (doc != null) {
+            eventIds.set(doc, null);
+            removed++;
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (removed <= documents.size()) {
+            return;
+        }
+        terms.values().removeIf(postings -> postings.compact(eventIds) == 0);
+        removed = 0;
+    }
+
+    private Matches match(List<String> tokens) {
+        // Se empieza por la palabra más rara: las demás solo se revisan en sus documentos
+        List<Expansion> expansions = new ArrayList<>();
+        for (String token : tokens) {
+            expansions.add(expand(token));
+        }
+        expansions.sort(Comparator.comparingLong(expansion -> expansion.estimate));
+
+        Matches result = materialize(expansions.get(0));
+        for (int i = 1; i < expansions.size() && result.size > 0; i++) {
+            Expansion expansion = expansions.get(i);
+            // Si la lista de la palabra es mucho más grande, conviene buscar cada documento en ella
+            result = (long) result.size * expansion.postings.length * 16 < expansion.estimate
+                ? result.probe(expansion)
+                : result.intersect(materialize(expansion));
+        }
+        return result;
+    }
+
+    /**
+     * Palabras del diccionario que empiezan con el texto: la palabra completa y,
+     * si son demasiadas, las que aparecen en más eventos, para que el límite
+     * deje fuera la menor cantidad de resultados.
+     * Cada una pesa según su rareza en el catálogo; los prefijos pesan menos.
+     */
+    private Expansion expand(String token) {
+        Postings exact = null;
+        // Montículo de las palabras más frecuentes: en la cima queda la menos frecuente
+        PriorityQueue<Postings> frequent = new PriorityQueue<>(Comparator.comparingInt((Postings p) -> p.size));
+        for (Map.Entry<String, Postings> entry : terms.tailMap(token, true).entrySet()) {
+            if (!entry.getKey().startsWith(token)) {
+                break;
+            }
+            if (entry.getKey().length() == token.length()) {
+                exact = entry.getValue();
+                continue;
+            }
+            frequent.add(entry.getValue());
+            if (frequent.size() > MAX_PREFIX_TERMS) {
+                frequent.poll();
+            }
+        }
+
+        int total = Math.max(documents.size(), 1);
+        int count = frequent.size() + (exact != null ? 1 : 0);
+        Postings[] postings = new Postings[count];
+        double[] weights = new double[count];
+        int i = 0;
+        if (exact != null) {
+            postings[i] = exact;
+            weights[i++] = Math.log(1 + (double) total / exact.size);
+        }
+        for (Postings prefixed : frequent) {
+            postings[i] = prefixed;
+            weights[i++] = Math.log(1 + (double) total / prefixed.size) * PREFIX_WEIGHT;
+        }
+        return new Expansion(postings, weights);
+    }
+
+    /**
+     * Une las listas de la expansión en una sola; si un documento aparece en
+     * varias se queda con el mejor puntaje
+     */
+    private Matches materialize(Expansion expansion) {
+        Matches result = new Matches((int) Math.min(expansion.estimate, Integer.MAX_VALUE));
+        if (expansion.postings.length == 1) {
+            Postings postings = expansion.postings[0];
+            for (int i = 0; i < postings.size; i++) {
+                if (eventIds.get(postings.docs[i]) != null) {
+                    result.append(postings.docs[i], expansion.weights[0] * fieldWeight(postings.fields[i]));
+                }
+            }
+            return result;
+        }
+        // Mezcla de k listas ordenadas: cada cabeza es {documento, lista}
+        int[] positions = new int[expansion.postings.length];
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Comparator.comparingInt((int[] head) -> head[0]));
+        for (int term = 0; term < positions.length; term++) {
+            pushNext(expansion.postings[term], term, positions, heads);
+        }
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            int doc = head[0];
+            int term = head[1];
+            Postings postings = expansion.postings[term];
+            double score = expansion.weights[term] * fieldWeight(postings.fields[positions[term]]);
+            positions[term]++;
+            pushNext(postings, term, positions, heads);
+            if (result.size > 0 && result.docs[result.size - 1] == doc) {
+                result.scores[result.size - 1] = Math.max(result.scores[result.size - 1], score);
+            } else {
+                result.append(doc, score);
+            }
+        }
+        return result;
+    }
+
+    private void pushNext(Postings postings, int term, int[] positions, PriorityQueue<int[]> heads) {
+        // Los documentos reemplazados o borrados se saltan
+        while (positions[term] < postings.size && eventIds.get(postings.docs[positions[term]]) == null) {
+            positions[term]++;
+        }
+        if (positions[term] < postings.size) {
+            heads.add(new int[] {postings.docs[positions[term]], term});
+        }
+    }
+
+    /**
+     * Los mejores resultados que van después de after, sin ordenar todos los encontrados
+     */
+    private List<SearchHit> top(Matches matches, SearchHit after, int limit, Predicate<String> filter) {
+        PriorityQueue<SearchHit> best = new PriorityQueue<>(RANKING.reversed());
+        for (int i = 0; i < matches.size; i++) {
+            double score = matches.scores[i];
+            String eventId = eventIds.get(matches.docs[i]);
+            if ((after != null && !follows(score, eventId, after)) || (filter != null && !filter.test(eventId))) {
+                continue;
+            }
+            if (best.size() < limit) {
+                best.add(new SearchHit(eventId, score));
+            } else if (ranksBefore(score, eventId, best.peek())) {
+                best.poll();
+                best.add(new SearchHit(eventId, score));
+            }
+        }
+        List<SearchHit> hits = new ArrayList<>(best);
+        hits.sort(RANKING);
+        return hits;
+    }
+
+    /**
+     * El último resultado de la página anterior con su relevancia actual; los
+     * resultados están en orden de documento
+     */
+    private SearchHit anchor(Matches matches, SearchHit after) {
+        Integer doc = documents.get(after.eventId());
+        int i = doc == null ? -1 : Arrays.binarySearch(matches.docs, 0, matches.size, doc);
+        return i >= 0 ? new SearchHit(after.eventId(), matches.scores[i]) : after;
+    }
+
+    private static boolean follows(double score, String eventId, SearchHit after) {
+        return ranksBefore(after.score(), after.eventId(), new SearchHit(eventId, score));
+    }
+
+    private static boolean ranksBefore(double score, String eventId, SearchHit other) {
+        int byScore = Double.compare(score, other.score());
+        return byScore > 0 || (byScore == 0 && eventId.compareTo(other.eventId()) < 0);
+    }
+
+    private static double fieldWeight(int mask) {
+        double weight = 0;
+        if ((mask & NAME) != 0) {
+            weight += 3;
+        }
+        if ((mask & CATEGORY) != 0) {
+            weight += 2;
+        }
+        if ((mask & VENUE) != 0) {
+            weight += 1.5;
+        }
+        if ((mask & DESCRIPTION) != 0) {
+            weight += 1;
+        }
+        return weight;
+    }
+
+    /**
+     * Documentos de una palabra en orden creciente, con los campos donde aparece
+     */
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private byte[] fields = new byte[4];
+        private int size;
+
+        void add(int doc, int mask) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            docs[size] = doc;
+            fields[size] = (byte) mask;
+            size++;
+        }
+
+        int compact(List<String> eventIds) {
+            int live = 0;
+            for (int i = 0; i < size; i++) {
+                if (eventIds.get(docs[i]) != null) {
+                    docs[live] = docs[i];
+                    fields[live] = fields[i];
+                    live++;
+                }
+            }
+            size = live;
+            return live;
+        }
+
+    }
+
+    /**
+     * Listas de las palabras que abarca un término de la consulta, con su peso
+     */
+    private static final class Expansion {
+        private final Postings[] postings;
+        private final double[] weights;
+        // Documentos en todas las listas; sirve para decidir el orden de las intersecciones
+        private final long estimate;
+
+        Expansion(Postings[] postings, double[] weights) {
+            this.postings = postings;
+            this.weights = weights;
+            long total = 0;
+            for (Postings list : postings) {
+                total += list.size;
+            }
+            this.estimate = total;
+        }
+    }
+
+    /**
+     * Documentos encontrados en orden creciente con su puntaje acumulado
+     */
+    private static final class Matches {
+        private final int[] docs;
+        private final double[] scores;
+        private int size;
+
+        Matches(int capacity) {
+            this.docs = new int[capacity];
+            this.scores = new double[capacity];
+        }
+
+        void append(int doc, double score) {
+            docs[size] = doc;
+            scores[size] = score;
+            size++;
+        }
+
+        /**
+         * Documentos en ambas listas; los puntajes se suman
+         */
+        Matches intersect(Matches other) {
+            Matches result = new Matches(Math.min(size, other.size));
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (docs[i] < other.docs[j]) {
+                    i++;
+                } else if (docs[i] > other.docs[j]) {
+                    j++;
+                } else {
+                    result.append(docs[i], scores[i] + other.scores[j]);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Conserva los documentos que aparecen en alguna lista de la expansión,
+         * buscándolos uno por uno; suma el mejor puntaje encontrado
+         */
+        Matches probe(Expansion expansion) {
+            Matches result = new Matches(size);
+            for (int i = 0; i < size; i++) {
+                double best = -1;
+                for (int term = 0; term < expansion.postings.length; term++) {
+                    Postings postings = expansion.postings[term];
+                    int position = Arrays.binarySearch(postings.docs, 0, postings.size, docs[i]);
+                    if (position >= 0) {
+                        best = Math.max(best, expansion.weights[term] * fieldWeight(postings.fields[position]));
+                    }
+                }
+                if (best >= 0) {
+                    result.append(docs[i], scores[i] + best);
+                }
+            }
+            return result;
+        }
+    }
+}
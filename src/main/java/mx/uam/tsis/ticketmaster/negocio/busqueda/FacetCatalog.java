@@ -0,0 +1,485 @@
+package mx.uam.tsis.ticketmaster.negocio.busqueda;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import mx.uam.tsis.ticketmaster.datos.EventRepository;
+import mx.uam.tsis.ticketmaster.datos.EventRepository.AvailabilitySource;
+import mx.uam.tsis.ticketmaster.datos.EventRepository.FacetSource;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.EventFacetsResponse;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.FacetCount;
+import mx.uam.tsis.ticketmaster.dto.EventSearchRequest;
+import mx.uam.tsis.ticketmaster.negocio.busqueda.EventSearchIndex.SearchHit;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Catálogo de eventos en columnas para calcular las facetas de la búsqueda.
+ *
+ * Cada atributo de los eventos vive en su propio arreglo de primitivos; la
+ * categoría y el lugar se guardan como códigos de un diccionario, así que los
+ * filtros de texto se evalúan una vez por valor distinto y no por evento. El
+ * precio de un evento es el de su ticket más barato, igual que en la búsqueda,
+ * y junto con la disponibilidad sale de los agregados que mantiene el evento.
+ *
+ * Los filtros y las cuatro facetas se calculan en una sola pasada: un evento
+ * que cumple todos los filtros suma en todas las facetas, y uno que solo falla
+ * el filtro de una faceta suma únicamente en ella, para que la faceta muestre
+ * las alternativas a lo que ya se eligió. Los mismos filtros sirven a la
+ * búsqueda por texto, que ordena con el índice invertido y descarta en memoria
+ * los eventos que no los cumplen.
+ *
+ * El catálogo se carga con una consulta al arrancar, se completa con los
+ * eventos que se crean y se recarga periódicamente para recoger los cambios.
+ * La disponibilidad la actualiza el libro de inventario cada vez que escribe
+ * los agregados de los eventos, así que los filtros de disponibilidad y precio
+ * responden lo mismo que la búsqueda en la base de datos. Los eventos creados
+ * y la disponibilidad actualizada mientras se recarga se guardan aparte y se
+ * vuelven a aplicar al catálogo nuevo, porque la consulta pudo leer la base de
+ * datos antes de esos cambios.
+ */
+@Slf4j
+@Component
+public class FacetCatalog {
+
+    // Límites superiores de los rangos de precio; el último rango no tiene límite
+    static final double[] PRICE_LIMITS = {500, 1000, 2000, 5000};
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int NO_MONTH = -1;
+    private static final int NO_CODE = -1;
+
+    private static final int CATEGORY = 1;
+    private static final int VENUE = 2;
+    private static final int PRICE = 4;
+    private static final int DATE = 8;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Columns columns = new Columns(16);
+    // Eventos agregados durante una recarga; se protegen con el mismo candado
+    private final List<Event> addedDuringRebuild = new ArrayList<>();
+    private final Map<String, Boolean> availabilityDuringRebuild = new HashMap<>();
+    private int rebuilding;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private EventSearchIndex searchIndex;
+
+    /**
+     * Vuelve a cargar el catálogo desde la base de datos
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${ticketmaster.search.facets-refresh-ms:60000}",
+               initialDelayString = "${ticketmaster.search.facets-refresh-ms:60000}")
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            rebuilding++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<FacetSource> sources;
+        try {
+            sources = eventRepository.findFacetSources();
+        } catch (RuntimeException e) {
+            finishRebuild(null);
+            throw e;
+        }
+        Columns fresh = new Columns(Math.max(sources.size(), 16));
+        for (FacetSource source : sources) {
+            fresh.append(source.getId(), source.getName(), source.getCategory(), source.getVenue(),
+                source.getStartDate(), source.getMinPrice(), !source.getSoldOut());
+        }
+        finishRebuild(fresh);
+        log.debug("Catálogo de facetas cargado con {} eventos", sources.size());
+    }
+
+    private void finishRebuild(Columns fresh) {
+        lock.writeLock().lock();
+        try {
+            if (fresh != null) {
+                for (Event event : addedDuringRebuild) {
+                    append(fresh, event);
+                }
+                availabilityDuringRebuild.forEach(fresh::setAvailable);
+                columns = fresh;
+            }
+            if (--rebuilding == 0) {
+                addedDuringRebuild.clear();
+                availabilityDuringRebuild.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Agrega al catálogo un evento recién creado, con sus agregados ya calculados
+     * @param event Evento creado
+     */
+    public void add(Event event) {
+        lock.writeLock().lock();
+        try {
+            append(columns, event);
+            if (rebuilding > 0) {
+                addedDuringRebuild.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Actualiza la disponibilidad de los eventos con la que se acaba de escribir
+     * en sus agregados
+     * @param sources Eventos con su estado de agotado
+     */
+    public void updateAvailability(List<AvailabilitySource> sources) {
+        lock.writeLock().lock();
+        try {
+            for (AvailabilitySource source : sources) {
+                columns.setAvailable(source.getId(), !source.getSoldOut());
+                if (rebuilding > 0) {
+                    availabilityDuringRebuild.put(source.getId(), !source.getSoldOut());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void append(Columns target, Event event) {
+        target.append(event.getId(), event.getName(), event.getCategory(), event.getVenue(),
+            event.getStartDate(), event.getMinPrice(), !event.isSoldOut());
+    }
+
+    /**
+     * Cuenta los eventos que cumplen los criterios y los agrupa por categoría,
+     * lugar, rango de precio y mes de inicio
+     * @param request Criterios de búsqueda; null cuenta todo el catálogo
+     * @return el total de eventos que cumplen todos los criterios y las facetas
+     */
+    public EventFacetsResponse facets(EventSearchRequest request) {
+        EventSearchRequest criteria = request != null ? request : new EventSearchRequest();
+        // Los eventos que contienen el texto salen del índice invertido, igual que en la búsqueda
+        List<String> textMatches = hasText(criteria.getQuery()) ? searchIndex.matchingIds(criteria.getQuery()) : null;
+
+        lock.readLock().lock();
+        try {
+            return columns.count(criteria, textMatches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca por texto los eventos que además cumplen los demás criterios, en
+     * una sola pasada por el índice invertido
+     * @param request Criterios de búsqueda con el texto
+     * @param after Último resultado de la página anterior, o null
+     * @param limit Máximo de resultados
+     * @return los resultados que siguen a after, del más al menos relevante
+     */
+    public List<SearchHit> search(EventSearchRequest request, SearchHit after, int limit) {
+        lock.readLock().lock();
+        try {
+            Columns current = columns;
+            Columns.Filter filter = current.new Filter(request);
+            return searchIndex.search(request.getQuery(), after, limit, current.rowMatcher(filter));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    private static String fold(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    static String priceLabel(int bucket) {
+        if (bucket == PRICE_LIMITS.length) {
+            return String.format(Locale.ROOT, "%.0f+", PRICE_LIMITS[bucket - 1]);
+        }
+        double lower = bucket == 0 ? 0 : PRICE_LIMITS[bucket - 1];
+        return String.format(Locale.ROOT, "%.0f-%.0f", lower, PRICE_LIMITS[bucket]);
+    }
+
+    private static int priceBucket(double price) {
+        int bucket = 0;
+        while (bucket < PRICE_LIMITS.length && price >= PRICE_LIMITS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * Valores distintos de una columna de texto con su código
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return NO_CODE;
+            }
+            return codes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        String value(int code) {
+            return values.get(code);
+        }
+    }
+
+    private static final class Columns {
+        private final Dictionary categories = new Dictionary();
+        private final Dictionary venues = new Dictionary();
+        private final Map<String, Integer> rows = new HashMap<>();
+
+        // Nombres en minúsculas para el filtro por nombre
+        private String[] names;
+        private int[] category;
+        private int[] venue;
+        // Segundos desde la época; NO_DATE si el evento no tiene fecha
+        private long[] start;
+        // Meses desde el año 0; NO_MONTH si el evento no tiene fecha
+        private int[] month;
+        // Precio del ticket más barato; infinito si el evento no tiene precios
+        private double[] price;
+        private final BitSet available = new BitSet();
+        private int size;
+
+        Columns(int capacity) {
+            names = new String[capacity];
+            category = new int[capacity];
+            venue = new int[capacity];
+            start = new long[capacity];
+            month = new int[capacity];
+            price = new double[capacity];
+        }
+
+        void append(String id, String name, String categoryValue, String venueValue,
+                    LocalDateTime startDate, Double minPrice, boolean hasAvailability) {
+            if (rows.containsKey(id)) {
+                return;
+            }
+            if (size == names.length) {
+                int capacity = size * 2;
+                names = Arrays.copyOf(names, capacity);
+                category = Arrays.copyOf(category, capacity);
+                venue = Arrays.copyOf(venue, capacity);
+                start = Arrays.copyOf(start, capacity);
+                month = Arrays.copyOf(month, capacity);
+                price = Arrays.copyOf(price, capacity);
+            }
+            names[size] = fold(name);
+            category[size] = categories.encode(categoryValue);
+            venue[size] = venues.encode(venueValue);
+            start[size] = startDate == null ? NO_DATE : startDate.toEpochSecond(ZoneOffset.UTC);
+            month[size] = startDate == null ? NO_MONTH : startDate.getYear() * 12 + startDate.getMonthValue() - 1;
+            price[size] = minPrice == null ? Double.POSITIVE_INFINITY : minPrice;
+            available.set(size, hasAvailability);
+            rows.put(id, size);
+            size++;
+        }
+
+        void setAvailable(String id, boolean hasAvailability) {
+            Integer row = rows.get(id);
+            if (row != null) {
+                available.set(row, hasAvailability);
+            }
+        }
+
+        EventFacetsResponse count(EventSearchRequest criteria, List<String> textMatches) {
+            BitSet candidates = null;
+            if (textMatches != null) {
+                candidates = new BitSet(size);
+                for (String id : textMatches) {
+                    Integer row = rows.get(id);
+                    if (row != null) {
+                        candidates.set(row);
+                    }
+                }
+            }
+
+            Filter filter = new Filter(criteria);
+
+            long total = 0;
+            long[] categoryCounts = new long[categories.size()];
+            long[] venueCounts = new long[venues.size()];
+            long[] priceCounts = new long[PRICE_LIMITS.length + 1];
+            Map<Integer, Long> monthCounts = new HashMap<>();
+
+            for (int row = 0; row < size; row++) {
+                if ((candidates != null && !candidates.get(row)) || filter.excludes(row)) {
+                    continue;
+                }
+                int failed = filter.failed(row);
+                // Si falla más de un filtro no suma en ninguna faceta
+                if (failed != 0 && (failed & (failed - 1)) != 0) {
+                    continue;
+                }
+                if (failed == 0) {
+                    total++;
+                }
+                if ((failed == 0 || failed == CATEGORY) && category[row] != NO_CODE) {
+                    categoryCounts[category[row]]++;
+                }
+                if ((failed == 0 || failed == VENUE) && venue[row] != NO_CODE) {
+                    venueCounts[venue[row]]++;
+                }
+                if ((failed == 0 || failed == PRICE) && price[row] != Double.POSITIVE_INFINITY) {
+                    priceCounts[priceBucket(price[row])]++;
+                }
+                if ((failed == 0 || failed == DATE) && month[row] != NO_MONTH) {
+                    monthCounts.merge(month[row], 1L, Long::sum);
+                }
+            }
+
+            return new EventFacetsResponse(total,
+                byCount(categories, categoryCounts),
+                byCount(venues, venueCounts),
+                byPrice(priceCounts),
+                byMonth(monthCounts));
+        }
+
+        /**
+         * Acepta los IDs de eventos que cumplen todos los filtros
+         */
+        Predicate<String> rowMatcher(Filter filter) {
+            return id -> {
+                Integer row = rows.get(id);
+                return row != null && !filter.excludes(row) && filter.failed(row) == 0;
+            };
+        }
+
+        /**
+         * Criterios de búsqueda traducidos a las columnas. Los filtros de texto
+         * se evalúan una vez por valor del diccionario
+         */
+        final class Filter {
+            private final String name;
+            private final boolean[] categoryMatches;
+            private final boolean[] venueMatches;
+            private final boolean dateFiltered;
+            private final long from;
+            private final long to;
+            private final double minPrice;
+            private final double maxPrice;
+            private final boolean onlyAvailable;
+
+            Filter(EventSearchRequest criteria) {
+                name = hasText(criteria.getName()) ? fold(criteria.getName().trim()) : null;
+                if (criteria.getCategory() != null) {
+                    categoryMatches = new boolean[categories.size()];
+                    for (int code = 0; code < categoryMatches.length; code++) {
+                        categoryMatches[code] = categories.value(code).equals(criteria.getCategory());
+                    }
+                } else {
+                    categoryMatches = null;
+                }
+                if (hasText(criteria.getVenue())) {
+                    String venueFilter = fold(criteria.getVenue().trim());
+                    venueMatches = new boolean[venues.size()];
+                    for (int code = 0; code < venueMatches.length; code++) {
+                        venueMatches[code] = fold(venues.value(code)).contains(venueFilter);
+                    }
+                } else {
+                    venueMatches = null;
+                }
+                dateFiltered = criteria.getFromDate() != null || criteria.getToDate() != null;
+                from = criteria.getFromDate() == null ? NO_DATE : criteria.getFromDate().toEpochSecond(ZoneOffset.UTC);
+                to = criteria.getToDate() == null ? Long.MAX_VALUE : criteria.getToDate().toEpochSecond(ZoneOffset.UTC);
+                minPrice = criteria.getMinPrice() == null ? Double.NEGATIVE_INFINITY : criteria.getMinPrice();
+                maxPrice = criteria.getMaxPrice() == null ? Double.POSITIVE_INFINITY : criteria.getMaxPrice();
+                onlyAvailable = Boolean.TRUE.equals(criteria.getHasAvailability());
+            }
+
+            /**
+             * Filtros que no tienen faceta: si alguno falla, el evento queda fuera de todas
+             */
+            boolean excludes(int row) {
+                return (onlyAvailable && !available.get(row))
+                    || (name != null && (names[row] == null || !names[row].contains(name)));
+            }
+
+            /**
+             * Filtros con faceta que el evento no cumple
+             */
+            int failed(int row) {
+                int failed = 0;
+                if (categoryMatches != null && (category[row] == NO_CODE || !categoryMatches[category[row]])) {
+                    failed |= CATEGORY;
+                }
+                if (venueMatches != null && (venue[row] == NO_CODE || !venueMatches[venue[row]])) {
+                    failed |= VENUE;
+                }
+                // Sin precios el evento pasa el mínimo y no el máximo, como en la base de datos
+                if (price[row] < minPrice || price[row] > maxPrice) {
+                    failed |= PRICE;
+                }
+                if (dateFiltered && (start[row] == NO_DATE || start[row] < from || start[row] > to)) {
+                    failed |= DATE;
+                }
+                return failed;
+            }
+        }
+
+        private static List<FacetCount> byCount(Dictionary dictionary, long[] counts) {
+            List<FacetCount> facets = new ArrayList<>();
+            for (int code = 0; code < counts.length; code++) {
+                if (counts[code] > 0) {
+                    facets.add(new FacetCount(dictionary.value(code), counts[code]));
+                }
+            }
+            facets.sort(Comparator.comparingLong(FacetCount::getCount).reversed()
+                .thenComparing(FacetCount::getValue));
+            return facets;
+        }
+
+        private static List<FacetCount> byPrice(long[] counts) {
+            List<FacetCount> facets = new ArrayList<>();
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                if (counts[bucket] > 0) {
+                    facets.add(new FacetCount(priceLabel(bucket), counts[bucket]));
+                }
+            }
+            return facets;
+        }
+
+        private static List<FacetCount> byMonth(Map<Integer, Long> counts) {
+            List<FacetCount> facets = new ArrayList<>();
+            counts.keySet().stream().sorted().forEach(month -> facets.add(new FacetCount(
+                String.format(Locale.ROOT, "%04d-%02d", month / 12, month % 12 + 1), counts.get(month))));
+            return facets;
+        }
+    }
+}
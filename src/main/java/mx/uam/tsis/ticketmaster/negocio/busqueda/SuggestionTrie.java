@@ -0,0 +1,319 @@
+package mx.uam.tsis.ticketmaster.negocio.busqueda;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import mx.uam.tsis.ticketmaster.datos.EventRepository;
+import mx.uam.tsis.ticketmaster.datos.EventRepository.SuggestionSource;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trie de sugerencias para el autocompletado de eventos.
+ *
+ * Guarda los nombres de eventos, lugares y categorías sin acentos ni
+ * mayúsculas, a partir del inicio de cada una de sus palabras: "Foro Sol" se
+ * sugiere al escribir "fo" o "so". Es un trie compacto: cada arista lleva un
+ * tramo de texto y solo hay nodos donde las claves se separan o terminan, así
+ * que el número de nodos crece con las claves y no con sus letras. Cada nodo
+ * conserva las mejores K sugerencias de su subárbol ya ordenadas; un prefijo
+ * que termina a media arista responde con las del nodo al final de ella. Los
+ * hijos de cada nodo se guardan en arreglos ordenados en lugar de mapas para
+ * ocupar poca memoria.
+ *
+ * Una sugerencia pesa tanto como eventos la usan; a igual peso se ordena
+ * alfabéticamente.
+ */
+@Slf4j
+@Component
+public class SuggestionTrie {
+
+    // Sugerencias que guarda cada nodo; es el máximo que se puede pedir
+    public static final int TOP_K = 10;
+
+    // Palabras iniciales que se indexan por texto; evita que un nombre muy largo infle el trie
+    private static final int MAX_WORDS = 8;
+
+    private static final Comparator<Suggestion> RANKING = Comparator.comparingLong(Suggestion::getWeight).reversed()
+        .thenComparing(Suggestion::getText)
+        .thenComparing(Suggestion::getType);
+
+    public enum Type {
+        EVENT,
+        VENUE,
+        CATEGORY
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Suggestion> suggestions = new HashMap<>();
+    private Node root = new Node("");
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    /**
+     * Reconstruye el trie con los nombres, lugares y categorías de la tabla de eventos
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<SuggestionSource> sources = eventRepository.findSuggestionSources();
+        lock.writeLock().lock();
+        try {
+            root = new Node("");
+            suggestions.clear();
+            sources.forEach(source -> add(source.getName(), source.getVenue(), source.getCategory()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Trie de sugerencias construido con {} sugerencias", suggestions.size());
+    }
+
+    /**
+     * Agrega las sugerencias de un evento nuevo
+     * @param event Evento creado
+     */
+    public void add(Event event) {
+        lock.writeLock().lock();
+        try {
+            add(event.getName(), event.getVenue(), event.getCategory());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene las mejores sugerencias para un prefijo
+     * @param prefix Texto escrito por el usuario
+     * @param limit Máximo de sugerencias, hasta TOP_K
+     * @return sugerencias de mayor a menor peso
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = String.join(" ", EventSearchIndex.tokenize(prefix));
+        if (key.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = find(key);
+            if (node == null) {
+                return new ArrayList<>();
+            }
+            int count = Math.min(Math.min(limit, TOP_K), node.top.length);
+            List<Suggestion> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(node.top[i].copy());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(String name, String venue, String category) {
+        addSuggestion(Type.EVENT, name);
+        addSuggestion(Type.VENUE, venue);
+        addSuggestion(Type.CATEGORY, category);
+    }
+
+    private void addSuggestion(Type type, String text) {
+        List<String> words = EventSearchIndex.tokenize(text);
+        if (words.isEmpty()) {
+            return;
+        }
+        String folded = String.join(" ", words);
+        Suggestion suggestion = suggestions.computeIfAbsent(type + ":" + folded,
+            k -> new Suggestion(text.trim(), type, 0));
+        suggestion.weight++;
+
+        // Una clave por cada palabra inicial: "foro sol" y "sol"
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < Math.min(words.size(), MAX_WORDS); i++) {
+            keys.add(String.join(" ", words.subList(i, words.size())));
+        }
+        keys.forEach(key -> insert(key, suggestion));
+    }
+
+    /**
+     * Nodo cuyo subárbol tiene todas las claves que empiezan con el prefijo
+     */
+    private Node find(String prefix) {
+        Node node = root;
+        int matched = 0;
+        while (matched < prefix.length()) {
+            Node child = node.child(prefix.charAt(matched));
+            if (child == null) {
+                return null;
+            }
+            int common = commonLength(child.label, prefix, matched);
+            if (matched + common == prefix.length()) {
+                return child;
+            }
+            if (common < child.label.length()) {
+                return null;
+            }
+            node = child;
+            matched += common;
+        }
+        return node;
+    }
+
+    /**
+     * Agrega una clave y ofrece la sugerencia a cada nodo del camino. Si la clave
+     * se separa a media arista, la arista se parte en un nodo nuevo.
+     */
+    private void insert(String key, Suggestion suggestion) {
+        Node node = root;
+        int matched = 0;
+        while (matched < key.length()) {
+            Node child = node.child(key.charAt(matched));
+            if (child == null) {
+                child = node.addChild(new Node(key.substring(matched)));
+            } else {
+                int common = commonLength(child.label, key, matched);
+                if (common < child.label.length()) {
+                    child = node.split(child, common);
+                }
+            }
+            child.offer(suggestion);
+            node = child;
+            matched += child.label.length();
+        }
+    }
+
+    private static int commonLength(String label, String key, int from) {
+        int max = Math.min(label.length(), key.length() - from);
+        int common = 0;
+        while (common < max && label.charAt(common) == key.charAt(from + common)) {
+            common++;
+        }
+        return common;
+    }
+
+    /**
+     * Una sugerencia del autocompletado
+     */
+    public static final class Suggestion {
+        private final String text;
+        private final Type type;
+        private long weight;
+
+        private Suggestion(String text, Type type, long weight) {
+            this.text = text;
+            this.type = type;
+            this.weight = weight;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return número de eventos que usan este texto
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        private Suggestion copy() {
+            return new Suggestion(text, type, weight);
+        }
+    }
+
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Suggestion[] NO_SUGGESTIONS = new Suggestion[0];
+
+        // Texto de la arista que llega a este nodo
+        private String label;
+        // Primera letra de la arista de cada hijo, ordenadas
+        private char[] firsts = new char[0];
+        private Node[] children = NO_CHILDREN;
+        // Mejores sugerencias bajo este nodo, ordenadas
+        private Suggestion[] top = NO_SUGGESTIONS;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node child(char first) {
+            int index = Arrays.binarySearch(firsts, first);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node addChild(Node child) {
+            int insert = -Arrays.binarySearch(firsts, child.label.charAt(0)) - 1;
+            char[] newFirsts = new char[firsts.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(firsts, 0, newFirsts, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            newFirsts[insert] = child.label.charAt(0);
+            newChildren[insert] = child;
+            System.arraycopy(firsts, insert, newFirsts, insert + 1, firsts.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            firsts = newFirsts;
+            children = newChildren;
+            return child;
+        }
+
+        /**
+         * Parte la arista de un hijo después de sus primeras letras. El nodo
+         * intermedio tiene el mismo subárbol que el hijo, así que empieza con
+         * sus mismas sugerencias.
+         */
+        Node split(Node child, int length) {
+            Node middle = new Node(child.label.substring(0, length));
+            middle.top = child.top.clone();
+            child.label = child.label.substring(length);
+            middle.firsts = new char[] {child.label.charAt(0)};
+            middle.children = new Node[] {child};
+            children[Arrays.binarySearch(firsts, middle.label.charAt(0))] = middle;
+            return middle;
+        }
+
+        /**
+         * Considera una sugerencia cuyo peso acaba de crecer. Como los pesos solo
+         * crecen, basta con moverla hacia adelante o hacerle lugar.
+         */
+        void offer(Suggestion suggestion) {
+            int position = -1;
+            for (int i = 0; i < top.length; i++) {
+                if (top[i] == suggestion) {
+                    position = i;
+                    break;
+                }
+            }
+            if (position < 0) {
+                if (top.length < TOP_K) {
+                    top = Arrays.copyOf(top, top.length + 1);
+                } else if (RANKING.compare(suggestion, top[top.length - 1]) >= 0) {
+                    return;
+                }
+                position = top.length - 1;
+                top[position] = suggestion;
+            }
+            while (position > 0 && RANKING.compare(top[position], top[position - 1]) < 0) {
+                Suggestion previous = top[position - 1];
+                top[position - 1] = top[position];
+                top[position] = previous;
+                position--;
+            }
+        }
+    }
+}
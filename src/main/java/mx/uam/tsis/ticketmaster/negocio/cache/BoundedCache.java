@@ -0,0 +1,77 @@
+package mx.uam.tsis.ticketmaster.negocio.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché en memoria con tamaño máximo y tiempo de vida por entrada.
+ *
+ * Al llenarse se descarta la entrada usada hace más tiempo; las entradas
+ * vencidas se descartan cuando se consultan. Todas las operaciones son O(1).
+ *
+ * @param <K> tipo de la llave
+ * @param <V> tipo del valor
+ */
+public class BoundedCache<K, V> {
+
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<K, Entry<V>> entries;
+
+    public BoundedCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::currentTimeMillis);
+    }
+
+    public BoundedCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("El tamaño máximo debe ser mayor a 0");
+        }
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        // En orden de acceso, la primera entrada es la usada hace más tiempo
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return el valor guardado, o null si no existe o ya venció
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() <= clock.getAsLong()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, clock.getAsLong() + ttlMillis));
+    }
+
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return cantidad de entradas guardadas, incluidas las vencidas aún no descartadas
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+}
@@ -0,0 +1,228 @@
+package mx.uam.tsis.ticketmaster.negocio.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import mx.uam.tsis.ticketmaster.negocio.inventario.InventoryLedger;
+import mx.uam.tsis.ticketmaster.negocio.inventario.SeatIndex;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Caché de los datos estáticos del catálogo: eventos y tipos de ticket.
+ *
+ * Guarda copias inmutables de los nombres, fechas y precios, que casi nunca
+ * cambian, en cachés con tamaño máximo y tiempo de vida. La disponibilidad no
+ * se guarda como dato vigente: al responder se toma del libro de inventario,
+ * así que las reservaciones, cancelaciones y expiraciones no invalidan nada.
+ * La cantidad guardada solo se usa si el libro aún no carga ese tipo de
+ * ticket, lo que significa que no ha cambiado desde que se leyó. Las lecturas
+ * simultáneas de una entrada que falta se juntan en una sola consulta.
+ *
+ * También calcula las versiones que se usan como ETag: la fecha de edición del
+ * evento más las versiones de inventario de sus tipos de ticket.
+ *
+ * Métricas:
+ * - ticketmaster.catalog_cache.requests (cache, result=hit|miss): aciertos y fallos
+ * - ticketmaster.catalog_cache.size (cache): entradas guardadas
+ * - ticketmaster.catalog_cache.age (cache): antigüedad de los datos servidos desde la caché
+ * - ticketmaster.catalog_cache.availability (source=ledger|stored): de dónde salió la disponibilidad
+ */
+@Component
+public class CatalogCache {
+
+    /**
+     * Datos estáticos de un tipo de ticket
+     * @param availableQuantity disponibilidad al momento de leerlo; la vigente sale de availableQuantity(...)
+     */
+    public record TicketTypeSnapshot(String id, String eventId, String name, String description, Double price,
+                                     Double promotionalPrice, Integer availableQuantity, Integer maxPerPerson,
+                                     LocalDateTime saleStartDate, LocalDateTime saleEndDate, String venueZone) {
+
+        public static TicketTypeSnapshot of(TicketType ticketType) {
+            return new TicketTypeSnapshot(ticketType.getId(),
+                ticketType.getEvent() != null ? ticketType.getEvent().getId() : null,
+                ticketType.getName(), ticketType.getDescription(), ticketType.getPrice(),
+                ticketType.getPromotionalPrice(), ticketType.getAvailableQuantity(), ticketType.getMaxPerPerson(),
+                ticketType.getSaleStartDate(), ticketType.getSaleEndDate(), ticketType.getVenueZone());
+        }
+    }
+
+    /**
+     * Datos estáticos de un evento con sus tipos de ticket
+     * @param active si el evento admitía reservaciones al momento de leerlo
+     */
+    public record EventSnapshot(String id, String name, String description, String venue, String category,
+                                LocalDateTime startDate, LocalDateTime endDate, LocalDateTime updatedAt,
+                                boolean active, List<TicketTypeSnapshot> ticketTypes) {
+
+        public static EventSnapshot of(Event event) {
+            return new EventSnapshot(event.getId(), event.getName(), event.getDescription(), event.getVenue(),
+                event.getCategory(), event.getStartDate(), event.getEndDate(), event.getUpdatedAt(),
+                event.isActive(), event.getTicketTypes().stream().map(TicketTypeSnapshot::of).toList());
+        }
+    }
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private SeatIndex seatIndex;
+
+    private final Region<EventSnapshot> events;
+    private final Region<TicketTypeSnapshot> ticketTypes;
+    private final Counter fromLedger;
+    private final Counter fromSnapshot;
+    private final RequestCoalescer coalescer;
+    private final LongSupplier clock;
+    // Las versiones del inventario vuelven a empezar al reiniciar; el arranque distingue unas de otras
+    private final long startedAt;
+
+    @Autowired
+    public CatalogCache(MeterRegistry meterRegistry, RequestCoalescer coalescer,
+            @Value("${ticketmaster.catalog-cache.max-entries:5000}") int maxEntries,
+            @Value("${ticketmaster.catalog-cache.ttl-minutes:10}") long ttlMinutes) {
+        this(meterRegistry, coalescer, maxEntries, TimeUnit.MINUTES.toMillis(ttlMinutes), System::currentTimeMillis);
+    }
+
+    CatalogCache(MeterRegistry meterRegistry, RequestCoalescer coalescer, int maxEntries, long ttlMillis,
+                 LongSupplier clock) {
+        this.coalescer = coalescer;
+        this.clock = clock;
+        this.startedAt = clock.getAsLong();
+        this.events = new Region<>("events", maxEntries, ttlMillis, meterRegistry);
+        this.ticketTypes = new Region<>("ticket_types", maxEntries, ttlMillis, meterRegistry);
+        this.fromLedger = availabilityCounter(meterRegistry, "ledger");
+        this.fromSnapshot = availabilityCounter(meterRegistry, "stored");
+    }
+
+    /**
+     * Obtiene un evento con sus tipos de ticket, leyéndolo solo si no está en la caché
+     * @param eventId ID del evento
+     * @param loader Lectura del evento con sus tipos de ticket
+     * @return el evento, o vacío si no existe; los eventos inexistentes no se guardan
+     */
+    public Optional<EventSnapshot> getEvent(String eventId, Supplier<Optional<Event>> loader) {
+        return events.get(eventId, () -> loader.get().map(EventSnapshot::of));
+    }
+
+    /**
+     * Obtiene un tipo de ticket, leyéndolo solo si no está en la caché
+     * @param ticketTypeId ID del tipo de ticket
+     * @param loader Lectura del tipo de ticket
+     * @return el tipo de ticket, o vacío si no existe
+     */
+    public Optional<TicketTypeSnapshot> getTicketType(String ticketTypeId, Supplier<Optional<TicketType>> loader) {
+        return ticketTypes.get(ticketTypeId, () -> loader.get().map(TicketTypeSnapshot::of));
+    }
+
+    /**
+     * Disponibilidad vigente de un tipo de ticket: la del libro de inventario, o
+     * la leída de la base de datos si el libro aún no lo carga
+     */
+    public Integer availableQuantity(TicketTypeSnapshot ticketType) {
+        OptionalInt live = inventoryLedger.getAvailable(ticketType.id());
+        if (live.isPresent()) {
+            fromLedger.increment();
+            return live.getAsInt();
+        }
+        fromSnapshot.increment();
+        return ticketType.availableQuantity();
+    }
+
+    /**
+     * Versión de un evento y sus tipos de ticket, para usarla como ETag: cambia
+     * si el evento se edita o si cambia la disponibilidad de alguno de sus tipos
+     */
+    public String eventVersion(EventSnapshot event) {
+        long inventory = 0;
+        for (TicketTypeSnapshot ticketType : event.ticketTypes()) {
+            inventory += inventoryLedger.version(ticketType.id());
+        }
+        return version(event, inventory);
+    }
+
+    /**
+     * Versión del plano de asientos de un tipo de ticket del evento, para usarla como ETag
+     */
+    public String seatsVersion(EventSnapshot event, String ticketTypeId) {
+        return version(event, seatIndex.version(ticketTypeId));
+    }
+
+    private String version(EventSnapshot event, long inventory) {
+        long updatedAt = event.updatedAt() != null ? event.updatedAt().toInstant(ZoneOffset.UTC).toEpochMilli() : 0;
+        return Long.toString(startedAt, 36) + "-" + Long.toString(updatedAt, 36) + "-" + Long.toString(inventory, 36);
+    }
+
+    private static Counter availabilityCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("ticketmaster.catalog_cache.availability")
+            .description("Disponibilidades servidas según su origen")
+            .tag("source", source)
+            .register(meterRegistry);
+    }
+
+    private record Cached<V>(V value, long loadedAt) {
+    }
+
+    /**
+     * Una caché con sus métricas
+     */
+    private final class Region<V> {
+        private final String name;
+        private final BoundedCache<String, Cached<V>> cache;
+        private final Counter hits;
+        private final Counter misses;
+        private final DistributionSummary age;
+
+        Region(String name, int maxEntries, long ttlMillis, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.cache = new BoundedCache<>(maxEntries, ttlMillis, clock);
+            this.hits = Counter.builder("ticketmaster.catalog_cache.requests")
+                .description("Consultas a la caché del catálogo")
+                .tags("cache", name, "result", "hit")
+                .register(meterRegistry);
+            this.misses = Counter.builder("ticketmaster.catalog_cache.requests")
+                .description("Consultas a la caché del catálogo")
+                .tags("cache", name, "result", "miss")
+                .register(meterRegistry);
+            this.age = DistributionSummary.builder("ticketmaster.catalog_cache.age")
+                .description("Antigüedad de los datos servidos desde la caché")
+                .baseUnit("milliseconds")
+                .tag("cache", name)
+                .register(meterRegistry);
+            Gauge.builder("ticketmaster.catalog_cache.size", cache, BoundedCache::size)
+                .description("Entradas en la caché del catálogo")
+                .tag("cache", name)
+                .register(meterRegistry);
+        }
+
+        Optional<V> get(String key, Supplier<Optional<V>> loader) {
+            Cached<V> cached = cache.get(key);
+            if (cached != null) {
+                hits.increment();
+                age.record(clock.getAsLong() - cached.loadedAt());
+                return Optional.of(cached.value());
+            }
+            misses.increment();
+            // Si muchos piden la misma entrada al vencer, solo uno va a la base de datos
+            return coalescer.execute("catalog." + name, key, () -> {
+                Optional<V> loaded = loader.get();
+                loaded.ifPresent(value -> cache.put(key, new Cached<>(value, clock.getAsLong())));
+                return loaded;
+            });
+        }
+    }
+}
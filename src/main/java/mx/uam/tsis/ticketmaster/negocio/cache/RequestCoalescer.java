@@ -0,0 +1,131 @@
+package mx.uam.tsis.ticketmaster.negocio.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Junta las lecturas idénticas que llegan al mismo tiempo: la primera hace la
+ * consulta y las que llegan mientras tanto esperan y reciben su mismo
+ * resultado, o su mismo error. En cuanto la consulta termina, la siguiente
+ * lectura vuelve a consultar; no es una caché.
+ *
+ * Quien espera lo hace como máximo ticketmaster.coalescing.wait-ms; si la
+ * consulta en curso tarda más, hace la suya por su cuenta en lugar de quedarse
+ * bloqueado detrás de ella.
+ *
+ * Los resultados se comparten entre hilos, así que deben ser inmutables o no
+ * modificarse después de devolverlos.
+ *
+ * Métricas por operación:
+ * - ticketmaster.coalescing.requests (role=leader|follower): lecturas que consultaron y que esperaron
+ * - ticketmaster.coalescing.requests (role=timeout): esperas que se rindieron y consultaron por su cuenta
+ * - ticketmaster.coalescing.ratio: fracción de lecturas que se ahorraron la consulta
+ */
+@Component
+public class RequestCoalescer {
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final long waitMillis;
+
+    public RequestCoalescer(MeterRegistry meterRegistry,
+            @Value("${ticketmaster.coalescing.wait-ms:2000}") long waitMillis) {
+        this.meterRegistry = meterRegistry;
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * Ejecuta una lectura o se une a la que ya está en curso con la misma llave
+     * @param operation Nombre de la lectura, para las métricas
+     * @param key Parámetros que hacen idénticas dos lecturas
+     * @param loader Lectura a ejecutar
+     * @return el resultado de la lectura en curso o de la nueva
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, String key, Supplier<T> loader) {
+        Meters counters = meters.computeIfAbsent(operation, this::register);
+        String flightKey = operation + ":" + key;
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(flightKey, flight);
+        if (running != null) {
+            counters.followers.increment();
+            try {
+                return (T) await(running, waitMillis);
+            } catch (TimeoutException e) {
+                counters.timeouts.increment();
+                return loader.get();
+            }
+        }
+
+        counters.leaders.increment();
+        try {
+            T value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Quien espera recibe el mismo error en lugar de quedarse bloqueado
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> flight, long waitMillis) throws TimeoutException {
+        try {
+            return flight.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Lectura interrumpida mientras esperaba otra idéntica", e);
+        }
+    }
+
+    private Meters register(String operation) {
+        Counter leaders = Counter.builder("ticketmaster.coalescing.requests")
+            .description("Lecturas según si consultaron o esperaron a otra idéntica")
+            .tags("operation", operation, "role", "leader")
+            .register(meterRegistry);
+        Counter followers = Counter.builder("ticketmaster.coalescing.requests")
+            .description("Lecturas según si consultaron o esperaron a otra idéntica")
+            .tags("operation", operation, "role", "follower")
+            .register(meterRegistry);
+        Counter timeouts = Counter.builder("ticketmaster.coalescing.requests")
+            .description("Lecturas según si consultaron o esperaron a otra idéntica")
+            .tags("operation", operation, "role", "timeout")
+            .register(meterRegistry);
+        Meters counters = new Meters(leaders, followers, timeouts);
+        Gauge.builder("ticketmaster.coalescing.ratio", counters, Meters::ratio)
+            .description("Fracción de lecturas que se unieron a otra en curso")
+            .tag("operation", operation)
+            .register(meterRegistry);
+        return counters;
+    }
+
+    private record Meters(Counter leaders, Counter followers, Counter timeouts) {
+
+        double ratio() {
+            double total = leaders.count() + followers.count();
+            return total == 0 ? 0 : (followers.count() - timeouts.count()) / total;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package mx.uam.tsis.ticketmaster.negocio.expiracion;
+
+/**
+ * Se publica cuando una reservación deja de necesitar expiración, por ejemplo al cancelarse
+ * @param reservationId ID de la reservación
+ */
+public record ReservationClosed(String reservationId) {
+}
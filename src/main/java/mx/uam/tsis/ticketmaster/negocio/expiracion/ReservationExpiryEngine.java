@@ -0,0 +1,163 @@
+package mx.uam.tsis.ticketmaster.negocio.expiracion;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import mx.uam.tsis.ticketmaster.datos.TicketReservationRepository;
+import mx.uam.tsis.ticketmaster.negocio.ReservationDispatcher;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Motor único de expiración de reservaciones.
+ *
+ * Cada reservación activa tiene un temporizador en una rueda con hash; al
+ * vencer, la expiración se envía al buzón de su evento en lotes, donde se
+ * marcan inactivas con una sola actualización y se regresan los tickets al
+ * inventario agrupados por tipo de ticket. La rueda se reconstruye desde la base de datos al
+ * arrancar y después se alimenta con los eventos de reservación, así que no se
+ * recorre la tabla de reservaciones en cada ciclo.
+ */
+@Slf4j
+@Component
+public class ReservationExpiryEngine {
+
+    // Con ticks de un segundo, una vuelta de la rueda cubre poco más de 8 minutos
+    private static final int WHEEL_SIZE = 512;
+
+    @Autowired
+    private TicketReservationRepository reservationRepository;
+
+    @Autowired
+    private ReservationDispatcher reservationDispatcher;
+
+    private final TimerWheel<Expiration> wheel;
+    private final long tickMillis;
+    private final int batchSize;
+    private final Map<String, TimerWheel.Timeout<Expiration>> timeouts = new ConcurrentHashMap<>();
+
+    public ReservationExpiryEngine(
+            @Value("${ticketmaster.expiry.tick-ms:1000}") long tickMillis,
+            @Value("${ticketmaster.expiry.batch-size:500}") int batchSize) {
+        this.tickMillis = tickMillis;
+        this.batchSize = batchSize;
+        this.wheel = new TimerWheel<>(tickMillis, WHEEL_SIZE, System.currentTimeMillis());
+    }
+
+    /**
+     * Carga los vencimientos de las reservaciones activas al arrancar la aplicación
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        var expirations = reservationRepository.findActiveExpirations();
+        expirations.forEach(expiration ->
+            schedule(expiration.getId(), expiration.getEventId(), expiration.getExpiresAt()));
+        log.info("Rueda de expiración reconstruida con {} reservaciones activas", expirations.size());
+    }
+
+    /**
+     * Programa la expiración de una reservación una vez que su transacción se confirmó
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationHeld(ReservationHeld event) {
+        schedule(event.reservationId(), event.eventId(), event.expiresAt());
+    }
+
+    /**
+     * Quita el temporizador de una reservación que ya no está apartada
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationClosed(ReservationClosed event) {
+        TimerWheel.Timeout<Expiration> timeout = timeouts.remove(event.reservationId());
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Avanza la rueda y envía a los buzones las reservaciones vencidas, agrupadas
+     * por evento en lotes que se expiran cada uno en su propia transacción
+     */
+    @Scheduled(fixedRateString = "${ticketmaster.expiry.tick-ms:1000}")
+    public void tick() {
+        List<Expiration> expired = wheel.advance(System.currentTimeMillis());
+        if (expired.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<CompletableFuture<Integer>> batches = new ArrayList<>();
+        expired.stream()
+            .collect(Collectors.groupingBy(Expiration::eventId))
+            .forEach((eventId, expirations) -> {
+                for (int from = 0; from < expirations.size(); from += batchSize) {
+                    batches.add(expireBatch(eventId,
+                        expirations.subList(from, Math.min(from + batchSize, expirations.size()))));
+                }
+            });
+
+        CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new)).thenRun(() -> {
+            int total = batches.stream().mapToInt(CompletableFuture::join).sum();
+            long elapsedMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), 1);
+            log.info("Expiradas {} reservaciones en {} lotes, {} ms ({} filas/s)",
+                total, batches.size(), elapsedMillis, total * 1000L / elapsedMillis);
+        });
+    }
+
+    private CompletableFuture<Integer> expireBatch(String eventId, List<Expiration> expirations) {
+        for (Expiration expiration : expirations) {
+            // Si la reservación se reprogramó mientras tanto, su nuevo temporizador se conserva
+            timeouts.computeIfPresent(expiration.reservationId(),
+                (id, timeout) -> timeout.payload() == expiration ? null : timeout);
+        }
+        List<String> reservationIds = expirations.stream().map(Expiration::reservationId).toList();
+        return reservationDispatcher.expire(eventId, reservationIds)
+            .handle((count, error) -> {
+                if (error == null) {
+                    return count;
+                }
+                // Sin temporizador las reservaciones quedarían apartadas para siempre
+                log.warn("No se pudo expirar un lote de {} reservaciones del evento {}, se reintenta",
+                    expirations.size(), eventId, error);
+                long retryAt = System.currentTimeMillis() + tickMillis;
+                expirations.forEach(expiration -> scheduleAt(expiration, retryAt));
+                return 0;
+            });
+    }
+
+    /**
+     * @return cantidad de reservaciones con expiración programada
+     */
+    public int getScheduledCount() {
+        return timeouts.size();
+    }
+
+    private void schedule(String reservationId, String eventId, LocalDateTime expiresAt) {
+        // Se redondea hacia arriba para no disparar antes de expiresAt
+        long deadline = expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + 1;
+        scheduleAt(new Expiration(reservationId, eventId), deadline);
+    }
+
+    private void scheduleAt(Expiration expiration, long deadlineMillis) {
+        TimerWheel.Timeout<Expiration> previous =
+            timeouts.put(expiration.reservationId(), wheel.schedule(expiration, deadlineMillis));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private record Expiration(String reservationId, String eventId) {
+    }
+}
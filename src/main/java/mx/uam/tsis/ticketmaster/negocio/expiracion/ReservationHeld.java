@@ -0,0 +1,12 @@
+package mx.uam.tsis.ticketmaster.negocio.expiracion;
+
+import java.time.LocalDateTime;
+
+/**
+ * Se publica cuando se crea una reservación con fecha de expiración
+ * @param reservationId ID de la reservación
+ * @param eventId ID del evento al que pertenece
+ * @param expiresAt Fecha en la que vence el apartado
+ */
+public record ReservationHeld(String reservationId, String eventId, LocalDateTime expiresAt) {
+}
@@ -0,0 +1,118 @@
+package mx.uam.tsis.ticketmaster.negocio.expiracion;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Rueda de temporizadores con hash (hashed timer wheel).
+ *
+ * Cada casilla agrupa los vencimientos de un tick; los plazos más largos que
+ * una vuelta completa llevan la cuenta de vueltas restantes. Programar y
+ * cancelar es O(1) desde cualquier hilo; avanzar la rueda lo hace un solo hilo
+ * y solo visita las casillas de los ticks transcurridos.
+ *
+ * @param <T> dato que se entrega al vencer el plazo
+ */
+class TimerWheel<T> {
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final List<Timeout<T>>[] buckets;
+    private final int mask;
+    // Plazos programados desde otros hilos que aún no se colocan en su casilla
+    private final Queue<Timeout<T>> pending = new ConcurrentLinkedQueue<>();
+    // Siguiente tick por procesar; solo lo modifica el hilo que avanza la rueda
+    private long tick;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("El tamaño de la rueda debe ser potencia de 2");
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.buckets = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        this.mask = wheelSize - 1;
+    }
+
+    /**
+     * Programa un vencimiento
+     * @param payload dato a entregar
+     * @param deadlineMillis instante de vencimiento en milisegundos
+     * @return el temporizador, que se puede cancelar
+     */
+    Timeout<T> schedule(T payload, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(payload, deadlineMillis);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Avanza la rueda hasta el instante indicado
+     * @param nowMillis instante actual en milisegundos
+     * @return los datos cuyos plazos vencieron, sin los cancelados
+     */
+    List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        while (startMillis + tick * tickMillis <= nowMillis) {
+            transferPending();
+            Iterator<Timeout<T>> iterator = buckets[(int) (tick & mask)].iterator();
+            while (iterator.hasNext()) {
+                Timeout<T> timeout = iterator.next();
+                if (timeout.cancelled) {
+                    iterator.remove();
+                } else if (timeout.remainingRounds <= 0) {
+                    iterator.remove();
+                    expired.add(timeout.payload);
+                } else {
+                    timeout.remainingRounds--;
+                }
+            }
+            tick++;
+        }
+        return expired;
+    }
+
+    private void transferPending() {
+        Timeout<T> timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            // Tick en el que el plazo ya se cumplió; los vencidos van al tick actual
+            long target = Math.max(ceilDiv(timeout.deadlineMillis - startMillis, tickMillis), tick);
+            timeout.remainingRounds = (target - tick) / buckets.length;
+            buckets[(int) (target & mask)].add(timeout);
+        }
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+
+    static final class Timeout<T> {
+        private final T payload;
+        private final long deadlineMillis;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(T payload, long deadlineMillis) {
+            this.payload = payload;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        T payload() {
+            return payload;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package mx.uam.tsis.ticketmaster.negocio.inventario;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import mx.uam.tsis.ticketmaster.datos.EventRepository;
+import mx.uam.tsis.ticketmaster.datos.EventRepository.AvailabilitySource;
+import mx.uam.tsis.ticketmaster.datos.TicketTypeRepository;
+import mx.uam.tsis.ticketmaster.negocio.busqueda.FacetCatalog;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import lombok.extern.slf4j.Slf4j;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Libro de inventario en memoria para la disponibilidad de los tipos de ticket.
+ *
+ * Cada tipo de ticket tiene un contador atómico que admite o rechaza apartados
+ * sin ir a la base de datos. Los cambios se acumulan como deltas y se escriben
+ * en la tabla ticket_types de forma asíncrona con actualizaciones condicionales,
+ * junto con la disponibilidad total que guarda cada evento. Esas columnas no
+ * se escriben desde las entidades, así que la escritura no vacía la caché de
+ * segundo nivel: la disponibilidad vigente siempre es la del libro. Al terminar,
+ * el catálogo de facetas recibe si quedaron agotados los eventos que cambiaron.
+ * Si la transacción que apartó o liberó tickets se revierte, el cambio se
+ * compensa en el contador.
+ *
+ * Para tipos de ticket muy solicitados el contador se puede dividir en franjas
+ * (TicketType.inventoryShards). Cada apartado toma de una franja al azar y pide
+ * prestado a las vecinas cuando la suya se agota; la disponibilidad es la suma.
+ *
+ * Cada tipo de ticket lleva además una versión que crece con cada cambio de su
+ * disponibilidad, para que las consultas sepan si algo cambió sin releerlo. Cada
+ * franja cuenta sus cambios en su propia línea de caché y la versión es la suma,
+ * así que llevarla no vuelve a juntar a los apartados en un mismo contador.
+ */
+@Slf4j
+@Component
+public class InventoryLedger {
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    // Cambios de los contadores ya descartados, para que la versión siga creciendo
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    @Autowired
+    private TicketTypeRepository ticketTypeRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private FacetCatalog facetCatalog;
+
+    @Value("${ticketmaster.inventory.default-shards:1}")
+    private int defaultShards = 1;
+
+    /**
+     * Intenta apartar tickets del inventario
+     * @param ticketType Tipo de ticket a apartar
+     * @param quantity Cantidad de tickets
+     * @return true si había suficientes tickets y se apartaron
+     */
+    public boolean tryReserve(TicketType ticketType, int quantity) {
+        Counter counter = counterFor(ticketType);
+        if (!counter.take(quantity)) {
+            return false;
+        }
+
+        counter.pending.add(-quantity);
+        compensateOnRollback(counter, -quantity);
+        return true;
+    }
+
+    /**
+     * Regresa tickets al inventario
+     * @param ticketType Tipo de ticket a liberar
+     * @param quantity Cantidad de tickets
+     */
+    public void release(TicketType ticketType, int quantity) {
+        Counter counter = counterFor(ticketType);
+        counter.add(quantity);
+        counter.pending.add(quantity);
+        compensateOnRollback(counter, quantity);
+    }
+
+    /**
+     * Obtiene la disponibilidad en memoria de un tipo de ticket
+     * @param ticketTypeId ID del tipo de ticket
+     * @return la cantidad disponible, o vacío si el tipo aún no se ha cargado
+     */
+    public OptionalInt getAvailable(String ticketTypeId) {
+        Counter counter = counters.get(ticketTypeId);
+        return counter == null ? OptionalInt.empty() : OptionalInt.of(counter.sum());
+    }
+
+    /**
+     * Versión de la disponibilidad de un tipo de ticket: cambia cada vez que se
+     * apartan, liberan o corrigen tickets
+     * @param ticketTypeId ID del tipo de ticket
+     * @return la versión, 0 si nunca ha cambiado
+     */
+    public long version(String ticketTypeId) {
+        AtomicLong base = versions.get(ticketTypeId);
+        Counter counter = counters.get(ticketTypeId);
+        return (base == null ? 0 : base.get()) + (counter == null ? 0 : counter.changes());
+    }
+
+    /**
+     * Descarta el contador de un tipo de ticket para que se vuelva a cargar
+     * desde la base de datos, por ejemplo después de editar su inventario.
+     * Los deltas pendientes de escribir se pierden.
+     * @param ticketTypeId ID del tipo de ticket
+     */
+    public void evict(String ticketTypeId) {
+        drop(ticketTypeId);
+    }
+
+    /**
+     * Escribe en la base de datos los deltas acumulados desde la última escritura.
+     * Los descuentos usan una actualización condicional, así que la fila nunca
+     * queda con inventario negativo aunque otro proceso la haya modificado.
+     */
+    @Scheduled(fixedDelayString = "${ticketmaster.inventory.flush-interval-ms:1000}")
+    @Transactional
+    public void flush() {
+        List<String> adjusted = new ArrayList<>();
+        counters.forEach((ticketTypeId, counter) -> {
+            int delta = (int) counter.pending.sumThenReset();
+            if (delta == 0) {
+                return;
+            }
+            // Si la escritura se revierte, el delta vuelve a quedar pendiente
+            requeueOnRollback(counter, delta);
+            int updated = delta > 0
+                ? ticketTypeRepository.releaseAvailableQuantity(ticketTypeId, delta)
+                : ticketTypeRepository.reserveAvailableQuantity(ticketTypeId, -delta);
+            if (updated == 0) {
+                if (reconcile(ticketTypeId, counter, delta)) {
+                    adjusted.add(ticketTypeId);
+                }
+            } else {
+                // En la misma transacción, para que el catálogo filtre con la disponibilidad escrita
+                eventRepository.adjustAvailableTickets(ticketTypeId, delta);
+                adjusted.add(ticketTypeId);
+            }
+        });
+        if (!adjusted.isEmpty()) {
+            publishAvailability(eventRepository.findAvailabilitySources(adjusted));
+        }
+    }
+
+    /**
+     * Ajusta el contador cuando la fila no aceptó el delta: alguien más descontó
+     * inventario o el tipo de ticket ya no existe. Se escribe la parte del delta
+     * que la fila todavía puede descontar y el resto se descarta, en lugar de
+     * reintentar en cada escritura un descuento que nunca va a caber.
+     */
+    private boolean reconcile(String ticketTypeId, Counter counter, int delta) {
+        Integer stored = ticketTypeRepository.findAvailableQuantityById(ticketTypeId).orElse(null);
+        if (stored == null) {
+            log.warn("Tipo de ticket {} no encontrado al escribir el inventario, se descarta un delta de {}",
+                ticketTypeId, delta);
+            drop(ticketTypeId);
+            return false;
+        }
+        int applied = delta > 0 ? delta : -Math.min(Math.max(stored, 0), -delta);
+        if (applied != 0) {
+            int updated = applied > 0
+                ? ticketTypeRepository.releaseAvailableQuantity(ticketTypeId, applied)
+                : ticketTypeRepository.reserveAvailableQuantity(ticketTypeId, -applied);
+            if (updated == 0) {
+                // La fila volvió a cambiar; se reintenta con lo que tenga en la siguiente escritura
+                requeueAfterCommit(counter, delta);
+                return false;
+            }
+            eventRepository.adjustAvailableTickets(ticketTypeId, applied);
+        }
+        // El contador refleja lo que quedó en la fila más lo que sigue pendiente,
+        // y deja de admitir apartados si ya no alcanza
+        int drift = counter.sum() - (int) counter.pending.sum() - (stored + applied);
+        counter.add(-drift);
+        if (applied != delta) {
+            log.error("Inventario de {} sobrevendido: la fila no tenía {} de los tickets apartados y se descartan; "
+                + "disponible ahora {}", ticketTypeId, applied - delta, counter.sum());
+        } else {
+            log.warn("Inventario de {} desincronizado por {} tickets; disponible ahora {}",
+                ticketTypeId, drift, counter.sum());
+        }
+        return applied != 0;
+    }
+
+    /**
+     * Pasa al catálogo de facetas la disponibilidad escrita, una vez confirmada
+     */
+    private void publishAvailability(List<AvailabilitySource> sources) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            facetCatalog.updateAvailability(sources);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                facetCatalog.updateAvailability(sources);
+            }
+        });
+    }
+
+    /**
+     * Quita el contador y la copia del tipo de ticket en la caché de segundo
+     * nivel, cuya disponibilidad ya no se corrige con cada escritura: el
+     * contador nuevo se siembra con lo que tenga la base de datos.
+     */
+    private void drop(String ticketTypeId) {
+        Counter removed = counters.remove(ticketTypeId);
+        entityManagerFactory.getCache().evict(TicketType.class, ticketTypeId);
+        versions.computeIfAbsent(ticketTypeId, id -> new AtomicLong())
+            .addAndGet((removed == null ? 0 : removed.changes()) + 1);
+    }
+
+    private Counter counterFor(TicketType ticketType) {
+        return counters.computeIfAbsent(ticketType.getId(), id -> {
+            Integer available = ticketType.getAvailableQuantity();
+            Integer shards = ticketType.getInventoryShards();
+            return new Counter(available != null ? available : 0,
+                shards != null && shards > 0 ? shards : Math.max(defaultShards, 1));
+        });
+    }
+
+    private void compensateOnRollback(Counter counter, int delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    counter.add(-delta);
+                    counter.pending.add(-delta);
+                }
+            }
+        });
+    }
+
+    private void requeueOnRollback(Counter counter, int delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    counter.pending.add(delta);
+                }
+            }
+        });
+    }
+
+    private void requeueAfterCommit(Counter counter, int delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            counter.pending.add(delta);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                counter.pending.add(delta);
+            }
+        });
+    }
+
+    private static final class Counter {
+        // Cada franja ocupa su propia línea de caché para evitar falso compartido;
+        // junto a la disponibilidad de la franja va su cuenta de cambios
+        private static final int STRIDE = 16;
+        private static final int CHANGES = 1;
+
+        private final int shards;
+        private final AtomicIntegerArray stripes;
+        // Delta aún no escrito en la base de datos
+        private final LongAdder pending = new LongAdder();
+
+        Counter(int available, int shards) {
+            this.shards = shards;
+            this.stripes = new AtomicIntegerArray(shards * STRIDE);
+            int base = Math.max(available, 0) / shards;
+            int remainder = Math.max(available, 0) % shards;
+            for (int i = 0; i < shards; i++) {
+                stripes.set(i * STRIDE, base + (i < remainder ? 1 : 0));
+            }
+            if (available < 0) {
+                stripes.set(0, available);
+            }
+        }
+
+        /**
+         * Toma la cantidad completa de una franja al azar; si no alcanza, reúne
+         * lo que falta de las franjas vecinas. Si entre todas no alcanza,
+         * devuelve lo tomado y rechaza el apartado.
+         */
+        boolean take(int quantity) {
+            int home = shards == 1 ? 0 : ThreadLocalRandom.current().nextInt(shards);
+            if (takeFrom(home, quantity, false) == quantity) {
+                stripes.incrementAndGet(home * STRIDE + CHANGES);
+                return true;
+            }
+            int taken = 0;
+            for (int i = 1; i < shards && taken < quantity; i++) {
+                taken += takeFrom((home + i) % shards, quantity - taken, true);
+            }
+            if (taken < quantity && taken > 0) {
+                taken += takeFrom(home, quantity - taken, true);
+            }
+            if (taken < quantity) {
+                if (taken > 0) {
+                    stripes.addAndGet(home * STRIDE, taken);
+                }
+                return false;
+            }
+            stripes.incrementAndGet(home * STRIDE + CHANGES);
+            return true;
+        }
+
+        void add(int delta) {
+            int stripe = shards == 1 ? 0 : ThreadLocalRandom.current().nextInt(shards);
+            stripes.addAndGet(stripe * STRIDE, delta);
+            stripes.incrementAndGet(stripe * STRIDE + CHANGES);
+        }
+
+        int sum() {
+            int sum = 0;
+            for (int i = 0; i < shards; i++) {
+                sum += stripes.get(i * STRIDE);
+            }
+            return sum;
+        }
+
+        /**
+         * Cambios de disponibilidad desde que se cargó el contador
+         */
+        long changes() {
+            long changes = 0;
+            for (int i = 0; i < shards; i++) {
+                changes += Integer.toUnsignedLong(stripes.get(i * STRIDE + CHANGES));
+            }
+            return changes;
+        }
+
+        private int takeFrom(int stripe, int wanted, boolean partial) {
+            int index = stripe * STRIDE;
+            while (true) {
+                int current = stripes.get(index);
+                int amount = partial ? Math.min(current, wanted) : (current >= wanted ? wanted : 0);
+                if (amount <= 0) {
+                    return 0;
+                }
+                if (stripes.compareAndSet(index, current, current - amount)) {
+                    return amount;
+                }
+            }
+        }
+    }
+}
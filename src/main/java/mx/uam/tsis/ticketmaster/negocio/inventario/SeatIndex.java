@@ -0,0 +1,475 @@
+package mx.uam.tsis.ticketmaster.negocio.inventario;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import mx.uam.tsis.ticketmaster.datos.SeatRepository;
+import mx.uam.tsis.ticketmaster.datos.SeatRepository.SeatView;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Índice en memoria de los asientos de cada tipo de ticket.
+ *
+ * Los asientos se ordenan por fila y número y su disponibilidad se guarda en un
+ * mapa de bits: consultar el plano o apartar asientos solo lee y cambia bits.
+ * Los cambios se marcan como pendientes y se escriben en la tabla seats por
+ * lotes; si la transacción que apartó asientos se revierte, los bits se regresan.
+ *
+ * Para el modo de mejores asientos cada fila guarda su racha libre más larga,
+ * que se recalcula solo cuando la fila cambia.
+ *
+ * Cada plano lleva una versión que crece con cada asiento apartado o devuelto,
+ * para que los clientes que lo consultan seguido sepan si cambió.
+ */
+@Slf4j
+@Component
+public class SeatIndex {
+
+    // Tamaño máximo de cada lista IN al escribir los cambios
+    private static final int WRITE_BATCH_SIZE = 1000;
+
+    // Búsquedas de mejores asientos antes de rendirse cuando hay competencia
+    private static final int MAX_CLAIM_ATTEMPTS = 8;
+
+    public enum HoldResult {
+        HELD,
+        // Algún asiento no pertenece a este tipo de ticket
+        UNKNOWN_SEAT,
+        // Algún asiento ya estaba apartado
+        UNAVAILABLE
+    }
+
+    /**
+     * Datos fijos de un asiento
+     */
+    public record SeatInfo(String id, String row, String number, String zone) {
+    }
+
+    private final Map<String, SeatMap> seatMaps = new ConcurrentHashMap<>();
+    // Cambios de los planos ya descartados, para que la versión siga creciendo
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    @Autowired
+    private SeatRepository seatRepository;
+
+    /**
+     * Obtiene los asientos disponibles de un tipo de ticket, ordenados por fila y número
+     * @param ticketType Tipo de ticket
+     * @return asientos disponibles
+     */
+    public List<SeatInfo> getAvailableSeats(TicketType ticketType) {
+        SeatMap seatMap = seatMapFor(ticketType);
+        List<SeatInfo> available = new ArrayList<>();
+        for (int word = 0; word < seatMap.available.length(); word++) {
+            long bits = seatMap.available.get(word);
+            while (bits != 0) {
+                available.add(seatMap.seats[word * Long.SIZE + Long.numberOfTrailingZeros(bits)]);
+                bits &= bits - 1;
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Aparta todos los asientos indicados o ninguno
+     * @param ticketType Tipo de ticket al que pertenecen los asientos
+     * @param seatIds IDs de los asientos
+     * @return el resultado del apartado
+     */
+    public HoldResult hold(TicketType ticketType, Collection<String> seatIds) {
+        SeatMap seatMap = seatMapFor(ticketType);
+        int[] positions = new int[seatIds.size()];
+        int count = 0;
+        for (String seatId : seatIds) {
+            Integer position = seatMap.positions.get(seatId);
+            if (position == null) {
+                return HoldResult.UNKNOWN_SEAT;
+            }
+            positions[count++] = position;
+        }
+        return claim(seatMap, positions) ? HoldResult.HELD : HoldResult.UNAVAILABLE;
+    }
+
+    /**
+     * Busca y aparta los mejores asientos disponibles: primero N asientos juntos
+     * en la fila más cercana al escenario; si ninguna fila los tiene, el grupo
+     * más compacto dentro de una fila y, como último recurso, los primeros N
+     * asientos libres en orden.
+     * @param ticketType Tipo de ticket
+     * @param quantity Cantidad de asientos
+     * @param zone Zona a la que se limita la búsqueda (opcional)
+     * @return los asientos apartados, o una lista vacía si no hay suficientes
+     */
+    public List<SeatInfo> holdBestAvailable(TicketType ticketType, int quantity, String zone) {
+        SeatMap seatMap = seatMapFor(ticketType);
+        long[] zoneMask = null;
+        if (zone != null && !zone.isBlank()) {
+            zoneMask = seatMap.zoneMasks.get(zone);
+            if (zoneMask == null) {
+                return List.of();
+            }
+        }
+
+        // Si otro hilo gana alguno de los asientos elegidos, se busca de nuevo
+        for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+            int[] positions = seatMap.findBest(quantity, zoneMask);
+            if (positions == null) {
+                return List.of();
+            }
+            if (claim(seatMap, positions)) {
+                List<SeatInfo> held = new ArrayList<>(positions.length);
+                for (int position : positions) {
+                    held.add(seatMap.seats[position]);
+                }
+                return held;
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * Apaga los bits de todas las posiciones o de ninguna
+     */
+    private boolean claim(SeatMap seatMap, int[] positions) {
+        for (int i = 0; i < positions.length; i++) {
+            if (!seatMap.take(positions[i])) {
+                for (int j = 0; j < i; j++) {
+                    seatMap.put(positions[j]);
+                }
+                return false;
+            }
+        }
+        for (int position : positions) {
+            seatMap.markDirty(position);
+        }
+        releaseOnRollback(seatMap, positions);
+        return true;
+    }
+
+    /**
+     * Versión del plano de asientos de un tipo de ticket
+     * @param ticketTypeId ID del tipo de ticket
+     * @return la versión, 0 si ningún asiento ha cambiado
+     */
+    public long version(String ticketTypeId) {
+        AtomicLong base = versions.get(ticketTypeId);
+        SeatMap seatMap = seatMaps.get(ticketTypeId);
+        return (base == null ? 0 : base.get()) + (seatMap == null ? 0 : seatMap.changes());
+    }
+
+    /**
+     * Descarta el índice de un tipo de ticket para que se vuelva a cargar desde
+     * la base de datos, por ejemplo después de agregar asientos.
+     * Los cambios pendientes de escribir se pierden.
+     * @param ticketTypeId ID del tipo de ticket
+     */
+    public void evict(String ticketTypeId) {
+        SeatMap removed = seatMaps.remove(ticketTypeId);
+        versions.computeIfAbsent(ticketTypeId, id -> new AtomicLong())
+            .addAndGet((removed == null ? 0 : removed.changes()) + 1);
+    }
+
+    /**
+     * Escribe en la base de datos los asientos que cambiaron desde la última
+     * escritura, con una actualización por lote en lugar de una por asiento.
+     */
+    @Scheduled(fixedDelayString = "${ticketmaster.seats.flush-interval-ms:1000}")
+    @Transactional
+    public void flush() {
+        seatMaps.values().forEach(seatMap -> {
+            List<String> held = new ArrayList<>();
+            List<String> released = new ArrayList<>();
+            List<Integer> changed = new ArrayList<>();
+            for (int word = 0; word < seatMap.dirty.length(); word++) {
+                long bits = seatMap.dirty.getAndSet(word, 0L);
+                while (bits != 0) {
+                    int position = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                    changed.add(position);
+                    (seatMap.isAvailable(position) ? released : held).add(seatMap.seats[position].id());
+                    bits &= bits - 1;
+                }
+            }
+            if (changed.isEmpty()) {
+                return;
+            }
+            // Si la escritura se revierte, los asientos vuelven a quedar pendientes
+            markDirtyOnRollback(seatMap, changed);
+            write(held, false);
+            write(released, true);
+        });
+    }
+
+    private void write(List<String> seatIds, boolean available) {
+        for (int from = 0; from < seatIds.size(); from += WRITE_BATCH_SIZE) {
+            seatRepository.updateAvailability(
+                seatIds.subList(from, Math.min(from + WRITE_BATCH_SIZE, seatIds.size())), available);
+        }
+    }
+
+    private SeatMap seatMapFor(TicketType ticketType) {
+        return seatMaps.computeIfAbsent(ticketType.getId(), id -> {
+            SeatMap seatMap = new SeatMap(seatRepository.findSeatViewsByTicketTypeId(id));
+            log.debug("Índice de asientos de {} cargado con {} asientos", id, seatMap.seats.length);
+            return seatMap;
+        });
+    }
+
+    private void releaseOnRollback(SeatMap seatMap, int[] positions) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    for (int position : positions) {
+                        seatMap.put(position);
+                        seatMap.markDirty(position);
+                    }
+                }
+            }
+        });
+    }
+
+    private void markDirtyOnRollback(SeatMap seatMap, List<Integer> positions) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    positions.forEach(seatMap::markDirty);
+                }
+            }
+        });
+    }
+
+    /**
+     * Compara etiquetas de fila o número; las numéricas se ordenan por valor (2 antes que 10,
+     * 08 antes que 9) y, con el mismo valor, por el texto
+     */
+    static int compareLabels(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        boolean numericA = !a.isEmpty() && a.chars().allMatch(Character::isDigit);
+        boolean numericB = !b.isEmpty() && b.chars().allMatch(Character::isDigit);
+        if (numericA && numericB) {
+            String valueA = stripLeadingZeros(a);
+            String valueB = stripLeadingZeros(b);
+            int byValue = valueA.length() != valueB.length()
+                ? Integer.compare(valueA.length(), valueB.length())
+                : valueA.compareTo(valueB);
+            return byValue != 0 ? byValue : a.compareTo(b);
+        }
+        return a.compareTo(b);
+    }
+
+    private static String stripLeadingZeros(String digits) {
+        int start = 0;
+        while (start < digits.length() - 1 && digits.charAt(start) == '0') {
+            start++;
+        }
+        return digits.substring(start);
+    }
+
+    private static final class SeatMap {
+        private static final long VERSION_INCREMENT = 1L << 32;
+        private static final long VERSION_MASK = -VERSION_INCREMENT;
+
+        private final SeatInfo[] seats;
+        private final Map<String, Integer> positions;
+        // Bit encendido: asiento disponible
+        private final AtomicLongArray available;
+        // Bit encendido: asiento con cambios sin escribir
+        private final AtomicLongArray dirty;
+        // Posición del primer asiento de cada fila; el último elemento es el total
+        private final int[] rowStarts;
+        // Índice de rachas libres por fila: versión en los 32 bits altos y, en los
+        // bajos, la racha libre más larga + 1 (0 si no se ha calculado)
+        private final AtomicLongArray runIndex;
+        // Asientos de cada zona como mapa de bits
+        private final Map<String, long[]> zoneMasks = new HashMap<>();
+
+        SeatMap(List<SeatView> views) {
+            List<SeatView> sorted = new ArrayList<>(views);
+            sorted.sort(Comparator.comparing(SeatView::getSeatRow, SeatIndex::compareLabels)
+                .thenComparing(SeatView::getNumber, SeatIndex::compareLabels));
+
+            int words = (sorted.size() + Long.SIZE - 1) / Long.SIZE;
+            this.seats = new SeatInfo[sorted.size()];
+            this.positions = new HashMap<>(sorted.size() * 2);
+            this.available = new AtomicLongArray(words);
+            this.dirty = new AtomicLongArray(words);
+            List<Integer> starts = new ArrayList<>();
+            for (int i = 0; i < sorted.size(); i++) {
+                SeatView view = sorted.get(i);
+                seats[i] = new SeatInfo(view.getId(), view.getSeatRow(), view.getNumber(), view.getZone());
+                positions.put(view.getId(), i);
+                if (view.isAvailable()) {
+                    available.set(i / Long.SIZE, available.get(i / Long.SIZE) | bit(i));
+                }
+                if (i == 0 || compareLabels(seats[i - 1].row(), seats[i].row()) != 0) {
+                    starts.add(i);
+                }
+                if (view.getZone() != null) {
+                    zoneMasks.computeIfAbsent(view.getZone(), zone -> new long[words])[i / Long.SIZE] |= bit(i);
+                }
+            }
+            starts.add(sorted.size());
+            this.rowStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+            this.runIndex = new AtomicLongArray(rowStarts.length - 1);
+        }
+
+        /**
+         * Elige posiciones para N asientos, o null si no hay suficientes libres
+         */
+        int[] findBest(int quantity, long[] zoneMask) {
+            int rows = rowStarts.length - 1;
+            for (int row = 0; row < rows; row++) {
+                int[] run = findRun(row, quantity, zoneMask);
+                if (run != null) {
+                    return run;
+                }
+            }
+
+            // Sin rachas suficientes: el grupo con menor separación dentro de una fila
+            int[] best = null;
+            int bestSpan = Integer.MAX_VALUE;
+            for (int row = 0; row < rows; row++) {
+                List<Integer> free = freePositions(rowStarts[row], rowStarts[row + 1], zoneMask, Integer.MAX_VALUE);
+                for (int i = 0; i + quantity <= free.size(); i++) {
+                    int span = free.get(i + quantity - 1) - free.get(i);
+                    if (span < bestSpan) {
+                        bestSpan = span;
+                        best = free.subList(i, i + quantity).stream().mapToInt(Integer::intValue).toArray();
+                    }
+                }
+            }
+            if (best != null) {
+                return best;
+            }
+
+            // Ninguna fila alcanza: los primeros asientos libres en orden
+            List<Integer> free = freePositions(0, seats.length, zoneMask, quantity);
+            return free.size() < quantity ? null : free.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * Busca N asientos libres contiguos en una fila. Las filas cuya racha más
+         * larga ya se sabe menor a N se descartan sin recorrerlas.
+         */
+        private int[] findRun(int row, int quantity, long[] zoneMask) {
+            long snapshot = runIndex.get(row);
+            int knownLongest = (int) snapshot - 1;
+            if (knownLongest >= 0 && knownLongest < quantity) {
+                return null;
+            }
+            int run = 0;
+            int longest = 0;
+            for (int position = rowStarts[row]; position < rowStarts[row + 1]; position++) {
+                run = isEligible(position, zoneMask) ? run + 1 : 0;
+                if (run == quantity) {
+                    int[] positions = new int[quantity];
+                    for (int i = 0; i < quantity; i++) {
+                        positions[i] = position - quantity + 1 + i;
+                    }
+                    return positions;
+                }
+                longest = Math.max(longest, run);
+            }
+            // Solo se guarda la racha de toda la fila y si nadie la cambió durante el recorrido
+            if (zoneMask == null) {
+                runIndex.compareAndSet(row, snapshot, (snapshot & VERSION_MASK) | (longest + 1));
+            }
+            return null;
+        }
+
+        private List<Integer> freePositions(int from, int to, long[] zoneMask, int limit) {
+            List<Integer> free = new ArrayList<>();
+            for (int position = from; position < to && free.size() < limit; position++) {
+                if (isEligible(position, zoneMask)) {
+                    free.add(position);
+                }
+            }
+            return free;
+        }
+
+        private boolean isEligible(int position, long[] zoneMask) {
+            return isAvailable(position)
+                && (zoneMask == null || (zoneMask[position / Long.SIZE] & bit(position)) != 0);
+        }
+
+        /**
+         * Invalida la racha libre calculada para la fila del asiento
+         */
+        private void invalidateRow(int position) {
+            int search = Arrays.binarySearch(rowStarts, position);
+            int row = search >= 0 ? search : -search - 2;
+            runIndex.getAndUpdate(row, value -> (value & VERSION_MASK) + VERSION_INCREMENT);
+        }
+
+        boolean isAvailable(int position) {
+            return (available.get(position / Long.SIZE) & bit(position)) != 0;
+        }
+
+        /**
+         * Apaga el bit del asiento si estaba encendido
+         */
+        boolean take(int position) {
+            int word = position / Long.SIZE;
+            long mask = bit(position);
+            while (true) {
+                long current = available.get(word);
+                if ((current & mask) == 0) {
+                    return false;
+                }
+                if (available.compareAndSet(word, current, current & ~mask)) {
+                    invalidateRow(position);
+                    return true;
+                }
+            }
+        }
+
+        void put(int position) {
+            available.getAndAccumulate(position / Long.SIZE, bit(position), (current, mask) -> current | mask);
+            invalidateRow(position);
+        }
+
+        /**
+         * Cambios de asientos desde que se cargó el plano: la suma de las
+         * versiones de las filas, que crecen con cada asiento apartado o liberado
+         */
+        long changes() {
+            long changes = 0;
+            for (int row = 0; row < runIndex.length(); row++) {
+                changes += runIndex.get(row) >>> 32;
+            }
+            return changes;
+        }
+
+        void markDirty(int position) {
+            dirty.getAndAccumulate(position / Long.SIZE, bit(position), (current, mask) -> current | mask);
+        }
+
+        private static long bit(int position) {
+            return 1L << (position % Long.SIZE);
+        }
+    }
+}
@@ -1,14 +1,26 @@
 package mx.uam.tsis.ticketmaster.negocio.modelo;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.Data;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 
 @Data
 @Entity
-@Table(name = "events")
+@Table(name = "events", indexes = {
+    @Index(name = "idx_events_category_start", columnList = "category, start_date"),
+    @Index(name = "idx_events_start_date", columnList = "start_date"),
+    @Index(name = "idx_events_min_price", columnList = "min_price"),
+    @Index(name = "idx_events_sold_out_start", columnList = "sold_out, start_date")
+})
+// Los agregados del inventario los escribe el libro de inventario sin pasar por la entidad,
+// así que la región no se vacía con cada apartado
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "events")
 public class Event {
     
     public enum EventStatus {
@@ -32,13 +44,21 @@ public class Event {
     @Enumerated(EnumType.STRING)
     private EventStatus status;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "created_by_id")
     private User createdBy;
     
     @OneToMany(mappedBy = "event", cascade = CascadeType.ALL)
     private List<TicketType> ticketTypes = new ArrayList<>();
     
+    // Agregados de los tipos de ticket; se mantienen al crear el evento y al escribir el inventario
+    private Double minPrice;
+    private Double minPromotionalPrice;
+    @Column(nullable = false, updatable = false)
+    private int availableTickets;
+    @Column(nullable = false, updatable = false)
+    private boolean soldOut = true;
+
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     
@@ -105,6 +125,21 @@ public class Event {
         this.startDate = eventDate;
     }
 
+    /**
+     * Recalcula el precio más bajo, el precio promocional más bajo y la
+     * disponibilidad total a partir de los tipos de ticket
+     * @param types Tipos de ticket del evento
+     */
+    public void updateAggregates(Collection<TicketType> types) {
+        minPrice = types.stream().map(TicketType::getPrice).filter(Objects::nonNull)
+            .min(Double::compare).orElse(null);
+        minPromotionalPrice = types.stream().map(TicketType::getPromotionalPrice).filter(Objects::nonNull)
+            .min(Double::compare).orElse(null);
+        availableTickets = types.stream().map(TicketType::getAvailableQuantity).filter(Objects::nonNull)
+            .mapToInt(Integer::intValue).sum();
+        soldOut = availableTickets <= 0;
+    }
+
     public boolean isPast() {
         return startDate != null && startDate.isBefore(LocalDateTime.now());
     }
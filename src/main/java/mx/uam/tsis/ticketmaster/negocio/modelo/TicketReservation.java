@@ -1,7 +1,10 @@
 package mx.uam.tsis.ticketmaster.negocio.modelo;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
@@ -10,12 +13,15 @@ import java.time.LocalDateTime;
 import lombok.Data;
 
 @Entity
-@Table(name = "ticket_reservations")
+@Table(name = "ticket_reservations", indexes = {
+    @Index(name = "idx_reservations_expires", columnList = "expires_at, id"),
+    @Index(name = "idx_reservations_active_expires", columnList = "active, expires_at, id")
+})
 public class TicketReservation {
     @Id
     private String id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "ticket_type_id")
     private TicketType ticketType;
 
@@ -24,6 +30,10 @@ public class TicketReservation {
     private boolean active;
     private LocalDateTime expiresAt;
 
+    // Clave de idempotencia enviada por el cliente; única para detectar reintentos entre nodos
+    @Column(unique = true)
+    private String idempotencyKey;
+
     @PrePersist
     protected void onCreate() {
         expiresAt = LocalDateTime.now().plusMinutes(5);
@@ -78,6 +88,14 @@ public class TicketReservation {
         this.expiresAt = expiresAt;
     }
 
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
     public boolean isExpired() {
         return expiresAt.isBefore(LocalDateTime.now());
     }
@@ -1,12 +1,19 @@
 package mx.uam.tsis.ticketmaster.negocio.modelo;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.Data;
 import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "ticket_types")
+@Table(name = "ticket_types", indexes = {
+    @Index(name = "idx_ticket_types_event_price", columnList = "event_id, price")
+})
+// La región guarda los datos del tipo de ticket; la disponibilidad vigente es la del libro
+// de inventario, que escribe available_quantity sin pasar por la entidad ni vaciar la región
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "ticket_types")
 public class TicketType {
     
     @Id
@@ -17,6 +24,8 @@ public class TicketType {
     private Double price;
     private Double promotionalPrice;
     private Integer quantity;
+    // Solo se escribe al crear el tipo de ticket; después la mantiene el libro de inventario
+    @Column(updatable = false)
     private Integer availableQuantity;
     private Integer maxPerPerson;
     private Integer soldQuantity;
@@ -24,8 +33,14 @@ public class TicketType {
     private LocalDateTime saleStartDate;
     private LocalDateTime saleEndDate;
     private String venueZone;
+
+    // Número de franjas del contador de inventario en memoria; null usa el valor por defecto
+    private Integer inventoryShards;
+
+    @Version
+    private Long version;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "event_id")
     private Event event;
 
@@ -65,6 +80,9 @@ public class TicketType {
     public String getVenueZone() { return venueZone; }
     public void setVenueZone(String venueZone) { this.venueZone = venueZone; }
 
+    public Integer getInventoryShards() { return inventoryShards; }
+    public void setInventoryShards(Integer inventoryShards) { this.inventoryShards = inventoryShards; }
+
     public Event getEvent() { return event; }
     public void setEvent(Event event) { this.event = event; }
 
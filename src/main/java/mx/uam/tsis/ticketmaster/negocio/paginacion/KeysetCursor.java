@@ -0,0 +1,60 @@
+package mx.uam.tsis.ticketmaster.negocio.paginacion;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Posición de la última fila de una página ordenada por (fecha, id). La
+ * siguiente página empieza justo después, así que cuesta lo mismo sin importar
+ * cuántas filas haya antes. Para el cliente es un texto opaco.
+ *
+ * @param position fecha de la última fila; puede ser null
+ * @param id ID de la última fila, desempata filas con la misma fecha
+ */
+public record KeysetCursor(LocalDateTime position, String id) {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private static final char SEPARATOR = '|';
+
+    public String encode() {
+        String raw = (position == null ? "" : position.toString()) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor texto devuelto por una página anterior, o null para la primera
+     * @return la posición, o null si es la primera página
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0 || separator == raw.length() - 1) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            LocalDateTime position = separator == 0 ? null : LocalDateTime.parse(raw.substring(0, separator));
+            return new KeysetCursor(position, raw.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+
+    /**
+     * Valida el tamaño de página pedido
+     * @param limit tamaño pedido
+     * @return el tamaño a usar, como máximo MAX_PAGE_SIZE
+     */
+    public static int pageSize(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("El tamaño de página debe ser mayor a cero");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+}
@@ -0,0 +1,43 @@
+package mx.uam.tsis.ticketmaster.negocio.paginacion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Posición del último resultado de una página ordenada por relevancia
+ * descendente y luego por ID. Para el cliente es un texto opaco, igual que
+ * {@link KeysetCursor}.
+ *
+ * @param score relevancia del último resultado
+ * @param id ID del último resultado
+ */
+public record RankCursor(double score, String id) {
+
+    private static final char SEPARATOR = '|';
+
+    public String encode() {
+        String raw = Double.toString(score) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor texto devuelto por una página anterior, o null para la primera
+     * @return la posición, o null si es la primera página
+     */
+    public static RankCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator <= 0 || separator == raw.length() - 1) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            return new RankCursor(Double.parseDouble(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException también es IllegalArgumentException
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+}
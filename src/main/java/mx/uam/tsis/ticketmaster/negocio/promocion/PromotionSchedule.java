@@ -0,0 +1,278 @@
+package mx.uam.tsis.ticketmaster.negocio.promocion;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import mx.uam.tsis.ticketmaster.datos.TicketTypeRepository;
+import mx.uam.tsis.ticketmaster.datos.TicketTypeRepository.PromotionSource;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+/**
+ * Calendario de promociones: las ventanas de venta de los tipos de ticket con
+ * precio promocional, indexadas por tiempo.
+ *
+ * Una promoción está vigente después del inicio de su venta y antes de que
+ * termine la venta o empiece el evento, lo que ocurra primero. Las ventanas se
+ * guardan ordenadas por inicio en un árbol de intervalos implícito: cada nodo
+ * conoce el fin más tardío de su subárbol, así que encontrar las promociones
+ * vigentes en cualquier momento solo visita las ramas que pueden tenerlas.
+ *
+ * Las promociones vigentes ahora se guardan ya armadas junto con el tramo de
+ * tiempo en que no cambian, que va de un inicio o fin de ventana al siguiente;
+ * solo se vuelven a buscar al cruzar uno de esos límites.
+ *
+ * El calendario se carga con una consulta al arrancar, se completa con los
+ * eventos que se crean y se recarga periódicamente para recoger los cambios.
+ * Las promociones de los eventos creados mientras se recarga se guardan aparte
+ * y se vuelven a agregar al índice nuevo, porque la consulta pudo leer la base
+ * de datos antes de que existieran.
+ */
+@Slf4j
+@Component
+public class PromotionSchedule {
+
+    private static final Comparator<Promotion> DISPLAY_ORDER = Comparator.comparing(Promotion::startDate)
+        .thenComparing(Promotion::eventId)
+        .thenComparing(Promotion::ticketTypeId);
+
+    /**
+     * Una promoción de un tipo de ticket con los datos de su evento
+     */
+    public record Promotion(String ticketTypeId, String eventId, String eventName, String description,
+                            LocalDateTime startDate, LocalDateTime endDate, String venue, String category,
+                            double price, double promotionalPrice, LocalDateTime saleEndDate) {
+
+        public double discountPercentage() {
+            return ((price - promotionalPrice) / price) * 100;
+        }
+    }
+
+    @Autowired
+    private TicketTypeRepository ticketTypeRepository;
+
+    private volatile Index index = new Index(new ArrayList<>());
+    private volatile Active active;
+    // Ventanas agregadas durante una recarga; se protegen con el monitor del calendario
+    private final List<Window> addedDuringRebuild = new ArrayList<>();
+    private int rebuilding;
+
+    /**
+     * Vuelve a cargar el calendario desde la base de datos
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${ticketmaster.promotions.refresh-ms:60000}",
+               initialDelayString = "${ticketmaster.promotions.refresh-ms:60000}")
+    public void rebuild() {
+        synchronized (this) {
+            rebuilding++;
+        }
+        List<PromotionSource> sources;
+        try {
+            sources = ticketTypeRepository.findPromotionSources(LocalDateTime.now());
+        } catch (RuntimeException e) {
+            finishRebuild(null);
+            throw e;
+        }
+        List<Window> windows = new ArrayList<>();
+        for (PromotionSource source : sources) {
+            addWindow(windows, new Promotion(source.getTicketTypeId(), source.getEventId(), source.getEventName(),
+                source.getDescription(), source.getStartDate(), source.getEndDate(), source.getVenue(),
+                source.getCategory(), source.getPrice(), source.getPromotionalPrice(), source.getSaleEndDate()),
+                source.getSaleStartDate());
+        }
+        finishRebuild(windows);
+        log.debug("Calendario de promociones cargado con {} ventanas", windows.size());
+    }
+
+    private synchronized void finishRebuild(List<Window> windows) {
+        if (windows != null) {
+            Set<String> loaded = new HashSet<>();
+            for (Window window : windows) {
+                loaded.add(window.promotion().ticketTypeId());
+            }
+            for (Window window : addedDuringRebuild) {
+                // La consulta pudo haberla leído ya
+                if (!loaded.contains(window.promotion().ticketTypeId())) {
+                    windows.add(window);
+                }
+            }
+            index = new Index(windows);
+        }
+        if (--rebuilding == 0) {
+            addedDuringRebuild.clear();
+        }
+    }
+
+    /**
+     * Agrega las promociones de un evento recién creado
+     * @param event Evento creado
+     * @param ticketTypes Tipos de ticket guardados del evento
+     */
+    public synchronized void add(Event event, List<TicketType> ticketTypes) {
+        List<Window> windows = new ArrayList<>(Arrays.asList(index.windows));
+        int before = windows.size();
+        for (TicketType ticketType : ticketTypes) {
+            Double price = ticketType.getPrice();
+            Double promotionalPrice = ticketType.getPromotionalPrice();
+            if (price == null || promotionalPrice == null || promotionalPrice >= price) {
+                continue;
+            }
+            addWindow(windows, new Promotion(ticketType.getId(), event.getId(), event.getName(),
+                event.getDescription(), event.getStartDate(), event.getEndDate(), event.getVenue(),
+                event.getCategory(), price, promotionalPrice, ticketType.getSaleEndDate()),
+                ticketType.getSaleStartDate());
+        }
+        if (windows.size() > before) {
+            index = new Index(windows);
+            if (rebuilding > 0) {
+                addedDuringRebuild.addAll(windows.subList(before, windows.size()));
+            }
+        }
+    }
+
+    /**
+     * Promociones vigentes en este momento
+     * @return promociones ordenadas por fecha del evento; la lista no se debe modificar
+     */
+    public List<Promotion> current() {
+        return current(LocalDateTime.now());
+    }
+
+    List<Promotion> current(LocalDateTime now) {
+        long time = millis(now);
+        Index current = index;
+        Active cached = active;
+        if (cached != null && cached.index == current && time > cached.from && time < cached.until) {
+            return cached.promotions;
+        }
+
+        List<Promotion> promotions = current.activeAt(time);
+        int next = current.nextBoundary(time);
+        long from = next > 0 ? current.boundaries[next - 1] : Long.MIN_VALUE;
+        long until = next < current.boundaries.length ? current.boundaries[next] : Long.MAX_VALUE;
+        // Justo en un límite el conjunto es distinto al del tramo que empieza ahí
+        if (from != time) {
+            active = new Active(current, from, until, promotions);
+        }
+        return promotions;
+    }
+
+    /**
+     * Promociones vigentes en cualquier momento, para vistas previas
+     * @param time Momento a consultar
+     * @return promociones ordenadas por fecha del evento
+     */
+    public List<Promotion> activeAt(LocalDateTime time) {
+        return index.activeAt(millis(time));
+    }
+
+    private static void addWindow(List<Window> windows, Promotion promotion, LocalDateTime saleStartDate) {
+        if (promotion.startDate() == null) {
+            return;
+        }
+        // Sin fechas de venta, la promoción dura hasta que empieza el evento
+        long from = saleStartDate != null ? millis(saleStartDate) : Long.MIN_VALUE;
+        long until = millis(promotion.startDate());
+        if (promotion.saleEndDate() != null) {
+            until = Math.min(until, millis(promotion.saleEndDate()));
+        }
+        if (from < until) {
+            windows.add(new Window(promotion, from, until));
+        }
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Ventana abierta (from, until) en que la promoción está vigente
+     */
+    private record Window(Promotion promotion, long from, long until) {
+    }
+
+    private record Active(Index index, long from, long until, List<Promotion> promotions) {
+    }
+
+    /**
+     * Árbol de intervalos sobre un arreglo ordenado por inicio: la raíz de
+     * [lo, hi) es el elemento de en medio y maxUntil guarda el fin más tardío
+     * de cada subárbol
+     */
+    private static final class Index {
+        private final Window[] windows;
+        private final long[] maxUntil;
+        // Inicios y fines de todas las ventanas, ordenados y sin repetir
+        private final long[] boundaries;
+
+        Index(List<Window> windows) {
+            this.windows = windows.toArray(new Window[0]);
+            Arrays.sort(this.windows, Comparator.comparingLong(Window::from));
+            this.maxUntil = new long[this.windows.length];
+            build(0, this.windows.length);
+            this.boundaries = windows.stream()
+                .flatMapToLong(window -> LongStream.of(window.from(), window.until()))
+                .sorted()
+                .distinct()
+                .toArray();
+        }
+
+        private long build(int lo, int hi) {
+            if (lo >= hi) {
+                return Long.MIN_VALUE;
+            }
+            int mid = (lo + hi) >>> 1;
+            long max = Math.max(windows[mid].until(), Math.max(build(lo, mid), build(mid + 1, hi)));
+            maxUntil[mid] = max;
+            return max;
+        }
+
+        List<Promotion> activeAt(long time) {
+            List<Promotion> promotions = new ArrayList<>();
+            collect(0, windows.length, time, promotions);
+            promotions.sort(DISPLAY_ORDER);
+            return List.copyOf(promotions);
+        }
+
+        private void collect(int lo, int hi, long time, List<Promotion> promotions) {
+            if (lo >= hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            // Nada en este subárbol sigue vigente
+            if (maxUntil[mid] <= time) {
+                return;
+            }
+            collect(lo, mid, time, promotions);
+            // A la derecha todas empiezan igual o después que esta
+            if (windows[mid].from() < time) {
+                if (windows[mid].until() > time) {
+                    promotions.add(windows[mid].promotion());
+                }
+                collect(mid + 1, hi, time, promotions);
+            }
+        }
+
+        /**
+         * Posición del primer límite posterior al momento dado
+         */
+        int nextBoundary(long time) {
+            int position = Arrays.binarySearch(boundaries, time);
+            return position >= 0 ? position + 1 : -position - 1;
+        }
+    }
+}
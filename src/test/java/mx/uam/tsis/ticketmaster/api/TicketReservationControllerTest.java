@@ -4,6 +4,7 @@ import mx.uam.tsis.ticketmaster.negocio.TicketReservationService;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.TicketReservationResponse;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.SeatAvailabilityResponse;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.ErrorResponse;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.CursorPage;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -11,9 +12,11 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -42,7 +45,7 @@ class TicketReservationControllerTest {
             .thenReturn(mockResponse);
 
         mockMvc.perform(post("/api/reservations")
-                .param("eventId", "EVENT-001")
+                .param("eventId", "1")
                 .param("ticketTypeId", "TICKET-001")
                 .param("quantity", "2")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -63,7 +66,7 @@ class TicketReservationControllerTest {
             .thenReturn(mockResponse);
 
         mockMvc.perform(post("/api/reservations")
-                .param("eventId", "EVENT-001")
+                .param("eventId", "1")
                 .param("ticketTypeId", "TICKET-001")
                 .param("quantity", "6")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -73,17 +76,65 @@ class TicketReservationControllerTest {
             .andExpect(jsonPath("$.discountApplied").value(true));
     }
 
+    @Test
+    void crearReservacion_MejoresAsientos() throws Exception {
+        TicketReservationResponse mockResponse = new TicketReservationResponse(
+            "RES-001", "TICKET-001", "VIP", "Zona A", 2, 1000.0, 2000.0, false,
+            LocalDateTime.now().plusMinutes(5), true
+        );
+        mockResponse.setSeats(List.of(
+            new SeatAvailabilityResponse("SEAT-001", "A", "1", "Platea", 1000.0),
+            new SeatAvailabilityResponse("SEAT-002", "A", "2", "Platea", 1000.0)));
+        when(reservationService.createBestAvailableReservation("1", "TICKET-001", 2, "Platea"))
+            .thenReturn(mockResponse);
+
+        mockMvc.perform(post("/api/reservations")
+                .param("eventId", "1")
+                .param("ticketTypeId", "TICKET-001")
+                .param("quantity", "2")
+                .param("bestAvailable", "true")
+                .param("zone", "Platea")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.seats.length()").value(2))
+            .andExpect(jsonPath("$.seats[0].id").value("SEAT-001"));
+        verify(reservationService, never()).createReservation(anyString(), anyString(), anyInt(), any());
+    }
+
+    @Test
+    void crearReservacion_MejoresAsientosConAsientosExplicitos() throws Exception {
+        mockMvc.perform(post("/api/reservations")
+                .param("eventId", "1")
+                .param("ticketTypeId", "TICKET-001")
+                .param("quantity", "1")
+                .param("seatIds", "SEAT-001")
+                .param("bestAvailable", "true")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     void crearReservacion_EventoNoEncontrado() throws Exception {
         when(reservationService.createReservation(anyString(), anyString(), anyInt(), any()))
             .thenThrow(new IllegalArgumentException("Evento no encontrado"));
 
         mockMvc.perform(post("/api/reservations")
-                .param("eventId", "EVENT-001")
+                .param("eventId", "1")
+                .param("ticketTypeId", "TICKET-001")
+                .param("quantity", "2")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void crearReservacion_EventoInexistenteNoEntraALaSalaDeEspera() throws Exception {
+        mockMvc.perform(post("/api/reservations")
+                .param("eventId", "EVENT-NO-EXISTE")
                 .param("ticketTypeId", "TICKET-001")
                 .param("quantity", "2")
                 .contentType(MediaType.APPLICATION_JSON))
             .andExpect(status().isNotFound());
+        verify(reservationService, never()).createReservation(anyString(), anyString(), anyInt(), any());
     }
 
     @Test
@@ -92,7 +143,7 @@ class TicketReservationControllerTest {
             .thenThrow(new IllegalStateException("No hay suficientes tickets disponibles"));
 
         mockMvc.perform(post("/api/reservations")
-                .param("eventId", "EVENT-001")
+                .param("eventId", "1")
                 .param("ticketTypeId", "TICKET-001")
                 .param("quantity", "2")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -117,6 +168,49 @@ class TicketReservationControllerTest {
             .andExpect(jsonPath("$[0].zone").value("VIP"));
     }
 
+    @Test
+    void obtenerAsientosDisponibles_SinCambios_DeberiaResponder304() throws Exception {
+        when(reservationService.getAvailableSeatsVersion("EVENT-001", "TICKET-001"))
+            .thenReturn(Optional.of("v1"));
+        when(reservationService.getAvailableSeats(anyString(), anyString()))
+            .thenReturn(List.of(new SeatAvailabilityResponse("SEAT-001", "A", "1", "VIP", 1000.0)));
+
+        mockMvc.perform(get("/api/reservations/events/EVENT-001/seats/TICKET-001"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"v1\""));
+
+        mockMvc.perform(get("/api/reservations/events/EVENT-001/seats/TICKET-001")
+                .header("If-None-Match", "\"v1\""))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string("ETag", "\"v1\""))
+            .andExpect(content().string(""));
+
+        // El plano solo se armó para la primera consulta
+        verify(reservationService, times(1)).getAvailableSeats(anyString(), anyString());
+    }
+
+    @Test
+    void transmitirReservaciones_DeberiaEscribirUnArregloJson() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<TicketReservationResponse> consumer = invocation.getArgument(0);
+            for (int i = 0; i < 3; i++) {
+                consumer.accept(new TicketReservationResponse("RES-" + i, "TICKET-001", "VIP", "A", 1, 1000.0,
+                    1000.0, false, LocalDateTime.now().plusMinutes(5), true));
+            }
+            return null;
+        }).when(reservationService).streamAllReservations(any());
+
+        MvcResult result = mockMvc.perform(get("/api/reservations/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$.length()").value(3))
+            .andExpect(jsonPath("$[2].reservationId").value("RES-2"));
+    }
+
     @Test
     void cancelarReservacion_Exitoso() throws Exception {
         doNothing().when(reservationService).cancelReservation(anyString());
@@ -137,4 +231,35 @@ class TicketReservationControllerTest {
                 .contentType(MediaType.APPLICATION_JSON))
             .andExpect(status().isNotFound());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void consultarTurno_NoEncontrado() throws Exception {
+        mockMvc.perform(get("/api/reservations/queue/TURNO-INEXISTENTE"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void listarReservaciones_CursorSiguienteEnCabecera() throws Exception {
+        TicketReservationResponse reservation = new TicketReservationResponse(
+            "RES-001", "TICKET-001", "VIP", "Zona A", 2, 1000.0, 2000.0, false,
+            LocalDateTime.now().plusMinutes(5), true
+        );
+        when(reservationService.getActiveReservations(any(), anyInt()))
+            .thenReturn(new CursorPage<>(List.of(reservation), "CURSOR-2"));
+
+        mockMvc.perform(get("/api/reservations/active").param("limit", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Next-Cursor", "CURSOR-2"))
+            .andExpect(jsonPath("$[0].reservationId").value("RES-001"));
+    }
+
+    @Test
+    void listarReservaciones_CursorInvalido() throws Exception {
+        when(reservationService.getAllReservations(anyString(), anyInt()))
+            .thenThrow(new IllegalArgumentException("Cursor inválido"));
+
+        mockMvc.perform(get("/api/reservations").param("cursor", "basura"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.error").value("Cursor inválido"));
+    }
+}
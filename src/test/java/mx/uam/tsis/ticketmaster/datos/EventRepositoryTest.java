@@ -0,0 +1,108 @@
+package mx.uam.tsis.ticketmaster.datos;
+
+import mx.uam.tsis.ticketmaster.config.SecondLevelCacheConfig;
+import mx.uam.tsis.ticketmaster.dto.EventSearchRequest;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(SecondLevelCacheConfig.class)
+class EventRepositoryTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2030, 5, 1, 20, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @BeforeEach
+    void setUp() {
+        persistEvent("ROCK", "Noche de Rock", "Concierto", "Foro Sol", BASE, 800.0, 0, 1500.0, 10);
+        persistEvent("JAZZ", "Jazz al 100%", "Concierto", "Teatro Metropolitan", BASE.plusDays(10), 400.0, 0);
+        persistEvent("FUT", "Final de Fútbol", "Deporte", "Estadio Azteca", BASE.plusDays(20), 300.0, 50);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void buscar_PorNombreLugarYFechas() {
+        assertThat(search(r -> r.setName("rock"))).containsExactly("ROCK");
+        assertThat(search(r -> r.setName("100%"))).containsExactly("JAZZ");
+        assertThat(search(r -> r.setVenue("estadio"))).containsExactly("FUT");
+        assertThat(search(r -> {
+            r.setFromDate(BASE.plusDays(5));
+            r.setToDate(BASE.plusDays(15));
+        })).containsExactly("JAZZ");
+        assertThat(search(r -> r.setCategory("Concierto"))).containsExactly("ROCK", "JAZZ");
+        assertThat(eventRepository.findIdsPage(EventSpecifications.matching(null), 10))
+            .containsExactly("ROCK", "JAZZ", "FUT");
+    }
+
+    @Test
+    void buscar_PorPrecioMinimoYDisponibilidad() {
+        // El precio del evento es el de su ticket más barato
+        assertThat(search(r -> r.setMinPrice(500.0))).containsExactly("ROCK");
+        assertThat(search(r -> r.setMaxPrice(350.0))).containsExactly("FUT");
+        assertThat(search(r -> r.setHasAvailability(true))).containsExactly("ROCK", "FUT");
+    }
+
+    @Test
+    void ajustarDisponibilidad_DeberiaMarcarElEventoAgotado() {
+        assertThat(eventRepository.adjustAvailableTickets("FUT-0", -50)).isEqualTo(1);
+        assertThat(eventRepository.findById("FUT")).get()
+            .satisfies(e -> assertThat(e.getAvailableTickets()).isZero())
+            .satisfies(e -> assertThat(e.isSoldOut()).isTrue());
+        assertThat(search(r -> r.setHasAvailability(true))).containsExactly("ROCK");
+
+        eventRepository.adjustAvailableTickets("FUT-0", 5);
+        assertThat(search(r -> r.setHasAvailability(true))).containsExactly("ROCK", "FUT");
+    }
+
+    private List<String> search(Consumer<EventSearchRequest> criteria) {
+        EventSearchRequest request = new EventSearchRequest();
+        criteria.accept(request);
+        return eventRepository.findIdsPage(EventSpecifications.matching(request), 10);
+    }
+
+    private void persistEvent(String id, String name, String category, String venue, LocalDateTime start,
+                              Object... pricesAndAvailability) {
+        Event event = new Event();
+        event.setId(id);
+        event.setName(name);
+        event.setDescription("Descripción de " + name);
+        event.setCategory(category);
+        event.setVenue(venue);
+        event.setStartDate(start);
+        event.setActive(true);
+
+        List<TicketType> types = new ArrayList<>();
+        for (int i = 0; i < pricesAndAvailability.length; i += 2) {
+            TicketType ticketType = new TicketType();
+            ticketType.setId(id + "-" + i);
+            ticketType.setName("Tipo " + i);
+            ticketType.setPrice((Double) pricesAndAvailability[i]);
+            ticketType.setAvailableQuantity((Integer) pricesAndAvailability[i + 1]);
+            ticketType.setEvent(event);
+            types.add(ticketType);
+        }
+        // Los agregados del inventario solo se escriben al insertar el evento
+        event.updateAggregates(types);
+        entityManager.persist(event);
+        types.forEach(entityManager::persist);
+    }
+}
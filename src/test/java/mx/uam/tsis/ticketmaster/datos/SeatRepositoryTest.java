@@ -0,0 +1,53 @@
+package mx.uam.tsis.ticketmaster.datos;
+
+import mx.uam.tsis.ticketmaster.config.SecondLevelCacheConfig;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Seat;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest
+@Import(SecondLevelCacheConfig.class)
+class SeatRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private SeatRepository seatRepository;
+
+    @Test
+    void plano_DeberiaLeerYActualizarAsientosSinCargarEntidades() {
+        Event event = new Event();
+        event.setId("EVENT-001");
+        event.setName("Test Event");
+        event.setActive(true);
+        entityManager.persist(event);
+
+        TicketType ticketType = new TicketType();
+        ticketType.setId("TICKET-001");
+        ticketType.setName("VIP");
+        ticketType.setEvent(event);
+        entityManager.persist(ticketType);
+
+        Seat a1 = entityManager.persist(new Seat(ticketType, "A", "1", "VIP"));
+        Seat a2 = entityManager.persist(new Seat(ticketType, "A", "2", "VIP"));
+        entityManager.flush();
+
+        int updated = seatRepository.updateAvailability(List.of(a1.getId()), false);
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(seatRepository.findSeatViewsByTicketTypeId("TICKET-001"))
+            .extracting(SeatRepository.SeatView::getId, SeatRepository.SeatView::isAvailable)
+            .containsExactlyInAnyOrder(tuple(a1.getId(), false), tuple(a2.getId(), true));
+    }
+}
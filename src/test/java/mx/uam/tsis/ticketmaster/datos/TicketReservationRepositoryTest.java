@@ -1,5 +1,7 @@
 package mx.uam.tsis.ticketmaster.datos;
 
+import mx.uam.tsis.ticketmaster.config.SecondLevelCacheConfig;
+import mx.uam.tsis.ticketmaster.datos.TicketReservationRepository.ReservationRow;
 import mx.uam.tsis.ticketmaster.negocio.modelo.TicketReservation;
 import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
 import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
@@ -7,14 +9,18 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @DataJpaTest
+@Import(SecondLevelCacheConfig.class)
 class TicketReservationRepositoryTest {
 
     @Autowired
@@ -89,4 +95,100 @@ class TicketReservationRepositoryTest {
         assertThat(found.get().getQuantity()).isEqualTo(2);
         assertThat(found.get().getActive()).isTrue();
     }
-}
\ No newline at end of file
+
+    @Test
+    void expirarEnBloque_DeberiaDesactivarSoloVencidasYSumarPorTipo() {
+        LocalDateTime now = LocalDateTime.now();
+        Event event = new Event();
+        event.setId("EVENT-001");
+        event.setName("Test Event");
+        event.setActive(true);
+        entityManager.persist(event);
+
+        TicketType vip = new TicketType();
+        vip.setId("TICKET-001");
+        vip.setName("VIP");
+        vip.setEvent(event);
+        entityManager.persist(vip);
+
+        TicketType general = new TicketType();
+        general.setId("TICKET-002");
+        general.setName("General");
+        general.setEvent(event);
+        entityManager.persist(general);
+
+        persistReservation("RES-001", vip, 2, now.minusMinutes(1));
+        persistReservation("RES-002", vip, 3, now.minusMinutes(2));
+        persistReservation("RES-003", general, 4, now.minusMinutes(1));
+        persistReservation("RES-004", general, 5, now.plusMinutes(5));
+        entityManager.flush();
+
+        List<String> ids = List.of("RES-001", "RES-002", "RES-003", "RES-004");
+        List<TicketReservationRepository.ExpiredQuantity> quantities =
+            reservationRepository.sumExpiredQuantities(ids, now);
+        int expired = reservationRepository.deactivateExpired(ids, now);
+
+        assertThat(quantities)
+            .extracting(TicketReservationRepository.ExpiredQuantity::getTicketTypeId,
+                TicketReservationRepository.ExpiredQuantity::getQuantity)
+            .containsExactlyInAnyOrder(tuple("TICKET-001", 5L), tuple("TICKET-002", 4L));
+        assertThat(expired).isEqualTo(3);
+        assertThat(reservationRepository.findByActive(true))
+            .extracting(TicketReservation::getId)
+            .containsExactly("RES-004");
+        // Un segundo intento no vuelve a expirar las mismas filas
+        assertThat(reservationRepository.deactivateExpired(ids, now)).isZero();
+    }
+
+    @Test
+    void paginarPorVencimiento_DeberiaContinuarDespuesDelCursor() {
+        LocalDateTime now = LocalDateTime.now();
+        Event event = new Event();
+        event.setId("EVENT-001");
+        event.setName("Test Event");
+        event.setActive(true);
+        entityManager.persist(event);
+
+        TicketType vip = new TicketType();
+        vip.setId("TICKET-001");
+        vip.setName("VIP");
+        vip.setEvent(event);
+        entityManager.persist(vip);
+
+        persistReservation("RES-003", vip, 1, now.plusMinutes(1));
+        persistReservation("RES-001", vip, 1, now.plusMinutes(2));
+        persistReservation("RES-002", vip, 1, now.plusMinutes(2));
+        persistReservation("RES-004", vip, 1, now.minusMinutes(1));
+        entityManager.flush();
+        // El cursor se arma con las fechas tal como quedaron guardadas
+        entityManager.clear();
+
+        List<ReservationRow> first = reservationRepository.findPage(Limit.of(2));
+        ReservationRow last = first.get(1);
+        List<ReservationRow> next = reservationRepository.findPageAfter(
+            last.expiresAt(), last.id(), Limit.of(2));
+        List<ReservationRow> active = reservationRepository.findActivePageAfter(
+            now, next.get(0).expiresAt(), "RES-001", Limit.of(2));
+
+        assertThat(first).extracting(ReservationRow::id).containsExactly("RES-004", "RES-003");
+        // Las reservaciones con el mismo vencimiento se desempatan por ID
+        assertThat(next).extracting(ReservationRow::id).containsExactly("RES-001", "RES-002");
+        assertThat(active).extracting(ReservationRow::id).containsExactly("RES-002");
+        assertThat(reservationRepository.findActivePage(now, Limit.of(5)))
+            .extracting(ReservationRow::id).containsExactly("RES-003", "RES-001", "RES-002");
+        // Las columnas del tipo de ticket salen de la misma consulta
+        assertThat(next.get(0).ticketTypeName()).isEqualTo("VIP");
+        assertThat(next.get(0).totalPrice()).isEqualTo(1000.0);
+    }
+
+    private void persistReservation(String id, TicketType ticketType, int quantity, LocalDateTime expiresAt) {
+        TicketReservation reservation = new TicketReservation();
+        reservation.setId(id);
+        reservation.setTicketType(ticketType);
+        reservation.setQuantity(quantity);
+        reservation.setTotalPrice(1000.0 * quantity);
+        entityManager.persist(reservation);
+        // onCreate fija la expiración al persistir; se ajusta después
+        reservation.setExpiresAt(expiresAt);
+    }
+}
@@ -0,0 +1,317 @@
+package mx.uam.tsis.ticketmaster.integracion;
+
+import mx.uam.tsis.ticketmaster.datos.EventRepository;
+import mx.uam.tsis.ticketmaster.datos.TicketReservationRepository;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.CursorPage;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.EventDetailResponse;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.EventFacetsResponse;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.FacetCount;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.EventSummaryResponse;
+import mx.uam.tsis.ticketmaster.dto.CreateEventRequest;
+import mx.uam.tsis.ticketmaster.dto.CreateEventRequest.CreateTicketTypeRequest;
+import mx.uam.tsis.ticketmaster.dto.EventSearchRequest;
+import mx.uam.tsis.ticketmaster.negocio.EventService;
+import mx.uam.tsis.ticketmaster.negocio.busqueda.FacetCatalog;
+import mx.uam.tsis.ticketmaster.datos.TicketTypeRepository;
+import mx.uam.tsis.ticketmaster.negocio.inventario.InventoryLedger;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketReservation;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import mx.uam.tsis.ticketmaster.negocio.paginacion.KeysetCursor;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+// Base de datos propia: esta prueba confirma sus datos en lugar de revertirlos
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:catalogo;DB_CLOSE_DELAY=-1",
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "ticketmaster.inventory.flush-interval-ms=3600000",
+    "ticketmaster.search.facets-refresh-ms=3600000",
+    "ticketmaster.calendar.refresh-ms=3600000"
+})
+class CatalogoConsultasTest {
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private TicketTypeRepository ticketTypeRepository;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TicketReservationRepository reservationRepository;
+
+    @Autowired
+    private FacetCatalog facetCatalog;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void catalogo_ConsultasNoCrecenConLosEventos() {
+        crearEventos(2);
+        long allEvents = contarSentencias(() -> eventService.getAllEvents(null, 50));
+        long search = contarSentencias(() -> eventService.searchEvents(
+            new EventSearchRequest(null, null, null, 10_000.0, true), null, 50));
+
+        crearEventos(10);
+        assertThat(contarSentencias(() -> eventService.getAllEvents(null, 50)))
+            .isEqualTo(allEvents).isLessThanOrEqualTo(3);
+        assertThat(contarSentencias(() -> eventService.searchEvents(
+            new EventSearchRequest(null, null, null, 10_000.0, true), null, 50))).isEqualTo(search);
+    }
+
+    @Test
+    void catalogo_RecorrePaginasSinRepetirNiSaltarEventos() {
+        crearEventos(7);
+        List<String> todos = eventService.getAllEvents(null, KeysetCursor.MAX_PAGE_SIZE).getItems().stream()
+            .map(EventSummaryResponse::getId)
+            .toList();
+
+        List<String> recorridos = new ArrayList<>();
+        List<Long> sentencias = new ArrayList<>();
+        String cursor = null;
+        do {
+            String actual = cursor;
+            statistics.clear();
+            CursorPage<EventSummaryResponse> pagina = eventService.getAllEvents(actual, 3);
+            sentencias.add(statistics.getPrepareStatementCount());
+            pagina.getItems().forEach(e -> recorridos.add(e.getId()));
+            cursor = pagina.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(recorridos).containsExactlyElementsOf(todos);
+        // Cada página cuesta lo mismo sin importar su posición
+        assertThat(sentencias).containsOnly(sentencias.get(0));
+    }
+
+    @Test
+    void transmitirEventos_EntregaLoMismoQueElListadoConConsultasPorBloque() {
+        crearEventos(5);
+        List<EventSummaryResponse> todos = eventService.getAllEvents(null, KeysetCursor.MAX_PAGE_SIZE).getItems();
+
+        List<EventSummaryResponse> transmitidos = new ArrayList<>();
+        long sentencias = contarSentencias(() -> {
+            eventService.streamAllEvents(transmitidos::add);
+            return null;
+        });
+
+        assertThat(transmitidos).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(todos);
+        // Eventos, tipos de ticket y reservaciones del único bloque
+        assertThat(sentencias).isEqualTo(3);
+    }
+
+    @Test
+    void buscarPorFechas_UsaElIndiceDelCalendario() {
+        crearEventos(4);
+        LocalDateTime desde = LocalDateTime.now().plusDays(9);
+        LocalDateTime hasta = LocalDateTime.now().plusDays(11);
+        EventSearchRequest soloFechas = new EventSearchRequest();
+        soloFechas.setFromDate(desde);
+        soloFechas.setToDate(hasta);
+        // Un precio mínimo de cero no descarta nada pero manda la búsqueda a la base de datos
+        EventSearchRequest enBaseDeDatos = new EventSearchRequest(null, null, 0.0, null, null);
+        enBaseDeDatos.setFromDate(desde);
+        enBaseDeDatos.setToDate(hasta);
+
+        List<String> esperados = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<EventSummaryResponse> pagina = eventService.searchEvents(enBaseDeDatos, cursor, 3);
+            pagina.getItems().forEach(e -> esperados.add(e.getId()));
+            cursor = pagina.getNextCursor();
+        } while (cursor != null);
+
+        List<String> recorridos = new ArrayList<>();
+        List<Long> sentencias = new ArrayList<>();
+        do {
+            String actual = cursor;
+            statistics.clear();
+            CursorPage<EventSummaryResponse> pagina = eventService.searchEvents(soloFechas, actual, 3);
+            sentencias.add(statistics.getPrepareStatementCount());
+            pagina.getItems().forEach(e -> recorridos.add(e.getId()));
+            cursor = pagina.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(recorridos).hasSizeGreaterThanOrEqualTo(4).containsExactlyElementsOf(esperados);
+        // Sin la consulta de IDs: solo eventos con sus tipos de ticket y reservaciones
+        assertThat(sentencias).containsOnly(2L);
+    }
+
+    @Test
+    void buscarPorTexto_RecorrePaginasPorRelevancia() {
+        crearEventos(5);
+        EventSearchRequest request = new EventSearchRequest(null, "Concierto", null, 10_000.0, null);
+        request.setQuery("EVENTO fo");
+
+        List<String> recorridos = new ArrayList<>();
+        List<Long> sentencias = new ArrayList<>();
+        String cursor = null;
+        do {
+            String actual = cursor;
+            CursorPage<EventSummaryResponse> pagina = eventService.searchEvents(request, actual, 2);
+            sentencias.add(contarSentencias(() -> eventService.searchEvents(request, actual, 2)));
+            pagina.getItems().forEach(e -> recorridos.add(e.getId()));
+            cursor = pagina.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(recorridos).doesNotHaveDuplicates().hasSizeGreaterThanOrEqualTo(5);
+        // Los filtros se revisan en memoria: solo se leen los resúmenes de la página
+        assertThat(sentencias).containsOnly(2L);
+        request.setQuery("inexistente");
+        assertThat(eventService.searchEvents(request, null, 2).getItems()).isEmpty();
+    }
+
+    @Test
+    void facetas_SeCalculanSinConsultarLaBaseDeDatos() {
+        crearEventos(3);
+        EventSearchRequest request = new EventSearchRequest(null, "Concierto", null, 10_000.0, true);
+        request.setQuery("evento");
+
+        EventFacetsResponse[] facets = new EventFacetsResponse[1];
+        long statements = contarSentencias(() -> facets[0] = eventService.getSearchFacets(request));
+
+        assertThat(statements).isZero();
+        assertThat(facets[0].getTotal()).isGreaterThanOrEqualTo(3);
+        assertThat(facets[0].getCategories()).extracting(FacetCount::getValue).contains("Concierto");
+        // Recargar el catálogo desde la base de datos da los mismos conteos
+        facetCatalog.rebuild();
+        assertThat(eventService.getSearchFacets(request)).isEqualTo(facets[0]);
+    }
+
+    @Test
+    void cacheSegundoNivel_SobreviveALaEscrituraDelInventario() {
+        EventDetailResponse evento = crearEventos(1).get(0);
+        String tipo = evento.getTicketTypes().get(0).getId();
+        eventRepository.findById(evento.getId());
+        ticketTypeRepository.findByIdAndEventId(tipo, evento.getId());
+
+        assertThat(contarSentencias(() -> eventRepository.findById(evento.getId()))).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics("events").getHitCount()).isPositive();
+        assertThat(contarSentencias(() -> ticketTypeRepository.findByIdAndEventId(tipo, evento.getId()))).isZero();
+        assertThat(statistics.getQueryCacheHitCount()).isPositive();
+        assertThat(meterRegistry.find("hibernate.second.level.cache.requests")
+            .tags("region", "ticket_types", "result", "hit").functionCounter()).isNotNull();
+
+        // Escribir el inventario no vacía las regiones: las lecturas siguen saliendo de la caché
+        inventoryLedger.tryReserve(ticketTypeRepository.findById(tipo).orElseThrow(), 3);
+        inventoryLedger.flush();
+        assertThat(contarSentencias(() -> eventRepository.findById(evento.getId()))).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics("events").getHitCount()).isPositive();
+        assertThat(contarSentencias(() -> ticketTypeRepository.findById(tipo))).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics("ticket_types").getHitCount()).isPositive();
+        assertThat(contarSentencias(() -> ticketTypeRepository.findByIdAndEventId(tipo, evento.getId()))).isZero();
+        assertThat(statistics.getQueryCacheHitCount()).isPositive();
+
+        // La disponibilidad vigente sale del libro, y la fila quedó escrita
+        assertThat(inventoryLedger.getAvailable(tipo)).hasValue(97);
+        assertThat(ticketTypeRepository.findAvailableQuantityById(tipo)).hasValue(97);
+    }
+
+    @Test
+    void resumenEvento_CuentaReservacionesEnUnaConsulta() {
+        EventDetailResponse evento = crearEventos(1).get(0);
+
+        long statements = contarSentencias(() -> eventService.getEventSummary(evento.getId()));
+        EventSummaryResponse summary = eventService.getEventSummary(evento.getId());
+
+        assertThat(statements).isEqualTo(2);
+        assertThat(summary.getTicketTypes()).hasSize(2);
+        assertThat(summary.getTotalReservations()).isEqualTo(4);
+    }
+
+    @Test
+    void crearEvento_PublicaSusPromocionesDeInmediato() {
+        CreateEventRequest request = new CreateEventRequest();
+        request.setName("Preventa");
+        request.setCategory("Concierto");
+        request.setVenue("Foro");
+        request.setStartDate(LocalDateTime.now().plusDays(10));
+        request.setEndDate(LocalDateTime.now().plusDays(10).plusHours(3));
+        CreateTicketTypeRequest preventa = tipo("VIP", 1500.0);
+        preventa.setPromotionalPrice(1200.0);
+        request.setTicketTypes(List.of(preventa, tipo("General", 500.0)));
+
+        EventDetailResponse evento = eventService.createEvent(request);
+
+        assertThat(eventService.getPromotions(null))
+            .filteredOn(promocion -> promocion.getEventId().equals(evento.getId()))
+            .singleElement()
+            .satisfies(promocion -> assertThat(promocion.getPromotionalPrice()).isEqualTo(1200.0));
+    }
+
+    private long contarSentencias(Supplier<?> consulta) {
+        statistics.clear();
+        consulta.get();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private List<EventDetailResponse> crearEventos(int cantidad) {
+        List<EventDetailResponse> eventos = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            CreateEventRequest request = new CreateEventRequest();
+            request.setName("Evento " + i);
+            request.setCategory("Concierto");
+            request.setVenue("Foro");
+            request.setStartDate(LocalDateTime.now().plusDays(10));
+            request.setEndDate(LocalDateTime.now().plusDays(10).plusHours(3));
+            request.setTicketTypes(List.of(tipo("VIP", 1500.0), tipo("General", 500.0)));
+            EventDetailResponse evento = eventService.createEvent(request);
+
+            // Dos reservaciones por tipo de ticket
+            evento.getTicketTypes().forEach(info -> {
+                for (int r = 0; r < 2; r++) {
+                    TicketReservation reservation = new TicketReservation();
+                    reservation.setId(UUID.randomUUID().toString());
+                    reservation.setTicketType(ticketTypeRepository.findById(info.getId()).orElseThrow());
+                    reservation.setQuantity(1);
+                    reservationRepository.save(reservation);
+                }
+            });
+            eventos.add(evento);
+        }
+        return eventos;
+    }
+
+    private static CreateTicketTypeRequest tipo(String nombre, double precio) {
+        CreateTicketTypeRequest tipo = new CreateTicketTypeRequest();
+        tipo.setName(nombre);
+        tipo.setVenueZone("Zona " + nombre);
+        tipo.setPrice(precio);
+        tipo.setQuantity(100);
+        tipo.setMaxPerPerson(4);
+        tipo.setSaleStartDate(LocalDateTime.now().minusDays(1));
+        tipo.setSaleEndDate(LocalDateTime.now().plusDays(9));
+        return tipo;
+    }
+}
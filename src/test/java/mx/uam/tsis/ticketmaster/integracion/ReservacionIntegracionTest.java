@@ -7,16 +7,21 @@ import mx.uam.tsis.ticketmaster.datos.EventRepository;
 import mx.uam.tsis.ticketmaster.datos.TicketTypeRepository;
 import mx.uam.tsis.ticketmaster.datos.UserRepository;
 import mx.uam.tsis.ticketmaster.datos.TicketReservationRepository;
+import mx.uam.tsis.ticketmaster.negocio.inventario.InventoryLedger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.jayway.jsonpath.JsonPath;
+
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -25,6 +30,12 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @SpringBootTest
 @AutoConfigureMockMvc
 @Transactional
+// El inventario se escribe de forma explícita en las pruebas, no con el job periódico, y los
+// comandos del buzón corren en el hilo de la prueba para ver sus datos sin confirmar
+@TestPropertySource(properties = {
+    "ticketmaster.inventory.flush-interval-ms=3600000",
+    "ticketmaster.reservations.run-on-caller-thread=true"
+})
 class ReservacionIntegracionTest {
 
     @Autowired
@@ -42,6 +53,9 @@ class ReservacionIntegracionTest {
     @Autowired
     private TicketReservationRepository reservationRepository;
 
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
     private Event evento;
     private TicketType tipoTicket;
     private User usuario;
@@ -68,7 +82,7 @@ class ReservacionIntegracionTest {
         evento.setActive(true);
         evento.setMaxTicketsPerPurchase(10);
         evento.setCreatedBy(usuario);
-        eventRepository.save(evento);
+        evento = eventRepository.save(evento);
 
         // Crear tipo de ticket
         tipoTicket = new TicketType();
@@ -81,6 +95,9 @@ class ReservacionIntegracionTest {
         tipoTicket.setMaxPerPerson(5);
         tipoTicket.setEvent(evento);
         ticketTypeRepository.save(tipoTicket);
+
+        // El libro de inventario conserva sus contadores entre pruebas
+        inventoryLedger.evict(tipoTicket.getId());
     }
 
     @Test
@@ -98,8 +115,46 @@ class ReservacionIntegracionTest {
             .andExpect(jsonPath("$.active").value(true));
 
         // Verificar que se actualizó la cantidad disponible
-        TicketType ticketTypeActualizado = ticketTypeRepository.findById("TICKET-001").orElseThrow();
-        assertEquals(48, ticketTypeActualizado.getAvailableQuantity());
+        inventoryLedger.flush();
+        int disponibles = ticketTypeRepository.findAvailableQuantityById("TICKET-001").orElseThrow();
+        assertEquals(48, disponibles);
+    }
+
+    @Test
+    void reservarTickets_ReintentoConMismaClaveNoDuplica() throws Exception {
+        String clave = UUID.randomUUID().toString();
+        String primera = mockMvc.perform(post("/api/reservations")
+                .header("Idempotency-Key", clave)
+                .param("eventId", "EVENT-001")
+                .param("ticketTypeId", "TICKET-001")
+                .param("quantity", "2")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        String reservationId = JsonPath.read(primera, "$.reservationId");
+
+        mockMvc.perform(post("/api/reservations")
+                .header("Idempotency-Key", clave)
+                .param("eventId", "EVENT-001")
+                .param("ticketTypeId", "TICKET-001")
+                .param("quantity", "2")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.reservationId").value(reservationId));
+
+        // La misma clave con otros datos se rechaza
+        mockMvc.perform(post("/api/reservations")
+                .header("Idempotency-Key", clave)
+                .param("eventId", "EVENT-001")
+                .param("ticketTypeId", "TICKET-001")
+                .param("quantity", "3")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+
+        inventoryLedger.flush();
+        assertEquals(48, ticketTypeRepository.findAvailableQuantityById("TICKET-001").orElseThrow());
+        assertEquals(1, reservationRepository.findAll().stream()
+            .filter(reservation -> clave.equals(reservation.getIdempotencyKey())).count());
     }
 
     @Test
@@ -116,8 +171,9 @@ class ReservacionIntegracionTest {
             .andExpect(jsonPath("$.discountApplied").value(true));
 
         // Verificar que se actualizó la cantidad disponible
-        TicketType ticketTypeActualizado = ticketTypeRepository.findById("TICKET-001").orElseThrow();
-        assertEquals(44, ticketTypeActualizado.getAvailableQuantity());
+        inventoryLedger.flush();
+        int disponibles = ticketTypeRepository.findAvailableQuantityById("TICKET-001").orElseThrow();
+        assertEquals(44, disponibles);
     }
 
     @Test
@@ -130,8 +186,9 @@ class ReservacionIntegracionTest {
             .andExpect(status().isBadRequest());
 
         // Verificar que no se modificó la cantidad disponible
-        TicketType ticketTypeActualizado = ticketTypeRepository.findById("TICKET-001").orElseThrow();
-        assertEquals(50, ticketTypeActualizado.getAvailableQuantity());
+        inventoryLedger.flush();
+        int disponibles = ticketTypeRepository.findAvailableQuantityById("TICKET-001").orElseThrow();
+        assertEquals(50, disponibles);
     }
 
     @Test
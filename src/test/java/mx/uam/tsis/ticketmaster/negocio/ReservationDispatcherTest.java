@@ -0,0 +1,153 @@
+package mx.uam.tsis.ticketmaster.negocio;
+
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.TicketReservationResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ReservationDispatcherTest {
+
+    private final TicketReservationService reservationService = mock(TicketReservationService.class);
+    private ReservationDispatcher dispatcher;
+
+    private ReservationDispatcher createDispatcher(int capacity) {
+        dispatcher = new ReservationDispatcher(capacity, 4, false);
+        ReflectionTestUtils.setField(dispatcher, "reservationService", reservationService);
+        return dispatcher;
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.destroy();
+    }
+
+    @Test
+    void reservar_DeberiaProcesarUnComandoALaVezPorEvento() throws Exception {
+        createDispatcher(1000);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(reservationService.createReservation(anyString(), anyString(), anyInt(), any()))
+            .thenAnswer(invocation -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                Thread.sleep(1);
+                inFlight.decrementAndGet();
+                return respuesta();
+            });
+
+        List<CompletableFuture<TicketReservationResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(dispatcher.reserve("EVENT-001", "TICKET-001", 1, null));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertThat(maxInFlight.get()).isEqualTo(1);
+        verify(reservationService, times(50)).createReservation("EVENT-001", "TICKET-001", 1, null);
+    }
+
+    @Test
+    void reservar_DeberiaProcesarEventosDistintosEnParalelo() throws Exception {
+        createDispatcher(1000);
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        when(reservationService.createReservation(anyString(), anyString(), anyInt(), any()))
+            .thenAnswer(invocation -> {
+                bothRunning.countDown();
+                // Solo termina si el otro evento corre al mismo tiempo
+                assertThat(bothRunning.await(5, TimeUnit.SECONDS)).isTrue();
+                return respuesta();
+            });
+
+        CompletableFuture<TicketReservationResponse> first = dispatcher.reserve("EVENT-001", "TICKET-001", 1, null);
+        CompletableFuture<TicketReservationResponse> second = dispatcher.reserve("EVENT-002", "TICKET-002", 1, null);
+
+        assertThat(first.get(10, TimeUnit.SECONDS)).isNotNull();
+        assertThat(second.get(10, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void reservar_DeberiaRechazarCuandoElBuzonEstaLleno() throws Exception {
+        createDispatcher(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(reservationService.createReservation(anyString(), anyString(), anyInt(), any()))
+            .thenAnswer(invocation -> {
+                release.await(5, TimeUnit.SECONDS);
+                return respuesta();
+            });
+
+        CompletableFuture<TicketReservationResponse> running = dispatcher.reserve("EVENT-001", "TICKET-001", 1, null);
+        // Espera a que el primero salga del buzón para ocupar el único lugar
+        verify(reservationService, timeout(5000)).createReservation(anyString(), anyString(), anyInt(), any());
+        CompletableFuture<TicketReservationResponse> queued = dispatcher.reserve("EVENT-001", "TICKET-001", 1, null);
+        CompletableFuture<TicketReservationResponse> rejected = dispatcher.reserve("EVENT-001", "TICKET-001", 1, null);
+
+        assertThatThrownBy(() -> rejected.get(1, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(RejectedExecutionException.class);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void reservar_NoDeberiaProcesarComandosCancelados() throws Exception {
+        createDispatcher(1000);
+        CountDownLatch release = new CountDownLatch(1);
+        when(reservationService.createReservation(anyString(), anyString(), anyInt(), any()))
+            .thenAnswer(invocation -> {
+                release.await(5, TimeUnit.SECONDS);
+                return respuesta();
+            });
+
+        CompletableFuture<TicketReservationResponse> running = dispatcher.reserve("EVENT-001", "TICKET-001", 1, null);
+        verify(reservationService, timeout(5000)).createReservation(anyString(), anyString(), anyInt(), any());
+        CompletableFuture<TicketReservationResponse> abandoned = dispatcher.reserve("EVENT-001", "TICKET-001", 2, null);
+        abandoned.cancel(false);
+
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        dispatcher.reserve("EVENT-001", "TICKET-001", 3, null).get(5, TimeUnit.SECONDS);
+
+        verify(reservationService, never()).createReservation("EVENT-001", "TICKET-001", 2, null);
+    }
+
+    @Test
+    void buzon_DeberiaQuitarseAlVaciarse() throws Exception {
+        // Los comandos corren en el hilo que los envía, así que el buzón ya terminó al regresar
+        dispatcher = new ReservationDispatcher(1000, 1, true);
+        ReflectionTestUtils.setField(dispatcher, "reservationService", reservationService);
+        when(reservationService.createReservation(anyString(), anyString(), anyInt(), any()))
+            .thenThrow(new IllegalArgumentException("Evento no encontrado"));
+        when(reservationService.findEventId("RES-X")).thenReturn(Optional.empty());
+
+        CompletableFuture<TicketReservationResponse> unknownEvent = dispatcher.reserve("NO-EXISTE", "T", 1, null);
+        CompletableFuture<Void> unknownReservation = dispatcher.cancel("RES-X");
+
+        assertThatThrownBy(() -> unknownEvent.get(1, TimeUnit.SECONDS))
+            .hasCauseInstanceOf(IllegalArgumentException.class);
+        unknownReservation.get(1, TimeUnit.SECONDS);
+        assertThat(dispatcher.activeMailboxes()).isZero();
+    }
+
+    private TicketReservationResponse respuesta() {
+        return new TicketReservationResponse("RES-001", "TICKET-001", "VIP", "Zona A", 1, 1000.0, 1000.0,
+            false, LocalDateTime.now().plusMinutes(5), true);
+    }
+}
@@ -0,0 +1,94 @@
+package mx.uam.tsis.ticketmaster.negocio;
+
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.TicketReservationResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class ReservationIdempotencyTest {
+
+    private TicketReservationService reservationService;
+    private ReservationIdempotency idempotency;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        reservationService = mock(TicketReservationService.class);
+        idempotency = new ReservationIdempotency(100, 60);
+        ReflectionTestUtils.setField(idempotency, "reservationService", reservationService);
+    }
+
+    @Test
+    void ejecutar_DeberiaRepetirElPrimerResultadoSinVolverAReservar() throws Exception {
+        TicketReservationResponse first = idempotency.execute("KEY-1", "datos", () -> reserve("RES-001")).get();
+        TicketReservationResponse retry = idempotency.execute("KEY-1", "datos", () -> reserve("RES-002")).get();
+
+        assertThat(first.getReservationId()).isEqualTo("RES-001");
+        assertThat(retry.getReservationId()).isEqualTo("RES-001");
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void ejecutar_ReintentosEnCursoDeberianEsperarLaPrimeraSolicitud() throws Exception {
+        CompletableFuture<TicketReservationResponse> pending = new CompletableFuture<>();
+        CompletableFuture<TicketReservationResponse> first = idempotency.execute("KEY-1", "datos", () -> pending);
+        CompletableFuture<TicketReservationResponse> retry = idempotency.execute("KEY-1", "datos", () -> reserve("RES-002"));
+
+        // Cancelar una espera no cancela la reservación en curso
+        first.cancel(false);
+        pending.complete(response("RES-001"));
+
+        assertThat(retry.get().getReservationId()).isEqualTo("RES-001");
+        assertThat(calls).hasValue(0);
+    }
+
+    @Test
+    void ejecutar_MismaClaveConOtrosDatosDeberiaRechazarse() throws Exception {
+        idempotency.execute("KEY-1", "datos", () -> reserve("RES-001")).get();
+
+        assertThrows(IllegalArgumentException.class,
+            () -> idempotency.execute("KEY-1", "otros datos", () -> reserve("RES-002")));
+    }
+
+    @Test
+    void ejecutar_ClaveUsadaEnOtroNodoDeberiaRecuperarseDeLaBaseDeDatos() throws Exception {
+        when(reservationService.findByIdempotencyKey("KEY-1")).thenReturn(Optional.of(response("RES-NODO-2")));
+
+        TicketReservationResponse result = idempotency.execute("KEY-1", "datos",
+            () -> CompletableFuture.failedFuture(new DataIntegrityViolationException("clave duplicada"))).get();
+
+        assertThat(result.getReservationId()).isEqualTo("RES-NODO-2");
+    }
+
+    @Test
+    void ejecutar_ErroresNoDeberianGuardarse() throws Exception {
+        CompletableFuture<TicketReservationResponse> failed = idempotency.execute("KEY-1", "datos",
+            () -> CompletableFuture.failedFuture(new IllegalStateException("No hay suficientes entradas disponibles")));
+
+        ExecutionException error = assertThrows(ExecutionException.class, failed::get);
+        assertThat(error.getCause()).isInstanceOf(IllegalStateException.class);
+        assertThat(idempotency.execute("KEY-1", "datos", () -> reserve("RES-001")).get().getReservationId())
+            .isEqualTo("RES-001");
+    }
+
+    private CompletableFuture<TicketReservationResponse> reserve(String reservationId) {
+        calls.incrementAndGet();
+        return CompletableFuture.completedFuture(response(reservationId));
+    }
+
+    private static TicketReservationResponse response(String reservationId) {
+        return new TicketReservationResponse(reservationId, "TICKET-001", "VIP", "Zona A", 2, 1000.0, 2000.0,
+            false, LocalDateTime.now().plusMinutes(5), true);
+    }
+}
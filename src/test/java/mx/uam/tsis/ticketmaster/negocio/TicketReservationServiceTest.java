@@ -1,9 +1,17 @@
 package mx.uam.tsis.ticketmaster.negocio;
 
 import mx.uam.tsis.ticketmaster.datos.TicketReservationRepository;
+import mx.uam.tsis.ticketmaster.datos.TicketReservationRepository.ExpiredQuantity;
 import mx.uam.tsis.ticketmaster.datos.TicketTypeRepository;
 import mx.uam.tsis.ticketmaster.datos.EventRepository;
 import mx.uam.tsis.ticketmaster.datos.SeatRepository;
+import mx.uam.tsis.ticketmaster.negocio.cache.RequestCoalescer;
+import mx.uam.tsis.ticketmaster.negocio.expiracion.ReservationClosed;
+import mx.uam.tsis.ticketmaster.negocio.expiracion.ReservationHeld;
+import mx.uam.tsis.ticketmaster.negocio.inventario.InventoryLedger;
+import mx.uam.tsis.ticketmaster.negocio.inventario.SeatIndex;
+import mx.uam.tsis.ticketmaster.negocio.inventario.SeatIndex.HoldResult;
+import mx.uam.tsis.ticketmaster.negocio.inventario.SeatIndex.SeatInfo;
 import mx.uam.tsis.ticketmaster.negocio.modelo.*;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.TicketReservationResponse;
 import mx.uam.tsis.ticketmaster.dto.ApiResponses.SeatAvailabilityResponse;
@@ -12,12 +20,17 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDateTime;
 import java.util.*;
 import java.math.BigDecimal;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -37,6 +50,18 @@ class TicketReservationServiceTest {
     @Mock
     private SeatRepository seatRepository;
 
+    @Mock
+    private InventoryLedger inventoryLedger;
+
+    @Mock
+    private SeatIndex seatIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private RequestCoalescer requestCoalescer = new RequestCoalescer(new SimpleMeterRegistry(), 5000);
+
     @InjectMocks
     private TicketReservationService reservationService;
 
@@ -49,6 +74,8 @@ class TicketReservationServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(inventoryLedger.tryReserve(any(TicketType.class), anyInt())).thenReturn(true);
+        when(seatIndex.hold(any(TicketType.class), any())).thenReturn(HoldResult.HELD);
 
         mockEvent = new Event();
         mockEvent.setId("EVENT-001");
@@ -95,7 +122,6 @@ class TicketReservationServiceTest {
     void crearReservacion_Exitoso() {
         when(eventRepository.findById("EVENT-001")).thenReturn(Optional.of(mockEvent));
         when(ticketTypeRepository.findByIdAndEventId("TICKET-001", "EVENT-001")).thenReturn(Optional.of(mockTicketType));
-        when(seatRepository.findAllById(mockSeatIds)).thenReturn(new ArrayList<>(mockSeats));
         when(reservationRepository.save(any(TicketReservation.class))).thenReturn(mockReservation);
 
         TicketReservationResponse response = reservationService.createReservation(
@@ -106,7 +132,63 @@ class TicketReservationServiceTest {
         assertEquals(2, response.getQuantity());
         assertEquals(2000.0, response.getTotalPrice());
         assertTrue(response.isActive());
+        verify(seatIndex).hold(mockTicketType, mockSeatIds);
         verify(reservationRepository).save(any(TicketReservation.class));
+        verify(seatRepository, never()).save(any());
+    }
+
+    @Test
+    void crearReservacionMejoresAsientos_DeberiaAsignarAsientos() {
+        when(eventRepository.findById("EVENT-001")).thenReturn(Optional.of(mockEvent));
+        when(ticketTypeRepository.findByIdAndEventId("TICKET-001", "EVENT-001")).thenReturn(Optional.of(mockTicketType));
+        when(seatIndex.holdBestAvailable(mockTicketType, 2, "VIP")).thenReturn(List.of(
+            new SeatInfo("SEAT-001", "A", "1", "VIP"),
+            new SeatInfo("SEAT-002", "A", "2", "VIP")));
+        when(reservationRepository.save(any(TicketReservation.class))).thenReturn(mockReservation);
+
+        TicketReservationResponse response = reservationService.createBestAvailableReservation(
+            "EVENT-001", "TICKET-001", 2, "VIP");
+
+        assertThat(response.getSeats()).extracting(SeatAvailabilityResponse::getId)
+            .containsExactly("SEAT-001", "SEAT-002");
+        verify(inventoryLedger).tryReserve(mockTicketType, 2);
+    }
+
+    @Test
+    void crearReservacionMejoresAsientos_SinAsientosSuficientes() {
+        when(eventRepository.findById("EVENT-001")).thenReturn(Optional.of(mockEvent));
+        when(ticketTypeRepository.findByIdAndEventId("TICKET-001", "EVENT-001")).thenReturn(Optional.of(mockTicketType));
+        when(seatIndex.holdBestAvailable(mockTicketType, 2, null)).thenReturn(List.of());
+
+        assertThrows(IllegalStateException.class, () ->
+            reservationService.createBestAvailableReservation("EVENT-001", "TICKET-001", 2, null)
+        );
+        verify(inventoryLedger, never()).tryReserve(any(), anyInt());
+        verify(reservationRepository, never()).save(any());
+    }
+
+    @Test
+    void crearReservacion_AsientosNoDisponibles() {
+        when(eventRepository.findById("EVENT-001")).thenReturn(Optional.of(mockEvent));
+        when(ticketTypeRepository.findByIdAndEventId("TICKET-001", "EVENT-001")).thenReturn(Optional.of(mockTicketType));
+        when(seatIndex.hold(mockTicketType, mockSeatIds)).thenReturn(HoldResult.UNAVAILABLE);
+
+        assertThrows(IllegalStateException.class, () ->
+            reservationService.createReservation("EVENT-001", "TICKET-001", 2, mockSeatIds)
+        );
+        verify(inventoryLedger, never()).tryReserve(any(), anyInt());
+    }
+
+    @Test
+    void crearReservacion_AsientosInexistentes() {
+        when(eventRepository.findById("EVENT-001")).thenReturn(Optional.of(mockEvent));
+        when(ticketTypeRepository.findByIdAndEventId("TICKET-001", "EVENT-001")).thenReturn(Optional.of(mockTicketType));
+        when(seatIndex.hold(mockTicketType, mockSeatIds)).thenReturn(HoldResult.UNKNOWN_SEAT);
+        when(seatRepository.findAllById(mockSeatIds)).thenReturn(new ArrayList<>(List.of(mockSeats.iterator().next())));
+
+        assertThrows(IllegalArgumentException.class, () ->
+            reservationService.createReservation("EVENT-001", "TICKET-001", 2, mockSeatIds)
+        );
     }
 
     @Test
@@ -157,13 +239,16 @@ class TicketReservationServiceTest {
     void obtenerAsientosDisponibles_Exitoso() {
         when(eventRepository.findById("EVENT-001")).thenReturn(Optional.of(mockEvent));
         when(ticketTypeRepository.findByIdAndEventId("TICKET-001", "EVENT-001")).thenReturn(Optional.of(mockTicketType));
-        when(seatRepository.findByTicketTypeAndAvailable(mockTicketType, true)).thenReturn(new ArrayList<>(mockSeats));
+        when(seatIndex.getAvailableSeats(mockTicketType)).thenReturn(List.of(
+            new SeatInfo("SEAT-001", "A", "1", "VIP"),
+            new SeatInfo("SEAT-002", "A", "2", "VIP")));
 
         List<SeatAvailabilityResponse> seats = reservationService.getAvailableSeats("EVENT-001", "TICKET-001");
 
         assertNotNull(seats);
         assertEquals(2, seats.size());
-        verify(seatRepository).findByTicketTypeAndAvailable(mockTicketType, true);
+        assertEquals(1000.0, seats.get(0).getPrice());
+        verify(seatRepository, never()).findByTicketTypeAndAvailable(any(), anyBoolean());
     }
 
     @Test
@@ -171,7 +256,9 @@ class TicketReservationServiceTest {
         when(reservationRepository.findById("RES-001")).thenReturn(Optional.of(mockReservation));
         reservationService.cancelReservation("RES-001");
 
+        verify(inventoryLedger).release(mockTicketType, 2);
         verify(reservationRepository).delete(mockReservation);
+        verify(eventPublisher).publishEvent(new ReservationClosed("RES-001"));
     }
 
     @Test
@@ -183,50 +270,32 @@ class TicketReservationServiceTest {
     }
 
     @Test
-    void limpiarReservacionesExpiradas_DeberiaCancelarExpiradas() {
-        LocalDateTime now = LocalDateTime.now();
-        
-        // Crear Event y TicketType
-        Event event = new Event();
-        event.setId("EVENT-001");
-        event.setName("Test Event");
-        event.setActive(true);
-        
-        TicketType ticketType = new TicketType();
-        ticketType.setId("TICKET-001");
-        ticketType.setName("VIP");
-        ticketType.setEvent(event);
-        ticketType.setAvailableQuantity(10);
-        
-        // Crear reservación expirada
-        TicketReservation mockReservation = new TicketReservation();
-        mockReservation.setId("RES-001");
-        mockReservation.setTicketType(ticketType);
-        mockReservation.setActive(true);
-        mockReservation.setExpiresAt(now.minusMinutes(10));
-        mockReservation.setQuantity(2);
-        mockReservation.setTotalPrice(2000.0);
-
-        when(reservationRepository.findByActiveAndExpiresAtBefore(eq(true), any(LocalDateTime.class)))
-            .thenReturn(Collections.singletonList(mockReservation));
-        when(reservationRepository.findById(mockReservation.getId()))
-            .thenReturn(Optional.of(mockReservation));
-
-        reservationService.cleanupExpiredReservations();
-
-        verify(reservationRepository).findByActiveAndExpiresAtBefore(eq(true), any(LocalDateTime.class));
-        verify(reservationRepository).delete(mockReservation);
+    void expirarReservaciones_DeberiaLiberarUnaVezPorTipoDeTicket() {
+        List<String> ids = List.of("RES-001", "RES-002", "RES-003");
+        ExpiredQuantity vip = mock(ExpiredQuantity.class);
+        when(vip.getTicketTypeId()).thenReturn("TICKET-001");
+        when(vip.getQuantity()).thenReturn(5L);
+        when(reservationRepository.sumExpiredQuantities(eq(ids), any(LocalDateTime.class)))
+            .thenReturn(List.of(vip));
+        when(reservationRepository.deactivateExpired(eq(ids), any(LocalDateTime.class))).thenReturn(3);
+        when(ticketTypeRepository.findAllById(List.of("TICKET-001"))).thenReturn(List.of(mockTicketType));
+
+        int expired = reservationService.expireReservations(ids);
+
+        assertEquals(3, expired);
+        verify(inventoryLedger).release(mockTicketType, 5);
+        verify(reservationRepository, never()).save(any());
     }
 
     @Test
-    void limpiarReservacionesExpiradas_NoDeberiaCancelarActivas() {
-        when(reservationRepository.findByActiveAndExpiresAtBefore(eq(true), any(LocalDateTime.class)))
-            .thenReturn(Collections.emptyList());
-
-        reservationService.cleanupExpiredReservations();
-
-        verify(reservationRepository).findByActiveAndExpiresAtBefore(eq(true), any(LocalDateTime.class));
-        verify(reservationRepository, never()).delete(any());
+    void expirarReservaciones_SinVencidasNoDeberiaActualizar() {
+        List<String> ids = List.of("RES-001");
+        when(reservationRepository.sumExpiredQuantities(eq(ids), any(LocalDateTime.class)))
+            .thenReturn(List.of());
+
+        assertEquals(0, reservationService.expireReservations(ids));
+        verify(reservationRepository, never()).deactivateExpired(any(), any());
+        verify(inventoryLedger, never()).release(any(), anyInt());
     }
 
     @Test
@@ -257,8 +326,6 @@ class TicketReservationServiceTest {
                 savedReservation.setId("RES-001");
                 return savedReservation;
             });
-        when(ticketTypeRepository.save(any(TicketType.class)))
-            .thenAnswer(invocation -> invocation.getArgument(0));
             
         TicketReservationResponse result = reservationService.createReservation(eventId, ticketTypeId, quantity, null);
         
@@ -269,6 +336,32 @@ class TicketReservationServiceTest {
         assertThat(result.isActive()).isTrue();
         assertEquals(mockTicketType.getPrice() * quantity, result.getTotalPrice());
         assertTrue(result.getExpiresAt().isAfter(LocalDateTime.now()));
-        verify(ticketTypeRepository).save(any(TicketType.class));
+        verify(inventoryLedger).tryReserve(mockTicketType, quantity);
+        verify(eventPublisher).publishEvent(new ReservationHeld("RES-001", eventId, result.getExpiresAt()));
+    }
+
+    @Test
+    void crearReservacion_ConClaveYaUsadaNoDeberiaReservarDeNuevo() {
+        mockReservation.setIdempotencyKey("KEY-1");
+        when(reservationRepository.findByIdempotencyKey("KEY-1")).thenReturn(Optional.of(mockReservation));
+
+        TicketReservationResponse response = reservationService.createReservation(
+            "EVENT-001", "TICKET-001", 2, null, "KEY-1");
+
+        assertEquals("RES-001", response.getReservationId());
+        verify(inventoryLedger, never()).tryReserve(any(), anyInt());
+        verify(reservationRepository, never()).save(any());
+    }
+
+    @Test
+    void crearReservacion_SinDisponibilidadEnInventario() {
+        when(eventRepository.findById("EVENT-001")).thenReturn(Optional.of(mockEvent));
+        when(ticketTypeRepository.findByIdAndEventId("TICKET-001", "EVENT-001")).thenReturn(Optional.of(mockTicketType));
+        when(inventoryLedger.tryReserve(mockTicketType, 2)).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () ->
+            reservationService.createReservation("EVENT-001", "TICKET-001", 2, null)
+        );
+        verify(reservationRepository, never()).save(any());
     }
 } 
\ No newline at end of file
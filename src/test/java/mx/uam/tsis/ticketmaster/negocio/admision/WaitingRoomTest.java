@@ -0,0 +1,167 @@
+package mx.uam.tsis.ticketmaster.negocio.admision;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WaitingRoomTest {
+
+    private final AtomicLong now = new AtomicLong(0);
+    private SimpleMeterRegistry registry;
+    private WaitingRoom waitingRoom;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        // Solo existen los eventos E*; dos intentos en curso, dos admisiones por segundo, pases de 10 segundos
+        waitingRoom = new WaitingRoom(registry, eventId -> eventId.startsWith("E"), 2, 2, 1000, 10, now::get);
+    }
+
+    @Test
+    void entrar_DeberiaFormarAlLlenarseElCupo() {
+        WaitingRoom.Admission first = waitingRoom.enter("E1", null);
+        WaitingRoom.Admission second = waitingRoom.enter("E1", null);
+        WaitingRoom.Admission third = waitingRoom.enter("E1", null);
+        WaitingRoom.Admission fourth = waitingRoom.enter("E1", null);
+
+        assertThat(first.isAdmitted()).isTrue();
+        assertThat(second.isAdmitted()).isTrue();
+        assertThat(third.isAdmitted()).isFalse();
+        assertThat(third.getQueueStatus().position()).isEqualTo(1);
+        assertThat(fourth.getQueueStatus().position()).isEqualTo(2);
+        assertThat(fourth.getQueueStatus().status()).isEqualTo(WaitingRoom.Status.WAITING);
+
+        // Otro evento tiene su propio cupo
+        assertThat(waitingRoom.enter("E2", null).isAdmitted()).isTrue();
+    }
+
+    @Test
+    void entrar_NoDeberiaAdelantarseALaFila() {
+        WaitingRoom.Admission first = waitingRoom.enter("E1", null);
+        waitingRoom.enter("E1", null);
+        waitingRoom.enter("E1", null);
+
+        first.release();
+        first.release();
+
+        // Hay cupo, pero alguien ya espera turno
+        assertThat(waitingRoom.enter("E1", null).isAdmitted()).isFalse();
+        assertThat(registry.get("ticketmaster.waiting_room.in_flight").tag("event", "E1").gauge().value())
+            .isEqualTo(1.0);
+    }
+
+    @Test
+    void admitir_DeberiaAdmitirEnOrdenYALaTasaConfigurada() {
+        WaitingRoom.Admission first = waitingRoom.enter("E1", null);
+        WaitingRoom.Admission second = waitingRoom.enter("E1", null);
+        String t1 = waitingRoom.enter("E1", null).getQueueStatus().token();
+        String t2 = waitingRoom.enter("E1", null).getQueueStatus().token();
+        String t3 = waitingRoom.enter("E1", null).getQueueStatus().token();
+        first.release();
+        second.release();
+
+        waitingRoom.admit();
+
+        assertThat(waitingRoom.getStatus(t1).status()).isEqualTo(WaitingRoom.Status.ADMITTED);
+        assertThat(waitingRoom.getStatus(t2).status()).isEqualTo(WaitingRoom.Status.ADMITTED);
+        assertThat(waitingRoom.getStatus(t3).status()).isEqualTo(WaitingRoom.Status.WAITING);
+        assertThat(waitingRoom.getStatus(t3).position()).isEqualTo(1);
+        assertThat(registry.get("ticketmaster.waiting_room.depth").tag("event", "E1").gauge().value())
+            .isEqualTo(1.0);
+        assertThat(registry.get("ticketmaster.waiting_room.admitted").tag("event", "E1").counter().count())
+            .isEqualTo(2.0);
+        assertThat(registry.get("ticketmaster.waiting_room.admit_rate").tag("event", "E1").gauge().value())
+            .isEqualTo(2.0);
+    }
+
+    @Test
+    void entrar_ConPaseDeberiaUsarloUnaSolaVez() {
+        WaitingRoom.Admission first = waitingRoom.enter("E1", null);
+        waitingRoom.enter("E1", null);
+        String token = waitingRoom.enter("E1", null).getQueueStatus().token();
+        first.release();
+        waitingRoom.admit();
+
+        assertThat(waitingRoom.enter("E2", token).isAdmitted()).isTrue();
+        assertThat(waitingRoom.enter("E1", token).isAdmitted()).isTrue();
+        assertThatThrownBy(() -> waitingRoom.getStatus(token))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(waitingRoom.enter("E1", token).isAdmitted()).isFalse();
+    }
+
+    @Test
+    void admitir_DeberiaVencerPasesSinUsar() {
+        WaitingRoom.Admission first = waitingRoom.enter("E1", null);
+        waitingRoom.enter("E1", null);
+        String token = waitingRoom.enter("E1", null).getQueueStatus().token();
+        first.release();
+        waitingRoom.admit();
+
+        now.set(10_000);
+        waitingRoom.admit();
+
+        assertThatThrownBy(() -> waitingRoom.getStatus(token))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Turno no encontrado o vencido");
+        // El pase vencido devuelve su lugar en el cupo
+        assertThat(inFlight("E1")).isEqualTo(1.0);
+    }
+
+    @Test
+    void admitir_NoDeberiaExcederElCupo() {
+        WaitingRoom.Admission first = waitingRoom.enter("E1", null);
+        waitingRoom.enter("E1", null);
+        String token = waitingRoom.enter("E1", null).getQueueStatus().token();
+
+        // Sin lugar en el cupo el turno sigue esperando
+        waitingRoom.admit();
+        assertThat(waitingRoom.getStatus(token).status()).isEqualTo(WaitingRoom.Status.WAITING);
+
+        first.release();
+        waitingRoom.admit();
+        assertThat(waitingRoom.getStatus(token).status()).isEqualTo(WaitingRoom.Status.ADMITTED);
+        assertThat(inFlight("E1")).isEqualTo(2.0);
+
+        // El pase usa el lugar que apartó al admitirse
+        WaitingRoom.Admission redeemed = waitingRoom.enter("E1", token);
+        assertThat(redeemed.isAdmitted()).isTrue();
+        assertThat(inFlight("E1")).isEqualTo(2.0);
+        assertThat(waitingRoom.enter("E1", null).isAdmitted()).isFalse();
+    }
+
+    @Test
+    void entrar_EventoInexistenteNoDeberiaAbrirSala() {
+        assertThatThrownBy(() -> waitingRoom.enter("NO-EXISTE", null))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Evento no encontrado");
+        assertThat(registry.find("ticketmaster.waiting_room.depth").tag("event", "NO-EXISTE").gauge()).isNull();
+    }
+
+    @Test
+    void admitir_DeberiaCerrarSalasInactivas() {
+        waitingRoom.enter("E1", null).release();
+        WaitingRoom.Admission busy = waitingRoom.enter("E2", null);
+
+        now.set(10_000);
+        waitingRoom.admit();
+
+        assertThat(registry.find("ticketmaster.waiting_room.in_flight").tag("event", "E1").gauge()).isNull();
+        assertThat(registry.find("ticketmaster.waiting_room.admitted").tag("event", "E1").counter()).isNull();
+        // Una sala con intentos en curso sigue abierta
+        assertThat(inFlight("E2")).isEqualTo(1.0);
+        busy.release();
+
+        // Al volver a entrar se abre otra sala
+        assertThat(waitingRoom.enter("E1", null).isAdmitted()).isTrue();
+        assertThat(inFlight("E1")).isEqualTo(1.0);
+    }
+
+    private double inFlight(String eventId) {
+        return registry.get("ticketmaster.waiting_room.in_flight").tag("event", eventId).gauge().value();
+    }
+}
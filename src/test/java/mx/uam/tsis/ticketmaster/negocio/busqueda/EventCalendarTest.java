@@ -0,0 +1,90 @@
+package mx.uam.tsis.ticketmaster.negocio.busqueda;
+
+import mx.uam.tsis.ticketmaster.datos.EventRepository;
+import mx.uam.tsis.ticketmaster.negocio.busqueda.EventCalendar.Entry;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import mx.uam.tsis.ticketmaster.negocio.paginacion.KeysetCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static mx.uam.tsis.ticketmaster.negocio.busqueda.EventSearchIndexTest.event;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventCalendarTest {
+
+    private static final LocalDate DAY = LocalDate.of(2030, 5, 1);
+
+    private EventCalendar calendar;
+
+    @BeforeEach
+    void setUp() {
+        calendar = new EventCalendar();
+        // Se agregan en desorden; el índice los acomoda por fecha e id
+        add("C", DAY.plusDays(2).atTime(20, 0));
+        add("A", DAY.atTime(18, 0));
+        add("B", DAY.atTime(18, 0));
+        add("D", DAY.plusDays(5).atTime(10, 0));
+        add("SIN_FECHA", null);
+    }
+
+    @Test
+    void rango_DeberiaDevolverSoloLosEventosDentro() {
+        assertThat(calendar.range(DAY.atStartOfDay(), DAY.plusDays(3).atStartOfDay()))
+            .extracting(Entry::id).containsExactly("A", "B", "C");
+        assertThat(calendar.range(DAY.plusDays(3).atStartOfDay(), DAY.plusDays(4).atStartOfDay())).isEmpty();
+    }
+
+    @Test
+    void paginaDeIds_DeberiaSeguirElOrdenDelListado() {
+        LocalDateTime from = DAY.atTime(18, 0);
+        LocalDateTime to = DAY.plusDays(2).atTime(20, 0);
+        assertThat(calendar.idsPage(from, to, null, 2)).containsExactly("A", "B");
+        // Fechas inclusivas, igual que el filtro de la búsqueda
+        assertThat(calendar.idsPage(from, to, new KeysetCursor(from, "A"), 10)).containsExactly("B", "C");
+        assertThat(calendar.idsPage(null, null, new KeysetCursor(to, "C"), 10)).containsExactly("D");
+    }
+
+    @Test
+    void conteoPorDia_DeberiaIncluirLosDiasSinEventos() {
+        assertThat(calendar.countByDay(DAY, DAY.plusDays(5))).containsExactly(2, 0, 1, 0, 0, 1);
+    }
+
+    @Test
+    void agregar_NoDeberiaRepetirUnEventoYaIndexado() {
+        add("A", DAY.atTime(18, 0));
+        assertThat(calendar.countByDay(DAY, DAY)).containsExactly(2);
+    }
+
+    @Test
+    void recargar_NoDeberiaPerderEventosCreadosDuranteLaConsulta() {
+        EventRepository eventRepository = mock(EventRepository.class);
+        ReflectionTestUtils.setField(calendar, "eventRepository", eventRepository);
+        // La consulta leyó la base de datos antes de que se guardara el evento nuevo
+        when(eventRepository.findCalendarSources()).thenAnswer(invocation -> {
+            add("NUEVO", DAY.plusDays(1).atTime(12, 0));
+            return List.of();
+        });
+
+        calendar.rebuild();
+
+        assertThat(calendar.idsPage(null, null, null, 10)).containsExactly("NUEVO");
+
+        // Terminada la recarga, la siguiente ya no repite el evento
+        when(eventRepository.findCalendarSources()).thenReturn(List.of());
+        calendar.rebuild();
+        assertThat(calendar.idsPage(null, null, null, 10)).isEmpty();
+    }
+
+    private void add(String id, LocalDateTime startDate) {
+        Event event = event(id, "Evento " + id, "Música", "Foro Sol", "");
+        event.setStartDate(startDate);
+        calendar.add(event);
+    }
+}
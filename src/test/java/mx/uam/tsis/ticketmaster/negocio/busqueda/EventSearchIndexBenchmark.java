@@ -0,0 +1,51 @@
+package mx.uam.tsis.ticketmaster.negocio.busqueda;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mide búsquedas por texto sobre un catálogo de 500 mil eventos.
+ * No forma parte de la suite normal; se ejecuta con:
+ * <pre>mvn test -Pbenchmark</pre>
+ */
+class EventSearchIndexBenchmark {
+
+    private static final int EVENTS = 500_000;
+    private static final int ITERATIONS = 20_000;
+    private static final String[] GENRES = {"Rock", "Jazz", "Ópera", "Teatro", "Fútbol", "Boxeo", "Cumbia", "Ballet"};
+    private static final String[] CITIES = {"Monterrey", "Guadalajara", "Puebla", "Mérida", "Tijuana", "Querétaro"};
+    private static final String[] VENUES = {"Arena", "Foro", "Estadio", "Teatro", "Auditorio", "Palacio"};
+    private static final List<String> QUERIES = List.of("rock monterrey", "opera", "estadio fut", "ballet merida 12");
+
+    @Test
+    void buscarEnCatalogoGrande() {
+        Random random = new Random(42);
+        EventSearchIndex index = new EventSearchIndex();
+        for (int i = 0; i < EVENTS; i++) {
+            String genre = GENRES[random.nextInt(GENRES.length)];
+            String city = CITIES[random.nextInt(CITIES.length)];
+            index.index(EventSearchIndexTest.event("E" + i, genre + " en " + city + " " + (i % 1000),
+                genre, VENUES[random.nextInt(VENUES.length)] + " " + city, "Función número " + i));
+        }
+
+        int found = 0;
+        // Calentamiento para que el JIT compile las intersecciones
+        for (int i = 0; i < ITERATIONS; i++) {
+            found += index.search(QUERIES.get(i % QUERIES.size()) + " " + (i % 1000), 20).size();
+        }
+        long begin = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            found += index.search(QUERIES.get(i % QUERIES.size()) + " " + (i % 1000), 20).size();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        assertThat(found).isPositive();
+        System.out.printf("%,d eventos: %,d us por búsqueda%n",
+            EVENTS, TimeUnit.NANOSECONDS.toMicros(elapsed) / ITERATIONS);
+    }
+}
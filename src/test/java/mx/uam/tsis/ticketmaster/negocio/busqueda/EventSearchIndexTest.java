@@ -0,0 +1,109 @@
+package mx.uam.tsis.ticketmaster.negocio.busqueda;
+
+import mx.uam.tsis.ticketmaster.negocio.busqueda.EventSearchIndex.SearchHit;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventSearchIndexTest {
+
+    private EventSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new EventSearchIndex();
+        index.index(event("ROCK", "Noche de Rock Clásico", "Música", "Foro Sol", "Las mejores bandas"));
+        index.index(event("OPERA", "Gala de Ópera", "Música", "Palacio de Bellas Artes", "Con orquesta de rock sinfónico"));
+        index.index(event("FUT", "Final de Fútbol", "Deporte", "Estadio Azteca", "Partido decisivo"));
+    }
+
+    @Test
+    void tokenizar_DeberiaQuitarAcentosYSepararPalabras() {
+        assertThat(EventSearchIndex.tokenize("¡Ópera en el Palacio, 2030!"))
+            .containsExactly("opera", "en", "el", "palacio", "2030");
+    }
+
+    @Test
+    void buscar_DeberiaIgnorarAcentosYAceptarPrefijos() {
+        assertThat(ids(index.search("musica", 10))).containsExactlyInAnyOrder("ROCK", "OPERA");
+        assertThat(ids(index.search("FÚTB", 10))).containsExactly("FUT");
+        // Todas las palabras deben aparecer
+        assertThat(ids(index.search("gala rock", 10))).containsExactly("OPERA");
+        assertThat(index.search("jazz", 10)).isEmpty();
+    }
+
+    @Test
+    void buscar_DeberiaOrdenarPorRelevancia() {
+        // En el nombre pesa más que en la descripción
+        assertThat(ids(index.search("rock", 10))).containsExactly("ROCK", "OPERA");
+        // La palabra completa pesa más que el prefijo
+        index.index(event("CLASICA", "Clasicos", "Música", "Teatro", ""));
+        assertThat(ids(index.search("clasico", 10))).containsExactly("ROCK", "CLASICA");
+    }
+
+    @Test
+    void buscarPrefijo_DeberiaConservarLasPalabrasMasFrecuentes() {
+        // Más palabras con el prefijo de las que abarca la búsqueda, todas raras
+        // y antes en el orden alfabético que la frecuente
+        for (int i = 0; i < 200; i++) {
+            index.index(event("RARO" + i, String.format("Zafiro%03d", i), "Otros", "Sala", ""));
+        }
+        for (int i = 0; i < 3; i++) {
+            index.index(event("ZOOL" + i, "Zoologico nocturno", "Otros", "Sala", ""));
+        }
+
+        assertThat(ids(index.search("z", 1000))).contains("ZOOL0", "ZOOL1", "ZOOL2");
+        // La palabra completa siempre cuenta aunque sea rara
+        assertThat(ids(index.search("zafiro199", 10))).containsExactly("RARO199");
+    }
+
+    @Test
+    void indexar_DeberiaReemplazarEventos() {
+        index.index(event("ROCK", "Noche de Jazz", "Música", "Foro Sol", ""));
+
+        assertThat(ids(index.search("rock", 10))).containsExactly("OPERA");
+        assertThat(ids(index.search("jazz", 10))).containsExactly("ROCK");
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void buscar_DeberiaContinuarDespuesDelUltimoResultado() {
+        List<SearchHit> first = index.search("de", 2);
+        List<SearchHit> rest = index.search("de", first.get(1), 10);
+
+        assertThat(first).hasSize(2);
+        assertThat(rest).hasSize(1);
+        assertThat(ids(first)).doesNotContainAnyElementsOf(ids(rest));
+    }
+
+    @Test
+    void buscar_DeberiaContinuarDesdeElUltimoResultadoAunqueCambieLaRelevancia() {
+        List<SearchHit> first = index.search("rock", 1);
+        // Más eventos con la palabra bajan su rareza y con ella todas las relevancias
+        for (int i = 0; i < 5; i++) {
+            index.index(event("ROCK-" + i, "Tributo", "Música", "Foro", "Rock en vivo"));
+        }
+
+        List<SearchHit> rest = index.search("rock", first.get(0), 10);
+
+        assertThat(ids(rest)).doesNotContainAnyElementsOf(ids(first)).hasSize(6).contains("OPERA");
+    }
+
+    private static List<String> ids(List<SearchHit> hits) {
+        return hits.stream().map(SearchHit::eventId).toList();
+    }
+
+    static Event event(String id, String name, String category, String venue, String description) {
+        Event event = new Event();
+        event.setId(id);
+        event.setName(name);
+        event.setCategory(category);
+        event.setVenue(venue);
+        event.setDescription(description);
+        return event;
+    }
+}
@@ -0,0 +1,151 @@
+package mx.uam.tsis.ticketmaster.negocio.busqueda;
+
+import mx.uam.tsis.ticketmaster.datos.EventRepository;
+import mx.uam.tsis.ticketmaster.datos.EventRepository.AvailabilitySource;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.EventFacetsResponse;
+import mx.uam.tsis.ticketmaster.dto.ApiResponses.FacetCount;
+import mx.uam.tsis.ticketmaster.dto.EventSearchRequest;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static mx.uam.tsis.ticketmaster.negocio.busqueda.EventSearchIndexTest.event;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FacetCatalogTest {
+
+    private FacetCatalog catalog;
+    private EventSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        catalog = new FacetCatalog();
+        index = new EventSearchIndex();
+        ReflectionTestUtils.setField(catalog, "searchIndex", index);
+        add("ROCK", "Noche de Rock", "Música", "Foro Sol", LocalDateTime.of(2030, 5, 10, 20, 0), 800.0, 10);
+        add("JAZZ", "Jazz en el Parque", "Música", "Parque México", LocalDateTime.of(2030, 5, 20, 18, 0), 300.0, 0);
+        add("FUT", "Final de Fútbol", "Deporte", "Estadio Azteca", LocalDateTime.of(2030, 6, 1, 17, 0), 2500.0, 5);
+        add("OPERA", "Gala de Ópera", "Teatro", "Foro Sol", LocalDateTime.of(2030, 6, 15, 19, 0), 6000.0, 5);
+    }
+
+    @Test
+    void facetas_SinFiltrosCuentaTodoElCatalogo() {
+        EventFacetsResponse facets = catalog.facets(null);
+
+        assertThat(facets.getTotal()).isEqualTo(4);
+        assertThat(facets.getCategories()).extracting(FacetCount::getValue, FacetCount::getCount)
+            .containsExactly(tuple("Música", 2L), tuple("Deporte", 1L), tuple("Teatro", 1L));
+        assertThat(facets.getVenues().get(0)).isEqualTo(new FacetCount("Foro Sol", 2));
+        assertThat(facets.getPrices()).extracting(FacetCount::getValue)
+            .containsExactly("0-500", "500-1000", "2000-5000", "5000+");
+        assertThat(facets.getMonths()).extracting(FacetCount::getValue, FacetCount::getCount)
+            .containsExactly(tuple("2030-05", 2L), tuple("2030-06", 2L));
+    }
+
+    @Test
+    void facetas_CadaFacetaIgnoraSuPropioFiltro() {
+        EventSearchRequest request = new EventSearchRequest(null, "Música", null, null, null);
+        request.setVenue("foro");
+
+        EventFacetsResponse facets = catalog.facets(request);
+
+        assertThat(facets.getTotal()).isEqualTo(1);
+        // Categorías de los eventos en "foro", lugares de los eventos de música
+        assertThat(facets.getCategories()).extracting(FacetCount::getValue).containsExactly("Música", "Teatro");
+        assertThat(facets.getVenues()).extracting(FacetCount::getValue).containsExactly("Foro Sol", "Parque México");
+        assertThat(facets.getPrices()).extracting(FacetCount::getValue).containsExactly("500-1000");
+    }
+
+    @Test
+    void facetas_FiltrosSinFacetaAplicanATodas() {
+        EventSearchRequest request = new EventSearchRequest(null, null, null, 3000.0, true);
+        request.setFromDate(LocalDateTime.of(2030, 5, 15, 0, 0));
+
+        EventFacetsResponse facets = catalog.facets(request);
+
+        assertThat(facets.getTotal()).isEqualTo(1);
+        // JAZZ no tiene disponibilidad, así que no aparece en ninguna faceta
+        assertThat(facets.getVenues()).extracting(FacetCount::getValue).doesNotContain("Parque México");
+        assertThat(facets.getMonths()).extracting(FacetCount::getValue, FacetCount::getCount)
+            .containsExactly(tuple("2030-05", 1L), tuple("2030-06", 1L));
+        assertThat(facets.getPrices()).extracting(FacetCount::getValue).containsExactly("2000-5000", "5000+");
+    }
+
+    @Test
+    void buscar_DeberiaFiltrarEnMemoriaLosResultadosDelTexto() {
+        EventSearchRequest request = new EventSearchRequest();
+        request.setQuery("de");
+        request.setVenue("foro");
+
+        assertThat(catalog.search(request, null, 10)).extracting(EventSearchIndex.SearchHit::eventId)
+            .containsExactlyInAnyOrder("ROCK", "OPERA");
+
+        List<EventSearchIndex.SearchHit> first = catalog.search(request, null, 1);
+        assertThat(first).hasSize(1);
+        assertThat(catalog.search(request, first.get(0), 10)).extracting(EventSearchIndex.SearchHit::eventId)
+            .containsExactly(first.get(0).eventId().equals("ROCK") ? "OPERA" : "ROCK");
+    }
+
+    @Test
+    void disponibilidad_DeberiaAplicarseALosFiltrosDeInmediato() {
+        EventSearchRequest request = new EventSearchRequest(null, null, null, null, true);
+        request.setQuery("de");
+        assertThat(catalog.search(request, null, 10)).extracting(EventSearchIndex.SearchHit::eventId)
+            .containsExactlyInAnyOrder("ROCK", "FUT", "OPERA");
+
+        // ROCK se agota y JAZZ vuelve a tener tickets
+        catalog.updateAvailability(List.of(availability("ROCK", true), availability("JAZZ", false)));
+
+        assertThat(catalog.search(request, null, 10)).extracting(EventSearchIndex.SearchHit::eventId)
+            .containsExactlyInAnyOrder("FUT", "OPERA");
+        assertThat(catalog.facets(new EventSearchRequest(null, "Música", null, null, true)).getTotal()).isEqualTo(1);
+    }
+
+    @Test
+    void recargar_NoDeberiaPerderEventosCreadosDuranteLaConsulta() {
+        EventRepository eventRepository = mock(EventRepository.class);
+        ReflectionTestUtils.setField(catalog, "eventRepository", eventRepository);
+        // La consulta leyó la base de datos antes de que se guardara el evento nuevo
+        when(eventRepository.findFacetSources()).thenAnswer(invocation -> {
+            add("NUEVO", "Estreno", "Teatro", "Foro Sol", LocalDateTime.of(2030, 7, 1, 20, 0), 400.0, 5);
+            return List.of();
+        });
+
+        catalog.rebuild();
+
+        assertThat(catalog.facets(null).getTotal()).isEqualTo(1);
+        assertThat(catalog.facets(null).getCategories()).extracting(FacetCount::getValue).containsExactly("Teatro");
+
+        // Terminada la recarga, la siguiente ya no repite el evento
+        when(eventRepository.findFacetSources()).thenReturn(List.of());
+        catalog.rebuild();
+        assertThat(catalog.facets(null).getTotal()).isZero();
+    }
+
+    private static AvailabilitySource availability(String id, boolean soldOut) {
+        AvailabilitySource source = mock(AvailabilitySource.class);
+        when(source.getId()).thenReturn(id);
+        when(source.getSoldOut()).thenReturn(soldOut);
+        return source;
+    }
+
+    private void add(String id, String name, String category, String venue, LocalDateTime start,
+                     double price, int available) {
+        Event event = event(id, name, category, venue, "");
+        event.setStartDate(start);
+        TicketType type = new TicketType();
+        type.setPrice(price);
+        type.setAvailableQuantity(available);
+        event.updateAggregates(List.of(type));
+        catalog.add(event);
+        index.index(event);
+    }
+}
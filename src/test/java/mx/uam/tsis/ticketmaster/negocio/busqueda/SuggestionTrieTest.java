@@ -0,0 +1,82 @@
+package mx.uam.tsis.ticketmaster.negocio.busqueda;
+
+import mx.uam.tsis.ticketmaster.negocio.busqueda.SuggestionTrie.Suggestion;
+import mx.uam.tsis.ticketmaster.negocio.busqueda.SuggestionTrie.Type;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static mx.uam.tsis.ticketmaster.negocio.busqueda.EventSearchIndexTest.event;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestionTrieTest {
+
+    private SuggestionTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        trie = new SuggestionTrie();
+        trie.add(event("ROCK", "Noche de Rock Clásico", "Música", "Foro Sol", ""));
+        trie.add(event("OPERA", "Gala de Ópera", "Música", "Palacio de Bellas Artes", ""));
+        trie.add(event("FORO", "Festival Foráneo", "Festival", "Foro Sol", ""));
+    }
+
+    @Test
+    void sugerir_DeberiaIgnorarAcentosYMayusculas() {
+        assertThat(texts(trie.suggest("OPE", 10))).containsExactly("Gala de Ópera");
+        assertThat(texts(trie.suggest("músi", 10))).containsExactly("Música");
+    }
+
+    @Test
+    void sugerir_DeberiaCoincidirConCualquierPalabraInicial() {
+        // "Foro Sol" se encuentra por "sol" y "Noche de Rock Clásico" por "rock cla"
+        assertThat(texts(trie.suggest("sol", 10))).containsExactly("Foro Sol");
+        assertThat(texts(trie.suggest("rock cla", 10))).containsExactly("Noche de Rock Clásico");
+        // No coincide a media palabra
+        assertThat(trie.suggest("ol", 10)).isEmpty();
+    }
+
+    @Test
+    void sugerir_DeberiaOrdenarPorEventosQueUsanElTexto() {
+        List<Suggestion> suggestions = trie.suggest("fo", 10);
+
+        assertThat(texts(suggestions)).containsExactly("Foro Sol", "Festival Foráneo");
+        assertThat(suggestions.get(0).getType()).isEqualTo(Type.VENUE);
+        assertThat(suggestions.get(0).getWeight()).isEqualTo(2);
+        assertThat(texts(trie.suggest("f", 2))).containsExactly("Foro Sol", "Festival");
+    }
+
+    @Test
+    void agregar_DeberiaActualizarElTopDeCadaPrefijo() {
+        for (int i = 0; i < SuggestionTrie.TOP_K + 2; i++) {
+            trie.add(event("F" + i, "Fiesta " + i, "Fiestas", "Foro " + i, ""));
+        }
+        trie.add(event("OTRO", "Fiesta 11", "Fiestas", "Foro Sol", ""));
+
+        List<Suggestion> suggestions = trie.suggest("f", 20);
+        assertThat(suggestions).hasSize(SuggestionTrie.TOP_K);
+        assertThat(texts(suggestions).subList(0, 3)).containsExactly("Fiestas", "Foro Sol", "Fiesta 11");
+    }
+
+    @Test
+    void sugerir_DeberiaResponderPrefijosAMediaArista() {
+        trie = new SuggestionTrie();
+        trie.add(event("A", "Concierto", "Música", "Auditorio", ""));
+        // "conc" termina a media arista de "concierto"
+        assertThat(texts(trie.suggest("conc", 10))).containsExactly("Concierto");
+
+        // La arista se parte en "conc" y el nodo nuevo conserva lo que ya sugería
+        trie.add(event("B", "Concurso", "Música", "Auditorio", ""));
+        trie.add(event("C", "Concierto de Gala", "Música", "Auditorio", ""));
+        assertThat(texts(trie.suggest("conc", 10))).containsExactly("Concierto", "Concierto de Gala", "Concurso");
+        assertThat(texts(trie.suggest("concierto", 10))).containsExactly("Concierto", "Concierto de Gala");
+        assertThat(texts(trie.suggest("concu", 10))).containsExactly("Concurso");
+        assertThat(trie.suggest("concx", 10)).isEmpty();
+        assertThat(trie.suggest("auditorio", 10).get(0).getWeight()).isEqualTo(3);
+    }
+
+    private static List<String> texts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getText).toList();
+    }
+}
@@ -0,0 +1,40 @@
+package mx.uam.tsis.ticketmaster.negocio.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    @Test
+    void guardar_DeberiaDescartarLaEntradaUsadaHaceMasTiempo() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2, 60_000, now::get);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+
+        cache.put("c", 3);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("a")).isEqualTo(1);
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isEqualTo(3);
+    }
+
+    @Test
+    void obtener_DeberiaDescartarEntradasVencidas() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(10, 500, now::get);
+        cache.put("a", 1);
+
+        now.addAndGet(499);
+        assertThat(cache.get("a")).isEqualTo(1);
+
+        now.addAndGet(1);
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+}
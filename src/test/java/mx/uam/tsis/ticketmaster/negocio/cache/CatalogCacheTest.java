@@ -0,0 +1,119 @@
+package mx.uam.tsis.ticketmaster.negocio.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mx.uam.tsis.ticketmaster.negocio.cache.CatalogCache.EventSnapshot;
+import mx.uam.tsis.ticketmaster.negocio.cache.CatalogCache.TicketTypeSnapshot;
+import mx.uam.tsis.ticketmaster.negocio.inventario.InventoryLedger;
+import mx.uam.tsis.ticketmaster.negocio.inventario.SeatIndex;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CatalogCacheTest {
+
+    private final AtomicLong now = new AtomicLong(0);
+    private final AtomicInteger loads = new AtomicInteger();
+    private SimpleMeterRegistry registry;
+    private InventoryLedger inventoryLedger;
+    private SeatIndex seatIndex;
+    private CatalogCache cache;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        inventoryLedger = mock(InventoryLedger.class);
+        when(inventoryLedger.getAvailable("VIP")).thenReturn(OptionalInt.empty());
+        cache = new CatalogCache(registry, new RequestCoalescer(registry, 5000), 10, 60_000, now::get);
+        ReflectionTestUtils.setField(cache, "inventoryLedger", inventoryLedger);
+        seatIndex = mock(SeatIndex.class);
+        ReflectionTestUtils.setField(cache, "seatIndex", seatIndex);
+    }
+
+    @Test
+    void obtenerEvento_DeberiaLeerLaBaseDeDatosUnaVez() {
+        cache.getEvent("E1", this::loadEvent);
+        now.addAndGet(5_000);
+        Optional<EventSnapshot> event = cache.getEvent("E1", this::loadEvent);
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(event).get().satisfies(e -> assertThat(e.ticketTypes()).hasSize(1));
+        assertThat(requests("events", "hit")).isEqualTo(1);
+        assertThat(requests("events", "miss")).isEqualTo(1);
+        assertThat(registry.get("ticketmaster.catalog_cache.age").tag("cache", "events").summary().max())
+            .isEqualTo(5_000);
+    }
+
+    @Test
+    void obtenerEvento_DeberiaReleerAlVencer() {
+        cache.getEvent("E1", this::loadEvent);
+        now.addAndGet(60_000);
+        cache.getEvent("E1", this::loadEvent);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void obtenerEvento_NoDeberiaGuardarEventosInexistentes() {
+        assertThat(cache.getEvent("X", Optional::empty)).isEmpty();
+        assertThat(cache.getEvent("X", this::loadEvent)).isPresent();
+        assertThat(requests("events", "miss")).isEqualTo(2);
+    }
+
+    @Test
+    void disponibilidad_DeberiaTomarseDelLibroDeInventario() {
+        TicketTypeSnapshot vip = cache.getEvent("E1", this::loadEvent).orElseThrow().ticketTypes().get(0);
+        assertThat(cache.availableQuantity(vip)).isEqualTo(100);
+
+        // Una reservación cambia el libro; la caché no necesita invalidarse
+        when(inventoryLedger.getAvailable("VIP")).thenReturn(OptionalInt.of(97));
+        assertThat(cache.availableQuantity(vip)).isEqualTo(97);
+        assertThat(registry.get("ticketmaster.catalog_cache.availability").tag("source", "ledger").counter().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void version_DeberiaCambiarSoloSiCambiaElInventario() {
+        EventSnapshot event = cache.getEvent("E1", this::loadEvent).orElseThrow();
+        String version = cache.eventVersion(event);
+        String seats = cache.seatsVersion(event, "VIP");
+        assertThat(cache.eventVersion(event)).isEqualTo(version);
+
+        when(inventoryLedger.version("VIP")).thenReturn(3L);
+        assertThat(cache.eventVersion(event)).isNotEqualTo(version);
+        // El plano de asientos lleva su propia versión
+        assertThat(cache.seatsVersion(event, "VIP")).isEqualTo(seats);
+
+        when(seatIndex.version("VIP")).thenReturn(1L);
+        assertThat(cache.seatsVersion(event, "VIP")).isNotEqualTo(seats);
+    }
+
+    private Optional<Event> loadEvent() {
+        loads.incrementAndGet();
+        Event event = new Event();
+        event.setId("E1");
+        event.setName("Concierto");
+        TicketType vip = new TicketType();
+        vip.setId("VIP");
+        vip.setPrice(1000.0);
+        vip.setAvailableQuantity(100);
+        vip.setEvent(event);
+        event.getTicketTypes().add(vip);
+        return Optional.of(event);
+    }
+
+    private double requests(String name, String result) {
+        return registry.get("ticketmaster.catalog_cache.requests").tags("cache", name, "result", result)
+            .counter().count();
+    }
+}
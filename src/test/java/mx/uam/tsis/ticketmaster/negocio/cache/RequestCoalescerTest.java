@@ -0,0 +1,117 @@
+package mx.uam.tsis.ticketmaster.negocio.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestCoalescerTest {
+
+    private SimpleMeterRegistry registry;
+    private RequestCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        coalescer = new RequestCoalescer(registry, 5000);
+    }
+
+    @Test
+    void lecturasSimultaneas_DeberianCompartirUnaConsulta() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        Future<String> leader = executor.submit(() -> coalescer.execute("seats", "E1", () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "resultado";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            followers.add(executor.submit(() -> coalescer.execute("seats", "E1", () -> {
+                loads.incrementAndGet();
+                return "otro";
+            })));
+        }
+        // Los seguidores ya están esperando a la consulta en curso
+        while (registry.get("ticketmaster.coalescing.requests").tag("role", "follower").counter().count() < 7) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("resultado");
+        for (Future<String> follower : followers) {
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("resultado");
+        }
+        executor.shutdown();
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(registry.get("ticketmaster.coalescing.ratio").tag("operation", "seats").gauge().value())
+            .isEqualTo(7.0 / 8);
+    }
+
+    @Test
+    void lecturaTerminada_NoDeberiaGuardarseComoCache() {
+        AtomicInteger loads = new AtomicInteger();
+
+        coalescer.execute("seats", "E1", loads::incrementAndGet);
+        coalescer.execute("seats", "E1", loads::incrementAndGet);
+        coalescer.execute("seats", "E2", loads::incrementAndGet);
+
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    void error_DeberiaLlegarATodosYLiberarLaLlave() {
+        assertThatThrownBy(() -> coalescer.execute("events", "E1", () -> {
+            throw new IllegalArgumentException("Evento no encontrado");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(coalescer.execute("events", "E1", () -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    void esperaVencida_DeberiaConsultarPorSuCuenta() throws Exception {
+        RequestCoalescer impaciente = new RequestCoalescer(registry, 50);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        Future<String> leader = executor.submit(() -> impaciente.execute("seats", "E1", () -> {
+            started.countDown();
+            await(release);
+            return "lento";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(impaciente.execute("seats", "E1", () -> "directo")).isEqualTo("directo");
+        assertThat(registry.get("ticketmaster.coalescing.requests").tag("role", "timeout").counter().count())
+            .isEqualTo(1.0);
+
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("lento");
+        executor.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
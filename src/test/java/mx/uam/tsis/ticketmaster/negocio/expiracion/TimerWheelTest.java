@@ -0,0 +1,66 @@
+package mx.uam.tsis.ticketmaster.negocio.expiracion;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TimerWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    private TimerWheel<String> wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimerWheel<>(1000, 8, START);
+    }
+
+    @Test
+    void avanzar_DeberiaEntregarAlCumplirseElPlazo() {
+        wheel.schedule("RES-001", START + 2500);
+
+        assertThat(wheel.advance(START + 2000)).isEmpty();
+        assertThat(wheel.advance(START + 2999)).isEmpty();
+        assertThat(wheel.advance(START + 3000)).containsExactly("RES-001");
+        assertThat(wheel.advance(START + 10000)).isEmpty();
+    }
+
+    @Test
+    void avanzar_DeberiaRespetarPlazosMayoresAUnaVuelta() {
+        // 8 casillas de un segundo: 20 segundos son dos vueltas y media
+        wheel.schedule("RES-001", START + 20000);
+        wheel.schedule("RES-002", START + 4000);
+
+        assertThat(wheel.advance(START + 4000)).containsExactly("RES-002");
+        assertThat(wheel.advance(START + 12000)).isEmpty();
+        assertThat(wheel.advance(START + 19999)).isEmpty();
+        assertThat(wheel.advance(START + 20000)).containsExactly("RES-001");
+    }
+
+    @Test
+    void avanzar_DeberiaEntregarPlazosVencidosEnElSiguienteTick() {
+        wheel.advance(START + 5000);
+        wheel.schedule("RES-001", START - 60000);
+
+        assertThat(wheel.advance(START + 6000)).containsExactly("RES-001");
+    }
+
+    @Test
+    void cancelar_NoDeberiaEntregarElPlazo() {
+        TimerWheel.Timeout<String> antes = wheel.schedule("RES-001", START + 1000);
+        TimerWheel.Timeout<String> despues = wheel.schedule("RES-002", START + 3000);
+        antes.cancel();
+        wheel.advance(START);
+        despues.cancel();
+
+        assertThat(wheel.advance(START + 5000)).isEmpty();
+    }
+
+    @Test
+    void crear_DeberiaRechazarTamanoQueNoSeaPotenciaDeDos() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new TimerWheel<String>(1000, 10, START));
+    }
+}
@@ -0,0 +1,220 @@
+package mx.uam.tsis.ticketmaster.negocio.inventario;
+
+import mx.uam.tsis.ticketmaster.datos.EventRepository;
+import mx.uam.tsis.ticketmaster.datos.EventRepository.AvailabilitySource;
+import mx.uam.tsis.ticketmaster.datos.TicketTypeRepository;
+import mx.uam.tsis.ticketmaster.negocio.busqueda.FacetCatalog;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class InventoryLedgerTest {
+
+    @Mock
+    private TicketTypeRepository ticketTypeRepository;
+
+    @Mock
+    private EventRepository eventRepository;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private FacetCatalog facetCatalog;
+
+    @InjectMocks
+    private InventoryLedger inventoryLedger;
+
+    private TicketType ticketType;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        ticketType = new TicketType();
+        ticketType.setId("TICKET-001");
+        ticketType.setAvailableQuantity(10);
+    }
+
+    @Test
+    void apartar_DeberiaRechazarSinDisponibilidad() {
+        assertThat(inventoryLedger.tryReserve(ticketType, 8)).isTrue();
+        assertThat(inventoryLedger.tryReserve(ticketType, 3)).isFalse();
+        assertThat(inventoryLedger.getAvailable("TICKET-001")).hasValue(2);
+    }
+
+    @Test
+    void version_DeberiaCambiarConCadaCambioDeDisponibilidad() {
+        assertThat(inventoryLedger.version("TICKET-001")).isZero();
+
+        inventoryLedger.tryReserve(ticketType, 2);
+        long reserved = inventoryLedger.version("TICKET-001");
+        assertThat(reserved).isPositive();
+
+        // Un apartado rechazado no cambia nada
+        inventoryLedger.tryReserve(ticketType, 50);
+        assertThat(inventoryLedger.version("TICKET-001")).isEqualTo(reserved);
+
+        inventoryLedger.release(ticketType, 2);
+        assertThat(inventoryLedger.version("TICKET-001")).isGreaterThan(reserved);
+
+        // Al descartar el contador la versión sigue creciendo
+        long released = inventoryLedger.version("TICKET-001");
+        inventoryLedger.evict("TICKET-001");
+        long evicted = inventoryLedger.version("TICKET-001");
+        assertThat(evicted).isGreaterThan(released);
+        inventoryLedger.tryReserve(ticketType, 1);
+        assertThat(inventoryLedger.version("TICKET-001")).isGreaterThan(evicted);
+    }
+
+    @Test
+    void apartarConcurrente_NoDeberiaSobrevender() throws Exception {
+        ticketType.setAvailableQuantity(100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger admitted = new AtomicInteger();
+
+        for (int i = 0; i < 500; i++) {
+            executor.submit(() -> {
+                start.await();
+                if (inventoryLedger.tryReserve(ticketType, 1)) {
+                    admitted.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(admitted.get()).isEqualTo(100);
+        assertThat(inventoryLedger.getAvailable("TICKET-001")).hasValue(0);
+    }
+
+    @Test
+    void apartarConFranjas_DeberiaPedirPrestadoALasVecinas() {
+        ticketType.setInventoryShards(8);
+
+        // 10 tickets repartidos en 8 franjas: ninguna franja alcanza sola
+        assertThat(inventoryLedger.tryReserve(ticketType, 10)).isTrue();
+        assertThat(inventoryLedger.tryReserve(ticketType, 1)).isFalse();
+
+        inventoryLedger.release(ticketType, 3);
+        assertThat(inventoryLedger.getAvailable("TICKET-001")).hasValue(3);
+        assertThat(inventoryLedger.tryReserve(ticketType, 4)).isFalse();
+        assertThat(inventoryLedger.getAvailable("TICKET-001")).hasValue(3);
+    }
+
+    @Test
+    void apartarConcurrenteConFranjas_NoDeberiaSobrevender() throws Exception {
+        ticketType.setAvailableQuantity(100);
+        ticketType.setInventoryShards(64);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger admitted = new AtomicInteger();
+
+        for (int i = 0; i < 500; i++) {
+            executor.submit(() -> {
+                start.await();
+                if (inventoryLedger.tryReserve(ticketType, 1)) {
+                    admitted.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(admitted.get()).isEqualTo(100);
+        assertThat(inventoryLedger.getAvailable("TICKET-001")).hasValue(0);
+        // La versión suma los cambios de todas las franjas
+        assertThat(inventoryLedger.version("TICKET-001")).isEqualTo(100);
+    }
+
+    @Test
+    void escribir_DeberiaEnviarElDeltaNeto() {
+        when(ticketTypeRepository.reserveAvailableQuantity(anyString(), anyInt())).thenReturn(1);
+
+        inventoryLedger.tryReserve(ticketType, 4);
+        inventoryLedger.tryReserve(ticketType, 2);
+        inventoryLedger.release(ticketType, 1);
+        inventoryLedger.flush();
+        inventoryLedger.flush();
+
+        verify(ticketTypeRepository, times(1)).reserveAvailableQuantity("TICKET-001", 5);
+        verify(ticketTypeRepository, never()).releaseAvailableQuantity(anyString(), anyInt());
+        // La disponibilidad del evento cambia junto con la del tipo de ticket
+        verify(eventRepository, times(1)).adjustAvailableTickets("TICKET-001", -5);
+    }
+
+    @Test
+    void escribir_DeberiaActualizarLaDisponibilidadDelCatalogo() {
+        List<AvailabilitySource> sources = List.of(mock(AvailabilitySource.class));
+        when(ticketTypeRepository.reserveAvailableQuantity(anyString(), anyInt())).thenReturn(1);
+        when(eventRepository.findAvailabilitySources(List.of("TICKET-001"))).thenReturn(sources);
+
+        inventoryLedger.tryReserve(ticketType, 10);
+        inventoryLedger.flush();
+        inventoryLedger.flush();
+
+        verify(facetCatalog, times(1)).updateAvailability(sources);
+    }
+
+    @Test
+    void escribir_DeberiaReconciliarSiLaFilaNoAlcanza() {
+        // Otro proceso dejó solo 3 tickets en la fila
+        when(ticketTypeRepository.reserveAvailableQuantity("TICKET-001", 6)).thenReturn(0);
+        when(ticketTypeRepository.reserveAvailableQuantity("TICKET-001", 3)).thenReturn(1);
+        when(ticketTypeRepository.findAvailableQuantityById("TICKET-001")).thenReturn(Optional.of(3));
+
+        inventoryLedger.tryReserve(ticketType, 6);
+        inventoryLedger.flush();
+
+        // Se descuenta lo que la fila tenía y el resto se descarta
+        verify(ticketTypeRepository).reserveAvailableQuantity("TICKET-001", 3);
+        verify(eventRepository, never()).adjustAvailableTickets("TICKET-001", -6);
+        verify(eventRepository).adjustAvailableTickets("TICKET-001", -3);
+        assertThat(inventoryLedger.getAvailable("TICKET-001")).hasValue(0);
+        assertThat(inventoryLedger.tryReserve(ticketType, 1)).isFalse();
+
+        // El delta descartado no se vuelve a intentar
+        inventoryLedger.flush();
+        verify(ticketTypeRepository, times(1)).reserveAvailableQuantity("TICKET-001", 6);
+
+        inventoryLedger.release(ticketType, 4);
+        when(ticketTypeRepository.releaseAvailableQuantity("TICKET-001", 4)).thenReturn(1);
+        inventoryLedger.flush();
+
+        verify(eventRepository).adjustAvailableTickets("TICKET-001", 4);
+        assertThat(inventoryLedger.getAvailable("TICKET-001")).hasValue(4);
+    }
+
+    @Test
+    void descartar_DeberiaRecargarDesdeElTipoDeTicket() {
+        inventoryLedger.tryReserve(ticketType, 4);
+        inventoryLedger.evict("TICKET-001");
+
+        assertThat(inventoryLedger.getAvailable("TICKET-001")).isEmpty();
+        verify(entityManagerFactory.getCache()).evict(TicketType.class, "TICKET-001");
+        assertThat(inventoryLedger.tryReserve(ticketType, 10)).isTrue();
+    }
+}
@@ -0,0 +1,78 @@
+package mx.uam.tsis.ticketmaster.negocio.inventario;
+
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compara la contención del libro de inventario con 1, 8 y 64 franjas.
+ * No forma parte de la suite normal; se ejecuta con:
+ * <pre>mvn test -Pbenchmark</pre>
+ */
+class InventoryShardBenchmark {
+
+    private static final int THREADS = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int OPERATIONS_PER_THREAD = 200_000;
+    private static final int INITIAL_AVAILABLE = 50_000;
+
+    @Test
+    void compararFranjas() throws Exception {
+        // Calentamiento para que el JIT compile el camino caliente
+        run(8);
+
+        System.out.printf("%-8s %-8s %14s %12s%n", "franjas", "hilos", "ops/s", "ms");
+        for (int shards : new int[] {1, 8, 64}) {
+            Result result = run(shards);
+            System.out.printf("%-8d %-8d %,14.0f %12d%n",
+                shards, THREADS, result.opsPerSecond(), result.millis());
+        }
+    }
+
+    private Result run(int shards) throws Exception {
+        InventoryLedger ledger = new InventoryLedger();
+        TicketType ticketType = new TicketType();
+        ticketType.setId("GENERAL-" + shards);
+        ticketType.setAvailableQuantity(INITIAL_AVAILABLE);
+        ticketType.setInventoryShards(shards);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                // Cada apartado se libera enseguida, como un carrito abandonado
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    if (ledger.tryReserve(ticketType, 2)) {
+                        ledger.release(ticketType, 2);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(ledger.getAvailable(ticketType.getId())).hasValue(INITIAL_AVAILABLE);
+        long operations = 2L * THREADS * OPERATIONS_PER_THREAD;
+        return new Result(operations * 1_000_000_000.0 / elapsed, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private record Result(double opsPerSecond, long millis) {}
+}
@@ -0,0 +1,60 @@
+package mx.uam.tsis.ticketmaster.negocio.inventario;
+
+import mx.uam.tsis.ticketmaster.datos.SeatRepository;
+import mx.uam.tsis.ticketmaster.datos.SeatRepository.SeatView;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mide la lectura del plano de asientos de una arena de 40 mil lugares.
+ * No forma parte de la suite normal; se ejecuta con:
+ * <pre>mvn test -Pbenchmark</pre>
+ */
+class SeatIndexBenchmark {
+
+    private static final int ROWS = 200;
+    private static final int SEATS_PER_ROW = 200;
+    private static final int ITERATIONS = 2_000;
+
+    @Test
+    void leerPlanoDeArena() {
+        List<SeatView> views = new ArrayList<>();
+        for (int row = 0; row < ROWS; row++) {
+            for (int number = 1; number <= SEATS_PER_ROW; number++) {
+                // Un tercio de la arena ya vendido
+                views.add(SeatIndexTest.seat(row + "-" + number, String.valueOf(row), String.valueOf(number),
+                    (row + number) % 3 != 0));
+            }
+        }
+        SeatRepository seatRepository = mock(SeatRepository.class);
+        when(seatRepository.findSeatViewsByTicketTypeId("ARENA")).thenReturn(views);
+        SeatIndex seatIndex = new SeatIndex();
+        ReflectionTestUtils.setField(seatIndex, "seatRepository", seatRepository);
+        TicketType ticketType = new TicketType();
+        ticketType.setId("ARENA");
+
+        int available = 0;
+        // Calentamiento para que el JIT compile el recorrido de bits
+        for (int i = 0; i < ITERATIONS; i++) {
+            available = seatIndex.getAvailableSeats(ticketType).size();
+        }
+        long begin = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            available = seatIndex.getAvailableSeats(ticketType).size();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        assertThat(available).isBetween(26_000, 27_000);
+        System.out.printf("%,d asientos, %,d disponibles: %,d us por lectura%n",
+            ROWS * SEATS_PER_ROW, available, TimeUnit.NANOSECONDS.toMicros(elapsed) / ITERATIONS);
+    }
+}
@@ -0,0 +1,209 @@
+package mx.uam.tsis.ticketmaster.negocio.inventario;
+
+import mx.uam.tsis.ticketmaster.datos.SeatRepository;
+import mx.uam.tsis.ticketmaster.datos.SeatRepository.SeatView;
+import mx.uam.tsis.ticketmaster.negocio.inventario.SeatIndex.HoldResult;
+import mx.uam.tsis.ticketmaster.negocio.inventario.SeatIndex.SeatInfo;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+class SeatIndexTest {
+
+    @Mock
+    private SeatRepository seatRepository;
+
+    @InjectMocks
+    private SeatIndex seatIndex;
+
+    private TicketType ticketType;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        ticketType = new TicketType();
+        ticketType.setId("TICKET-001");
+        when(seatRepository.findSeatViewsByTicketTypeId("TICKET-001")).thenReturn(List.of(
+            seat("SEAT-B1", "B", "1", true),
+            seat("SEAT-A10", "A", "10", true),
+            seat("SEAT-A2", "A", "2", false),
+            seat("SEAT-A1", "A", "1", true)
+        ));
+    }
+
+    @Test
+    void obtenerDisponibles_DeberiaOrdenarPorFilaYNumero() {
+        List<SeatInfo> seats = seatIndex.getAvailableSeats(ticketType);
+
+        assertThat(seats).extracting(SeatInfo::id).containsExactly("SEAT-A1", "SEAT-A10", "SEAT-B1");
+        assertThat(seatIndex.getAvailableSeats(ticketType)).hasSize(3);
+        // El plano se carga una sola vez
+        verify(seatRepository, times(1)).findSeatViewsByTicketTypeId("TICKET-001");
+    }
+
+    @Test
+    void compararEtiquetas_DeberiaOrdenarLosNumerosPorValorConOSinCeros() {
+        List<String> labels = new ArrayList<>(List.of("10", "9", "08", "A", "1", "010", "007"));
+        labels.sort(SeatIndex::compareLabels);
+
+        assertThat(labels).containsExactly("1", "007", "08", "9", "010", "10", "A");
+        assertThat(SeatIndex.compareLabels("0", "00")).isNegative();
+    }
+
+    @Test
+    void apartar_DeberiaSerTodoONada() {
+        assertThat(seatIndex.hold(ticketType, Set.of("SEAT-A1", "SEAT-A2"))).isEqualTo(HoldResult.UNAVAILABLE);
+        assertThat(seatIndex.hold(ticketType, Set.of("SEAT-A1", "SEAT-Z9"))).isEqualTo(HoldResult.UNKNOWN_SEAT);
+        assertThat(seatIndex.getAvailableSeats(ticketType)).hasSize(3);
+
+        assertThat(seatIndex.hold(ticketType, Set.of("SEAT-A1", "SEAT-B1"))).isEqualTo(HoldResult.HELD);
+        assertThat(seatIndex.hold(ticketType, Set.of("SEAT-B1"))).isEqualTo(HoldResult.UNAVAILABLE);
+        assertThat(seatIndex.getAvailableSeats(ticketType)).extracting(SeatInfo::id).containsExactly("SEAT-A10");
+    }
+
+    @Test
+    void escribir_DeberiaActualizarSoloLosAsientosModificadosEnLote() {
+        seatIndex.hold(ticketType, Set.of("SEAT-A1", "SEAT-B1"));
+
+        seatIndex.flush();
+        seatIndex.flush();
+
+        verify(seatRepository, times(1)).updateAvailability(List.of("SEAT-A1", "SEAT-B1"), false);
+        verify(seatRepository, never()).updateAvailability(any(), eq(true));
+        verify(seatRepository, never()).save(any());
+    }
+
+    @Test
+    void apartar_ConcurrenteNoDeberiaEntregarUnAsientoDosVeces() throws Exception {
+        List<SeatView> views = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            views.add(seat("SEAT-" + i, "A", String.valueOf(i), true));
+        }
+        when(seatRepository.findSeatViewsByTicketTypeId("TICKET-001")).thenReturn(views);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                int held = 0;
+                for (int i = 0; i < 999; i++) {
+                    if (seatIndex.hold(ticketType, List.of("SEAT-" + i, "SEAT-" + (i + 1))) == HoldResult.HELD) {
+                        held += 2;
+                    }
+                }
+                return held;
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> future : futures) {
+            total += future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertThat(total + seatIndex.getAvailableSeats(ticketType).size()).isEqualTo(1000);
+        verify(seatRepository, never()).updateAvailability(any(), anyBoolean());
+    }
+
+    @Test
+    void mejoresAsientos_DeberiaPreferirAsientosJuntosEnLaFilaMasCercana() {
+        // Fila A con huecos, fila B con cuatro asientos juntos
+        when(seatRepository.findSeatViewsByTicketTypeId("TICKET-001")).thenReturn(List.of(
+            seat("A1", "A", "1", true), seat("A2", "A", "2", false), seat("A3", "A", "3", true),
+            seat("A4", "A", "4", true), seat("A5", "A", "5", false),
+            seat("B1", "B", "1", false), seat("B2", "B", "2", true), seat("B3", "B", "3", true),
+            seat("B4", "B", "4", true), seat("B5", "B", "5", true)
+        ));
+
+        assertThat(seatIndex.holdBestAvailable(ticketType, 2, null))
+            .extracting(SeatInfo::id).containsExactly("A3", "A4");
+        assertThat(seatIndex.holdBestAvailable(ticketType, 3, null))
+            .extracting(SeatInfo::id).containsExactly("B2", "B3", "B4");
+        // Solo quedan A1 y B5, en filas distintas: los primeros libres en orden
+        assertThat(seatIndex.holdBestAvailable(ticketType, 2, null))
+            .extracting(SeatInfo::id).containsExactly("A1", "B5");
+        assertThat(seatIndex.holdBestAvailable(ticketType, 1, null)).isEmpty();
+    }
+
+    @Test
+    void mejoresAsientos_DeberiaUsarElGrupoMasCompactoSiNoHayJuntos() {
+        when(seatRepository.findSeatViewsByTicketTypeId("TICKET-001")).thenReturn(List.of(
+            seat("A1", "A", "1", true), seat("A2", "A", "2", false), seat("A3", "A", "3", false),
+            seat("A4", "A", "4", true),
+            seat("B1", "B", "1", true), seat("B2", "B", "2", false), seat("B3", "B", "3", true)
+        ));
+
+        assertThat(seatIndex.holdBestAvailable(ticketType, 2, null))
+            .extracting(SeatInfo::id).containsExactly("B1", "B3");
+        // Solo queda la fila A, con sus dos asientos separados
+        assertThat(seatIndex.holdBestAvailable(ticketType, 2, null))
+            .extracting(SeatInfo::id).containsExactly("A1", "A4");
+        assertThat(seatIndex.holdBestAvailable(ticketType, 1, null)).isEmpty();
+    }
+
+    @Test
+    void mejoresAsientos_DeberiaLimitarseALaZona() {
+        assertThat(seatIndex.holdBestAvailable(ticketType, 1, "Platea")).isEmpty();
+        assertThat(seatIndex.holdBestAvailable(ticketType, 2, "VIP"))
+            .extracting(SeatInfo::id).containsExactly("SEAT-A1", "SEAT-A10");
+    }
+
+    @Test
+    void mejoresAsientos_ConcurrenteNoDeberiaEntregarUnAsientoDosVeces() throws Exception {
+        List<SeatView> views = new ArrayList<>();
+        for (int row = 0; row < 20; row++) {
+            for (int number = 1; number <= 50; number++) {
+                views.add(seat(row + "-" + number, String.valueOf(row), String.valueOf(number), true));
+            }
+        }
+        when(seatRepository.findSeatViewsByTicketTypeId("TICKET-001")).thenReturn(views);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<SeatInfo>>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                List<SeatInfo> held = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    held.addAll(seatIndex.holdBestAvailable(ticketType, 4, null));
+                }
+                return held;
+            }));
+        }
+        List<String> held = new ArrayList<>();
+        for (Future<List<SeatInfo>> future : futures) {
+            future.get().forEach(seat -> held.add(seat.id()));
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertThat(held).doesNotHaveDuplicates().hasSize(1000);
+        assertThat(seatIndex.getAvailableSeats(ticketType)).isEmpty();
+    }
+
+    static SeatView seat(String id, String row, String number, boolean available) {
+        return new SeatView() {
+            public String getId() { return id; }
+            public String getSeatRow() { return row; }
+            public String getNumber() { return number; }
+            public String getZone() { return "VIP"; }
+            public boolean isAvailable() { return available; }
+        };
+    }
+}
@@ -0,0 +1,136 @@
+package mx.uam.tsis.ticketmaster.negocio.promocion;
+
+import mx.uam.tsis.ticketmaster.datos.TicketTypeRepository;
+import mx.uam.tsis.ticketmaster.negocio.modelo.Event;
+import mx.uam.tsis.ticketmaster.negocio.modelo.TicketType;
+import mx.uam.tsis.ticketmaster.negocio.promocion.PromotionSchedule.Promotion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PromotionScheduleTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2030, 5, 1, 0, 0);
+
+    private PromotionSchedule schedule;
+
+    @BeforeEach
+    void setUp() {
+        schedule = new PromotionSchedule();
+        // Preventa del 1 al 10; el evento empieza el 20
+        add(schedule, event("ROCK", DAY.plusDays(20), type("ROCK-VIP", 1000.0, 800.0, DAY, DAY.plusDays(10))));
+        // Venta hasta después del evento: la promoción termina cuando empieza el evento
+        add(schedule, event("JAZZ", DAY.plusDays(5), type("JAZZ-GEN", 500.0, 250.0, DAY.plusDays(2), DAY.plusDays(30)),
+            type("JAZZ-VIP", 900.0, 900.0, DAY, DAY.plusDays(30))));
+    }
+
+    @Test
+    void vigentes_DeberiaRespetarLasVentanasYElInicioDelEvento() {
+        assertThat(ids(schedule.activeAt(DAY.minusDays(1)))).isEmpty();
+        assertThat(ids(schedule.activeAt(DAY.plusDays(1)))).containsExactly("ROCK-VIP");
+        // Ordenadas por fecha del evento
+        assertThat(ids(schedule.activeAt(DAY.plusDays(3)))).containsExactly("JAZZ-GEN", "ROCK-VIP");
+        assertThat(ids(schedule.activeAt(DAY.plusDays(6)))).containsExactly("ROCK-VIP");
+        assertThat(ids(schedule.activeAt(DAY.plusDays(10)))).isEmpty();
+
+        Promotion rock = schedule.activeAt(DAY.plusDays(1)).get(0);
+        assertThat(rock.discountPercentage()).isEqualTo(20.0);
+        assertThat(rock.saleEndDate()).isEqualTo(DAY.plusDays(10));
+    }
+
+    @Test
+    void actuales_DeberiaReusarLaListaHastaElSiguienteLimite() {
+        List<Promotion> first = schedule.current(DAY.plusDays(3));
+        assertThat(schedule.current(DAY.plusDays(4))).isSameAs(first);
+
+        // El evento JAZZ empieza el día 5 y su promoción deja de estar vigente
+        assertThat(ids(schedule.current(DAY.plusDays(5).plusMinutes(1)))).containsExactly("ROCK-VIP");
+
+        // Un evento nuevo se refleja de inmediato
+        add(schedule, event("FUT", DAY.plusDays(15), type("FUT-GEN", 400.0, 300.0, DAY, DAY.plusDays(15))));
+        assertThat(ids(schedule.current(DAY.plusDays(6)))).containsExactly("FUT-GEN", "ROCK-VIP");
+    }
+
+    @Test
+    void vigentes_ConMuchasVentanasDeberiaCoincidirConRevisarTodas() {
+        PromotionSchedule many = new PromotionSchedule();
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime start = DAY.plusHours(i * 7L % 500);
+            add(many, event("E" + i, start.plusHours(1000),
+                type("T" + i, 100.0, 50.0, start, start.plusHours(10 + i % 90))));
+        }
+
+        for (int hour = 0; hour < 700; hour += 13) {
+            LocalDateTime time = DAY.plusHours(hour).plusMinutes(30);
+            long expected = 0;
+            for (int i = 0; i < 200; i++) {
+                LocalDateTime start = DAY.plusHours(i * 7L % 500);
+                LocalDateTime end = start.plusHours(10 + i % 90);
+                if (time.isAfter(start) && time.isBefore(end)) {
+                    expected++;
+                }
+            }
+            assertThat(many.activeAt(time)).hasSize((int) expected);
+        }
+    }
+
+    @Test
+    void recargar_NoDeberiaPerderPromocionesCreadasDuranteLaConsulta() {
+        TicketTypeRepository ticketTypeRepository = mock(TicketTypeRepository.class);
+        ReflectionTestUtils.setField(schedule, "ticketTypeRepository", ticketTypeRepository);
+        // La consulta leyó la base de datos antes de que se guardara el evento nuevo
+        when(ticketTypeRepository.findPromotionSources(any())).thenAnswer(invocation -> {
+            add(schedule, event("FUT", DAY.plusDays(15), type("FUT-GEN", 400.0, 300.0, DAY, DAY.plusDays(15))));
+            return List.of();
+        });
+
+        schedule.rebuild();
+
+        assertThat(ids(schedule.activeAt(DAY.plusDays(1)))).containsExactly("FUT-GEN");
+
+        // Terminada la recarga, la siguiente ya no repite la promoción
+        when(ticketTypeRepository.findPromotionSources(any())).thenReturn(List.of());
+        schedule.rebuild();
+        assertThat(schedule.activeAt(DAY.plusDays(1))).isEmpty();
+    }
+
+    private static void add(PromotionSchedule schedule, Event event) {
+        schedule.add(event, event.getTicketTypes());
+    }
+
+    private static List<String> ids(List<Promotion> promotions) {
+        return promotions.stream().map(Promotion::ticketTypeId).toList();
+    }
+
+    private static Event event(String id, LocalDateTime startDate, TicketType... ticketTypes) {
+        Event event = new Event();
+        event.setId(id);
+        event.setName("Evento " + id);
+        event.setStartDate(startDate);
+        event.setEndDate(startDate.plusHours(3));
+        for (TicketType ticketType : ticketTypes) {
+            ticketType.setEvent(event);
+            event.getTicketTypes().add(ticketType);
+        }
+        return event;
+    }
+
+    private static TicketType type(String id, double price, double promotionalPrice,
+                                   LocalDateTime saleStart, LocalDateTime saleEnd) {
+        TicketType ticketType = new TicketType();
+        ticketType.setId(id);
+        ticketType.setPrice(price);
+        ticketType.setPromotionalPrice(promotionalPrice);
+        ticketType.setSaleStartDate(saleStart);
+        ticketType.setSaleEndDate(saleEnd);
+        return ticketType;
+    }
+}